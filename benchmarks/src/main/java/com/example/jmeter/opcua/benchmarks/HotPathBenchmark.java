@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua.benchmarks;
+
+import com.example.jmeter.opcua.OPCUAAssertion;
+import org.apache.jmeter.assertions.AssertionResult;
+import org.apache.jmeter.samplers.SampleResult;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-sample building blocks the samplers share, measured without any network I/O: NodeId construction,
+ * response and assertion message building, and {@link SampleResult} population.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.loggerContextFactory=org.apache.logging.log4j.simple.SimpleLoggerContextFactory")
+@State(Scope.Thread)
+public class HotPathBenchmark {
+
+    @Param("100")
+    public int nodes;
+
+    private String namespaceIndexText;
+    private String identifierText;
+    private int namespaceIndex;
+    private int identifier;
+    private NodeId[] nodeIds;
+    private DataValue[] dataValues;
+    private String expectedValue;
+    private OPCUAAssertion[] compiledAssertions;
+
+    @Setup
+    public void setUp() {
+        namespaceIndexText = "2";
+        identifierText = "17";
+        namespaceIndex = 2;
+        identifier = 17;
+        expectedValue = "false";
+        nodeIds = new NodeId[nodes];
+        dataValues = new DataValue[nodes];
+        for (int i = 0; i < nodes; i++) {
+            nodeIds[i] = new NodeId(namespaceIndex, i + 1);
+            dataValues[i] = new DataValue(new Variant(false));
+        }
+        compiledAssertions = new OPCUAAssertion[nodes];
+        for (int i = 0; i < nodes; i++) {
+            compiledAssertions[i] = OPCUAAssertion.compile(expectedValue);
+        }
+    }
+
+    // What a sampler pays when it parses its properties on every sample
+    @Benchmark
+    public NodeId nodeIdFromProperties() {
+        return new NodeId(Integer.parseInt(namespaceIndexText), Integer.parseInt(identifierText));
+    }
+
+    @Benchmark
+    public NodeId nodeIdFromInts() {
+        return new NodeId(namespaceIndex, identifier);
+    }
+
+    @Benchmark
+    public NodeId nodeIdParse() {
+        return NodeId.parse("ns=2;i=17");
+    }
+
+    // The response message the read multiple sampler builds for each node
+    @Benchmark
+    public String responseMessage() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < nodes; i++) {
+            sb.append("NodeId=").append(nodeIds[i])
+                    .append(", Expected=").append(expectedValue)
+                    .append(", Actual=").append(dataValues[i].getValue().getValue())
+                    .append("\n");
+        }
+        return sb.toString();
+    }
+
+    // Text comparison with an AssertionResult allocated for each node, as the read samplers used to do
+    @Benchmark
+    public SampleResult assertions() {
+        SampleResult result = new SampleResult();
+        for (int i = 0; i < nodes; i++) {
+            Object actualValue = dataValues[i].getValue().getValue();
+            AssertionResult assertionResult = new AssertionResult("Assertion for NodeId " + nodeIds[i]);
+            if (!actualValue.toString().equals(expectedValue)) {
+                assertionResult.setFailure(true);
+                result.addAssertionResult(assertionResult);
+            }
+        }
+        return result;
+    }
+
+    // Expected values compiled once per thread; an AssertionResult is only allocated for a failure
+    @Benchmark
+    public SampleResult compiledAssertions() {
+        SampleResult result = new SampleResult();
+        for (int i = 0; i < nodes; i++) {
+            if (!compiledAssertions[i].test(dataValues[i])) {
+                AssertionResult assertionResult = new AssertionResult("Assertion for NodeId " + nodeIds[i]);
+                assertionResult.setFailure(true);
+                result.addAssertionResult(assertionResult);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public String responseFormat() {
+        return String.format("Read %d of %d nodes in %d Read request(s) of up to %d nodes.", nodes, nodes, 1, nodes);
+    }
+
+    // The SampleResult calls every sampler makes
+    @Benchmark
+    public SampleResult sampleResult() {
+        SampleResult result = new SampleResult();
+        result.setSampleLabel("OPC UA Read");
+        result.sampleStart();
+        result.connectEnd();
+        result.setResponseMessage("Successfully read value false from node ns=2;i=17");
+        result.setResponseData("false", "UTF-8");
+        result.setSuccessful(true);
+        result.sampleEnd();
+        return result;
+    }
+}
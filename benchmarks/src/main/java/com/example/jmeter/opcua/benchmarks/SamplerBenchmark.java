@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua.benchmarks;
+
+import com.example.jmeter.opcua.OPCUACloseSampler;
+import com.example.jmeter.opcua.OPCUAClientFactory;
+import com.example.jmeter.opcua.OPCUAConnectionSampler;
+import com.example.jmeter.opcua.OPCUAMultipleReadAndAssertSampler;
+import com.example.jmeter.opcua.OPCUAMultipleWriteSampler;
+import com.example.jmeter.opcua.OPCUANodeTable;
+import com.example.jmeter.opcua.OPCUAPublishSampler;
+import com.example.jmeter.opcua.OPCUAReadSingleSampler;
+import com.example.jmeter.opcua.OPCUASessions;
+import com.example.jmeter.opcua.OPCUASubscriptionSampler;
+import com.example.jmeter.opcua.simulator.SimulationNodeType;
+import com.example.jmeter.opcua.simulator.SimulationServer;
+import com.example.jmeter.opcua.simulator.SimulationServerConfig;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of one {@code sample()} call of each sampler against the in-process simulation server.
+ * Run with {@code -prof gc} to get the allocation rate per sample.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.loggerContextFactory=org.apache.logging.log4j.simple.SimpleLoggerContextFactory")
+public class SamplerBenchmark {
+
+    private static final long TIMEOUT = 5000;
+
+    @State(Scope.Benchmark)
+    public static class ServerState {
+        @Param("1000")
+        public int serverNodes;
+
+        // Latency the server adds to every Read and Write request
+        @Param("0")
+        public long latencyMillis;
+
+        public SimulationServer server;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            server = new SimulationServer(new SimulationServerConfig()
+                    .setNodeCount(SimulationNodeType.BOOLEAN, serverNodes)
+                    .setLatencyMillis(latencyMillis));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            server.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SamplerState {
+        // Number of nodes read or written by the multi-node samplers per sample
+        @Param("100")
+        public int nodesPerSample;
+
+        OpcUaClient client;
+        OPCUAReadSingleSampler readSingle;
+        OPCUAMultipleReadAndAssertSampler readMultiple;
+        OPCUAPublishSampler publish;
+        OPCUAMultipleWriteSampler writeMultiple;
+
+        @Setup(Level.Trial)
+        public void setUp(ServerState serverState) throws Exception {
+            SimulationServer server = serverState.server;
+            client = OPCUAClientFactory.connect(server.getEndpointUrl(), server.getHost(), TIMEOUT, 0);
+
+            // Samplers find the session in the JMeter variables of the current thread
+            JMeterVariables variables = new JMeterVariables();
+            variables.putObject(OPCUASessions.CLIENT_VARIABLE, client);
+            JMeterContextService.getContext().setVariables(variables);
+
+            String namespaceIndex = String.valueOf(server.getNamespaceIndex());
+
+            readSingle = new OPCUAReadSingleSampler();
+            readSingle.setName("Read Single");
+            readSingle.setNodeIdNamespaceIndex(namespaceIndex);
+            readSingle.setNodeIdIdentifier(booleanNode(server, 0));
+            readSingle.setTimeout(String.valueOf(TIMEOUT));
+            readSingle.setExpectedValue("false");
+            readSingle.threadStarted();
+
+            List<List<String>> readRows = new ArrayList<>();
+            List<List<String>> writeRows = new ArrayList<>();
+            for (int i = 0; i < nodesPerSample; i++) {
+                readRows.add(Arrays.asList(namespaceIndex, booleanNode(server, i), "false"));
+                writeRows.add(Arrays.asList(namespaceIndex, booleanNode(server, i), "false"));
+            }
+
+            readMultiple = new OPCUAMultipleReadAndAssertSampler();
+            readMultiple.setName("Read Multiple");
+            readMultiple.setNodes(readRows);
+            readMultiple.setProperty(OPCUAMultipleReadAndAssertSampler.BATCH_READ, true);
+            readMultiple.setProperty(OPCUAMultipleReadAndAssertSampler.TIMEOUT, String.valueOf(TIMEOUT));
+            readMultiple.threadStarted();
+
+            publish = new OPCUAPublishSampler();
+            publish.setName("Publish");
+            publish.setNamespaceIndex(namespaceIndex);
+            publish.setIdentifier(booleanNode(server, 0));
+            publish.setValueToWrite("false");
+            publish.threadStarted();
+
+            writeMultiple = new OPCUAMultipleWriteSampler();
+            writeMultiple.setName("Write Multiple");
+            writeMultiple.setNodes(writeRows);
+            writeMultiple.setTimeout(String.valueOf(TIMEOUT));
+            writeMultiple.threadStarted();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            client.disconnect().get(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ConnectionState {
+        OPCUAConnectionSampler connect;
+        OPCUACloseSampler close;
+
+        @Setup(Level.Trial)
+        public void setUp(ServerState serverState) {
+            JMeterContextService.getContext().setVariables(new JMeterVariables());
+
+            connect = new OPCUAConnectionSampler();
+            connect.setName("Connect");
+            connect.setIpAddress(serverState.server.getHost());
+            connect.setPort(String.valueOf(serverState.server.getPort()));
+            connect.setProtocol("opc.tcp");
+            connect.setTimeout(String.valueOf(TIMEOUT));
+
+            close = new OPCUACloseSampler();
+            close.setName("Close");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SubscriptionState {
+        OpcUaClient client;
+        OPCUASubscriptionSampler subscription;
+
+        @Setup(Level.Trial)
+        public void setUp(ServerState serverState) throws Exception {
+            SimulationServer server = serverState.server;
+            client = OPCUAClientFactory.connect(server.getEndpointUrl(), server.getHost(), TIMEOUT, 0);
+
+            JMeterVariables variables = new JMeterVariables();
+            variables.putObject(OPCUASessions.CLIENT_VARIABLE, client);
+            JMeterContextService.getContext().setVariables(variables);
+
+            List<List<String>> rows = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                rows.add(Arrays.asList(String.valueOf(server.getNamespaceIndex()), booleanNode(server, i)));
+            }
+
+            subscription = new OPCUASubscriptionSampler();
+            subscription.setName("Subscription");
+            subscription.setProperty(OPCUANodeTable.toProperty(OPCUASubscriptionSampler.NODES, rows));
+            subscription.setPublishingInterval("50");
+            subscription.setSamplingInterval("25");
+            subscription.setDuration("100");
+            subscription.setTimeout(String.valueOf(TIMEOUT));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            client.disconnect().get(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Benchmark
+    public SampleResult readSingle(SamplerState state) {
+        return state.readSingle.sample(null);
+    }
+
+    @Benchmark
+    public SampleResult readMultiple(SamplerState state) {
+        return state.readMultiple.sample(null);
+    }
+
+    @Benchmark
+    public SampleResult publish(SamplerState state) {
+        return state.publish.sample(null);
+    }
+
+    @Benchmark
+    public SampleResult writeMultiple(SamplerState state) {
+        return state.writeMultiple.sample(null);
+    }
+
+    @Benchmark
+    public SampleResult connectAndClose(ConnectionState state) {
+        state.connect.sample(null);
+        return state.close.sample(null);
+    }
+
+    // Dominated by the 100 ms subscription duration; compare allocations rather than time
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public SampleResult subscription(SubscriptionState state) {
+        return state.subscription.sample(null);
+    }
+
+    // Identifiers come from the simulator, which numbers its nodes by type
+    private static String booleanNode(SimulationServer server, int index) {
+        return server.getNodeId(SimulationNodeType.BOOLEAN, index).getIdentifier().toString();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua.simulator;
+
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.serialization.SerializationContext;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExtensionObject;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryData;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadProcessedDetails;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadRawModifiedDetails;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic history of a simulated variable: one value every history interval, aligned to the epoch, for all
+ * time up to now. Values are computed when they are read, so history takes no memory, and continuation points
+ * hold the time to continue from, so the server keeps no state between pages.
+ */
+final class SimulationHistory {
+    private final SerializationContext serializationContext;
+    private final long intervalMillis;
+    private final int pageSize;
+
+    SimulationHistory(SerializationContext serializationContext, long intervalMillis, int pageSize) {
+        this.serializationContext = serializationContext;
+        this.intervalMillis = intervalMillis;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    HistoryReadResult readRaw(SimulationNodeType type, int index, ReadRawModifiedDetails details,
+                              ByteString continuationPoint) {
+        if (Boolean.TRUE.equals(details.getIsReadModified())) {
+            return failure(StatusCodes.Bad_HistoryOperationUnsupported);
+        }
+        long start = toMillis(details.getStartTime());
+        long end = toMillis(details.getEndTime());
+        if (start > end) {
+            return failure(StatusCodes.Bad_InvalidTimestampArgument);
+        }
+
+        // Values at start <= time < end, and never in the future
+        long first = continuationPoint != null && continuationPoint.isNotNull()
+                ? ByteBuffer.wrap(continuationPoint.bytesOrEmpty()).getLong()
+                : Math.floorDiv(start + intervalMillis - 1, intervalMillis);
+        long last = Math.floorDiv(Math.min(end - 1, System.currentTimeMillis()), intervalMillis);
+
+        long limit = details.getNumValuesPerNode() != null && details.getNumValuesPerNode().longValue() > 0
+                ? Math.min(pageSize, details.getNumValuesPerNode().longValue()) : pageSize;
+        List<DataValue> values = new ArrayList<>();
+        long tick = first;
+        for (; tick <= last && values.size() < limit; tick++) {
+            values.add(value(type.valueAt(index, tick), tick * intervalMillis));
+        }
+        return success(values, tick <= last ? tick : -1);
+    }
+
+    HistoryReadResult readProcessed(SimulationNodeType type, int index, ReadProcessedDetails details,
+                                    NodeId aggregate, ByteString continuationPoint) {
+        long start = toMillis(details.getStartTime());
+        long end = toMillis(details.getEndTime());
+        long processingInterval = details.getProcessingInterval() == null ? 0 : details.getProcessingInterval().longValue();
+        if (start > end || processingInterval <= 0) {
+            return failure(StatusCodes.Bad_InvalidTimestampArgument);
+        }
+        boolean count = Identifiers.AggregateFunction_Count.equals(aggregate);
+        if (!count && !Identifiers.AggregateFunction_Average.equals(aggregate)
+                && !Identifiers.AggregateFunction_Minimum.equals(aggregate)
+                && !Identifiers.AggregateFunction_Maximum.equals(aggregate)) {
+            return failure(StatusCodes.Bad_AggregateNotSupported);
+        }
+        if (!count && type == SimulationNodeType.STRING) {
+            return failure(StatusCodes.Bad_AggregateInvalidInputs);
+        }
+
+        long intervalStart = continuationPoint != null && continuationPoint.isNotNull()
+                ? ByteBuffer.wrap(continuationPoint.bytesOrEmpty()).getLong() : start;
+        long now = System.currentTimeMillis();
+        List<DataValue> results = new ArrayList<>();
+        for (; intervalStart < end && intervalStart <= now && results.size() < pageSize; intervalStart += processingInterval) {
+            long intervalEnd = Math.min(end, intervalStart + processingInterval);
+            long first = Math.floorDiv(intervalStart + intervalMillis - 1, intervalMillis);
+            long last = Math.floorDiv(Math.min(intervalEnd - 1, now), intervalMillis);
+
+            double sum = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            long values = 0;
+            for (long tick = first; tick <= last; tick++) {
+                Object raw = type.valueAt(index, tick);
+                double value = raw instanceof Boolean ? ((Boolean) raw ? 1 : 0)
+                        : raw instanceof Number ? ((Number) raw).doubleValue() : 0;
+                sum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                values++;
+            }
+
+            if (count) {
+                results.add(value((int) values, intervalStart));
+            } else if (values == 0) {
+                results.add(new DataValue(Variant.NULL_VALUE, new StatusCode(StatusCodes.Bad_NoData), toDateTime(intervalStart), null));
+            } else if (Identifiers.AggregateFunction_Average.equals(aggregate)) {
+                results.add(value(sum / values, intervalStart));
+            } else if (Identifiers.AggregateFunction_Minimum.equals(aggregate)) {
+                results.add(value(min, intervalStart));
+            } else {
+                results.add(value(max, intervalStart));
+            }
+        }
+        return success(results, intervalStart < end && intervalStart <= now ? intervalStart : -1);
+    }
+
+    private static DataValue value(Object value, long timeMillis) {
+        return new DataValue(new Variant(value), StatusCode.GOOD, toDateTime(timeMillis), null);
+    }
+
+    private static DateTime toDateTime(long timeMillis) {
+        return new DateTime(Instant.ofEpochMilli(timeMillis));
+    }
+
+    private HistoryReadResult success(List<DataValue> values, long next) {
+        ByteString continuationPoint = next < 0 ? ByteString.NULL_VALUE
+                : ByteString.of(ByteBuffer.allocate(Long.BYTES).putLong(next).array());
+        HistoryData historyData = new HistoryData(values.toArray(new DataValue[0]));
+        return new HistoryReadResult(StatusCode.GOOD, continuationPoint,
+                ExtensionObject.encode(serializationContext, historyData));
+    }
+
+    private static HistoryReadResult failure(long statusCode) {
+        return new HistoryReadResult(new StatusCode(statusCode), ByteString.NULL_VALUE, null);
+    }
+
+    private static long toMillis(DateTime time) {
+        // A missing end time means now
+        return time == null || time.isNull() ? System.currentTimeMillis() : time.getJavaTime();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua.simulator;
+
+import org.eclipse.milo.opcua.sdk.server.api.methods.AbstractMethodInvocationHandler;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaMethodNode;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.structured.Argument;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A simulated PLC method in the style of a batch start: it takes a recipe name and a quantity and returns a new
+ * batch number. A quantity below 1 is rejected with {@code Bad_OutOfRange}, so tests can check failed calls.
+ */
+final class SimulationMethod extends AbstractMethodInvocationHandler {
+    private static final Argument RECIPE = new Argument("Recipe", Identifiers.String, -1, null,
+            LocalizedText.english("Name of the recipe to run"));
+    private static final Argument QUANTITY = new Argument("Quantity", Identifiers.Int32, -1, null,
+            LocalizedText.english("Number of units to produce"));
+    private static final Argument BATCH_NUMBER = new Argument("BatchNumber", Identifiers.Int64, -1, null,
+            LocalizedText.english("Number of the started batch"));
+
+    private final AtomicLong batchNumbers = new AtomicLong();
+
+    SimulationMethod(UaMethodNode node) {
+        super(node);
+    }
+
+    @Override
+    public Argument[] getInputArguments() {
+        return new Argument[]{RECIPE, QUANTITY};
+    }
+
+    @Override
+    public Argument[] getOutputArguments() {
+        return new Argument[]{BATCH_NUMBER};
+    }
+
+    @Override
+    protected Variant[] invoke(InvocationContext context, Variant[] inputValues) throws UaException {
+        int quantity = (Integer) inputValues[1].getValue();
+        if (quantity < 1) {
+            throw new UaException(StatusCodes.Bad_OutOfRange, "Quantity must be at least 1");
+        }
+        return new Variant[]{new Variant(batchNumbers.incrementAndGet())};
+    }
+}
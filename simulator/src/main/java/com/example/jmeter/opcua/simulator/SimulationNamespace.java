@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua.simulator;
+
+import org.eclipse.milo.opcua.sdk.core.AccessLevel;
+import org.eclipse.milo.opcua.sdk.core.Reference;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.api.DataItem;
+import org.eclipse.milo.opcua.sdk.server.api.ManagedNamespaceWithLifecycle;
+import org.eclipse.milo.opcua.sdk.server.api.MonitoredItem;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaFolderNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaMethodNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.sdk.server.util.SubscriptionModel;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallMethodRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadDetails;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadProcessedDetails;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadRawModifiedDetails;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.WriteValue;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The simulated address space: one folder under Objects holding the configured variables, with optional
+ * request latency, periodic value changes and synthetic history, and optionally batch start methods.
+ */
+class SimulationNamespace extends ManagedNamespaceWithLifecycle {
+    private final SimulationServerConfig config;
+    private final SubscriptionModel subscriptionModel;
+    private final List<UaVariableNode> variables = new ArrayList<>();
+    private final List<SimulationNodeType> variableTypes = new ArrayList<>();
+    private final List<Integer> variableIndexes = new ArrayList<>();
+    private final Map<NodeId, Integer> variablePositions = new HashMap<>();
+
+    private SimulationHistory history;
+
+    private ScheduledFuture<?> changeTask;
+    private long tick;
+
+    SimulationNamespace(OpcUaServer server, SimulationServerConfig config) {
+        super(server, config.getNamespaceUri());
+        this.config = config;
+        this.subscriptionModel = new SubscriptionModel(server, this);
+        getLifecycleManager().addLifecycle(subscriptionModel);
+        getLifecycleManager().addStartupTask(this::createNodes);
+        getLifecycleManager().addStartupTask(this::startValueChanges);
+        getLifecycleManager().addShutdownTask(this::stopValueChanges);
+    }
+
+    private void createNodes() {
+        UaFolderNode folder = new UaFolderNode(getNodeContext(), newNodeId("Simulation"),
+                newQualifiedName("Simulation"), LocalizedText.english("Simulation"));
+        getNodeManager().addNode(folder);
+        folder.addReference(new Reference(folder.getNodeId(), Identifiers.Organizes,
+                Identifiers.ObjectsFolder.expanded(), false));
+
+        Set<AccessLevel> accessLevel = EnumSet.copyOf(AccessLevel.READ_WRITE);
+        if (config.getHistoryIntervalMillis() > 0) {
+            history = new SimulationHistory(getServer().getSerializationContext(),
+                    config.getHistoryIntervalMillis(), config.getHistoryPageSize());
+            accessLevel.add(AccessLevel.HistoryRead);
+        }
+
+        long identifier = 1;
+        for (SimulationNodeType type : SimulationNodeType.values()) {
+            for (int i = 0; i < config.getNodeCount(type); i++) {
+                String name = type.getNamePrefix() + (i + 1);
+                UaVariableNode node = new UaVariableNode.UaVariableNodeBuilder(getNodeContext())
+                        .setNodeId(newNodeId(identifier++))
+                        .setAccessLevel(accessLevel)
+                        .setUserAccessLevel(accessLevel)
+                        .setHistorizing(history != null)
+                        .setBrowseName(newQualifiedName(name))
+                        .setDisplayName(LocalizedText.english(name))
+                        .setDataType(type.getDataType())
+                        .setTypeDefinition(Identifiers.BaseDataVariableType)
+                        .build();
+                node.setValue(new DataValue(new Variant(type.valueAt(i, 0))));
+                getNodeManager().addNode(node);
+                folder.addOrganizes(node);
+
+                variables.add(node);
+                variableTypes.add(type);
+                variableIndexes.add(i);
+                variablePositions.put(node.getNodeId(), variables.size() - 1);
+            }
+        }
+
+        for (int i = 0; i < config.getMethodCount(); i++) {
+            String name = "StartBatch" + (i + 1);
+            UaMethodNode method = UaMethodNode.builder(getNodeContext())
+                    .setNodeId(newNodeId(identifier++))
+                    .setBrowseName(newQualifiedName(name))
+                    .setDisplayName(LocalizedText.english(name))
+                    .build();
+            SimulationMethod handler = new SimulationMethod(method);
+            method.setInputArguments(handler.getInputArguments());
+            method.setOutputArguments(handler.getOutputArguments());
+            method.setInvocationHandler(handler);
+            getNodeManager().addNode(method);
+            folder.addComponent(method);
+        }
+    }
+
+    private void startValueChanges() {
+        long interval = config.getChangeIntervalMillis();
+        if (interval > 0) {
+            changeTask = getServer().getScheduledExecutorService()
+                    .scheduleAtFixedRate(this::changeValues, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void stopValueChanges() {
+        if (changeTask != null) {
+            changeTask.cancel(false);
+        }
+    }
+
+    private void changeValues() {
+        tick++;
+        for (int i = 0; i < variables.size(); i++) {
+            Object value = variableTypes.get(i).valueAt(variableIndexes.get(i), tick);
+            variables.get(i).setValue(new DataValue(new Variant(value)));
+        }
+    }
+
+    @Override
+    public void read(ReadContext context, Double maxAge, TimestampsToReturn timestamps, List<ReadValueId> readValueIds) {
+        long delay = nextLatency();
+        if (delay > 0) {
+            getServer().getScheduledExecutorService().schedule(
+                    () -> super.read(context, maxAge, timestamps, readValueIds), delay, TimeUnit.MILLISECONDS);
+        } else {
+            super.read(context, maxAge, timestamps, readValueIds);
+        }
+    }
+
+    @Override
+    public void write(WriteContext context, List<WriteValue> writeValues) {
+        long delay = nextLatency();
+        if (delay > 0) {
+            getServer().getScheduledExecutorService().schedule(
+                    () -> super.write(context, writeValues), delay, TimeUnit.MILLISECONDS);
+        } else {
+            super.write(context, writeValues);
+        }
+    }
+
+    @Override
+    public void call(CallContext context, List<CallMethodRequest> requests) {
+        long delay = nextLatency();
+        if (delay > 0) {
+            getServer().getScheduledExecutorService().schedule(
+                    () -> super.call(context, requests), delay, TimeUnit.MILLISECONDS);
+        } else {
+            super.call(context, requests);
+        }
+    }
+
+    @Override
+    public void historyRead(HistoryReadContext context, HistoryReadDetails details, TimestampsToReturn timestamps,
+                            List<HistoryReadValueId> readValueIds) {
+        List<HistoryReadResult> results = new ArrayList<>(readValueIds.size());
+        for (int i = 0; i < readValueIds.size(); i++) {
+            HistoryReadValueId readValueId = readValueIds.get(i);
+            Integer position = variablePositions.get(readValueId.getNodeId());
+            SimulationNodeType type = position == null ? null : variableTypes.get(position);
+            int index = position == null ? 0 : variableIndexes.get(position);
+            ByteString continuationPoint = readValueId.getContinuationPoint();
+
+            if (position == null) {
+                results.add(failure(StatusCodes.Bad_NodeIdUnknown));
+            } else if (history == null) {
+                results.add(failure(StatusCodes.Bad_HistoryOperationUnsupported));
+            } else if (details instanceof ReadRawModifiedDetails) {
+                results.add(history.readRaw(type, index, (ReadRawModifiedDetails) details, continuationPoint));
+            } else if (details instanceof ReadProcessedDetails) {
+                ReadProcessedDetails processed = (ReadProcessedDetails) details;
+                NodeId[] aggregates = processed.getAggregateType();
+                if (aggregates == null || aggregates.length != readValueIds.size()) {
+                    results.add(failure(StatusCodes.Bad_AggregateListMismatch));
+                } else {
+                    results.add(history.readProcessed(type, index, processed, aggregates[i], continuationPoint));
+                }
+            } else {
+                results.add(failure(StatusCodes.Bad_HistoryOperationUnsupported));
+            }
+        }
+        context.success(results);
+    }
+
+    private static HistoryReadResult failure(long statusCode) {
+        return new HistoryReadResult(new StatusCode(statusCode), ByteString.NULL_VALUE, null);
+    }
+
+    private long nextLatency() {
+        long jitter = config.getLatencyJitterMillis();
+        return config.getLatencyMillis() + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+    }
+
+    @Override
+    public void onDataItemsCreated(List<DataItem> dataItems) {
+        subscriptionModel.onDataItemsCreated(dataItems);
+    }
+
+    @Override
+    public void onDataItemsModified(List<DataItem> dataItems) {
+        subscriptionModel.onDataItemsModified(dataItems);
+    }
+
+    @Override
+    public void onDataItemsDeleted(List<DataItem> dataItems) {
+        subscriptionModel.onDataItemsDeleted(dataItems);
+    }
+
+    @Override
+    public void onMonitoringModeChanged(List<MonitoredItem> monitoredItems) {
+        subscriptionModel.onMonitoringModeChanged(monitoredItems);
+    }
+}
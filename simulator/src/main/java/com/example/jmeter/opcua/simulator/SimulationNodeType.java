@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua.simulator;
+
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+
+/**
+ * The variable types the simulator can create. Nodes of each type get consecutive numeric identifiers,
+ * in the order of this enum.
+ */
+public enum SimulationNodeType {
+    BOOLEAN("Bool", Identifiers.Boolean),
+    INT32("Int", Identifiers.Int32),
+    DOUBLE("Double", Identifiers.Double),
+    STRING("String", Identifiers.String);
+
+    private final String namePrefix;
+    private final NodeId dataType;
+
+    SimulationNodeType(String namePrefix, NodeId dataType) {
+        this.namePrefix = namePrefix;
+        this.dataType = dataType;
+    }
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public NodeId getDataType() {
+        return dataType;
+    }
+
+    /**
+     * The value of the node at the given index after the given number of value changes. Tick 0 is the
+     * initial value; neighbouring nodes are offset so that not all of them hold the same value.
+     */
+    public Object valueAt(int index, long tick) {
+        long n = index + tick;
+        switch (this) {
+            case BOOLEAN:
+                return tick > 0 && n % 2 == 1;
+            case INT32:
+                return (int) n;
+            case DOUBLE:
+                return Math.sin(n * 0.1) * 100.0;
+            default:
+                return namePrefix + n;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua.simulator;
+
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfig;
+import org.eclipse.milo.opcua.sdk.server.identity.AnonymousIdentityValidator;
+import org.eclipse.milo.opcua.sdk.server.identity.CompositeValidator;
+import org.eclipse.milo.opcua.sdk.server.identity.IdentityValidator;
+import org.eclipse.milo.opcua.sdk.server.identity.UsernameIdentityValidator;
+import org.eclipse.milo.opcua.sdk.server.identity.X509IdentityValidator;
+import org.eclipse.milo.opcua.stack.core.security.DefaultCertificateManager;
+import org.eclipse.milo.opcua.stack.core.security.DefaultTrustListManager;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MessageSecurityMode;
+import org.eclipse.milo.opcua.stack.core.types.structured.UserTokenPolicy;
+import org.eclipse.milo.opcua.stack.core.util.SelfSignedCertificateBuilder;
+import org.eclipse.milo.opcua.stack.core.util.SelfSignedCertificateGenerator;
+import org.eclipse.milo.opcua.stack.server.EndpointConfiguration;
+import org.eclipse.milo.opcua.stack.server.security.DefaultServerCertificateValidator;
+import org.eclipse.milo.opcua.stack.server.security.ServerCertificateValidator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfig.USER_TOKEN_POLICY_ANONYMOUS;
+import static org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfig.USER_TOKEN_POLICY_USERNAME;
+import static org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfig.USER_TOKEN_POLICY_X509;
+
+/**
+ * Local OPC UA server for benchmarks, integration tests and regression runs without a real PLC. It accepts
+ * anonymous connections without security and serves the variables described by a {@link SimulationServerConfig};
+ * optionally it also serves Basic256Sha256 endpoints and user name and certificate tokens.
+ *
+ * <p>Can be embedded ({@code new SimulationServer(config)}, then {@link #close()}) or run standalone with
+ * {@code key=value} arguments, see {@link SimulationServerConfig#fromProperties(Properties)}.
+ */
+public final class SimulationServer implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(SimulationServer.class);
+
+    private final SimulationServerConfig config;
+    private final OpcUaServer server;
+    private final SimulationNamespace namespace;
+    private final DefaultTrustListManager trustListManager;
+    private final File pkiDir;
+    private final int port;
+
+    public SimulationServer(SimulationServerConfig config) throws Exception {
+        this.config = config;
+        this.port = config.getPort() > 0 ? config.getPort() : freePort();
+        this.pkiDir = Files.createTempDirectory("opcua-simulator-pki").toFile();
+        this.trustListManager = new DefaultTrustListManager(pkiDir);
+
+        String applicationUri = config.getNamespaceUri() + ":server";
+        Map<String, String> users = parseUsers(config.getUsers());
+
+        List<UserTokenPolicy> tokenPolicies = new ArrayList<>();
+        List<IdentityValidator<?>> identityValidators = new ArrayList<>();
+        tokenPolicies.add(USER_TOKEN_POLICY_ANONYMOUS);
+        identityValidators.add(AnonymousIdentityValidator.INSTANCE);
+        if (!users.isEmpty()) {
+            tokenPolicies.add(USER_TOKEN_POLICY_USERNAME);
+            identityValidators.add(new UsernameIdentityValidator(false,
+                    challenge -> challenge.getPassword().equals(users.get(challenge.getUsername()))));
+        }
+        if (config.isSecure()) {
+            tokenPolicies.add(USER_TOKEN_POLICY_X509);
+            identityValidators.add(new X509IdentityValidator(certificate -> true));
+        }
+
+        Set<EndpointConfiguration> endpoints = new LinkedHashSet<>();
+        endpoints.add(endpoint(port, SecurityPolicy.None, MessageSecurityMode.None, null, tokenPolicies));
+        DefaultCertificateManager certificateManager = new DefaultCertificateManager();
+        ServerCertificateValidator certificateValidator = new DefaultServerCertificateValidator(trustListManager);
+        if (config.isSecure()) {
+            KeyPair keyPair = SelfSignedCertificateGenerator.generateRsaKeyPair(2048);
+            X509Certificate certificate = new SelfSignedCertificateBuilder(keyPair)
+                    .setCommonName("JMeter OPC UA Simulation Server")
+                    .setApplicationUri(applicationUri)
+                    .addDnsName(config.getHost())
+                    .addIpAddress(config.getHost())
+                    .build();
+            certificateManager = new DefaultCertificateManager(keyPair, certificate);
+            // Any client certificate is accepted, so test clients need no trust list exchange
+            certificateValidator = new AcceptingCertificateValidator();
+            endpoints.add(endpoint(port, SecurityPolicy.Basic256Sha256, MessageSecurityMode.Sign, certificate, tokenPolicies));
+            endpoints.add(endpoint(port, SecurityPolicy.Basic256Sha256, MessageSecurityMode.SignAndEncrypt, certificate,
+                    tokenPolicies));
+        }
+
+        // The validators accept different identity types, which CompositeValidator cannot express
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        IdentityValidator<?> identityValidator = new CompositeValidator(identityValidators);
+
+        OpcUaServerConfig serverConfig = OpcUaServerConfig.builder()
+                .setApplicationUri(applicationUri)
+                .setApplicationName(LocalizedText.english("JMeter OPC UA Simulation Server"))
+                .setProductUri(config.getNamespaceUri())
+                .setEndpoints(endpoints)
+                .setCertificateManager(certificateManager)
+                .setTrustListManager(trustListManager)
+                .setCertificateValidator(certificateValidator)
+                .setIdentityValidator(identityValidator)
+                .build();
+
+        this.server = new OpcUaServer(serverConfig);
+        this.namespace = new SimulationNamespace(server, config);
+        namespace.startup();
+        server.startup().get(10, TimeUnit.SECONDS);
+    }
+
+    public String getHost() {
+        return config.getHost();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getEndpointUrl() {
+        return "opc.tcp://" + config.getHost() + ":" + port;
+    }
+
+    public int getNamespaceIndex() {
+        return namespace.getNamespaceIndex().intValue();
+    }
+
+    /**
+     * The numeric identifier of the first node of a type; the nodes of a type have consecutive identifiers.
+     */
+    public int getFirstIdentifier(SimulationNodeType type) {
+        int identifier = 1;
+        for (SimulationNodeType other : SimulationNodeType.values()) {
+            if (other == type) {
+                break;
+            }
+            identifier += config.getNodeCount(other);
+        }
+        return identifier;
+    }
+
+    /**
+     * @param index zero-based index of the node among the nodes of its type
+     */
+    public NodeId getNodeId(SimulationNodeType type, int index) {
+        if (index < 0 || index >= config.getNodeCount(type)) {
+            throw new IndexOutOfBoundsException(type + " node " + index + " of " + config.getNodeCount(type));
+        }
+        return new NodeId(getNamespaceIndex(), getFirstIdentifier(type) + index);
+    }
+
+    /**
+     * The folder holding the simulated nodes; it is the object to call the methods on.
+     */
+    public NodeId getFolderNodeId() {
+        return new NodeId(getNamespaceIndex(), "Simulation");
+    }
+
+    /**
+     * @param index zero-based index of the method; methods are numbered after all variables
+     */
+    public NodeId getMethodNodeId(int index) {
+        if (index < 0 || index >= config.getMethodCount()) {
+            throw new IndexOutOfBoundsException("Method " + index + " of " + config.getMethodCount());
+        }
+        int identifier = 1;
+        for (SimulationNodeType type : SimulationNodeType.values()) {
+            identifier += config.getNodeCount(type);
+        }
+        return new NodeId(getNamespaceIndex(), identifier + index);
+    }
+
+    @Override
+    public void close() throws Exception {
+        namespace.shutdown();
+        server.shutdown().get(10, TimeUnit.SECONDS);
+        trustListManager.close();
+        deleteRecursively(pkiDir);
+    }
+
+    private EndpointConfiguration endpoint(int port, SecurityPolicy securityPolicy, MessageSecurityMode securityMode,
+                                           X509Certificate certificate, List<UserTokenPolicy> tokenPolicies) {
+        return EndpointConfiguration.newBuilder()
+                .setBindAddress(config.getHost())
+                .setHostname(config.getHost())
+                .setBindPort(port)
+                .setSecurityPolicy(securityPolicy)
+                .setSecurityMode(securityMode)
+                .setCertificate(certificate)
+                .addTokenPolicies(tokenPolicies.toArray(new UserTokenPolicy[0]))
+                .build();
+    }
+
+    private static Map<String, String> parseUsers(String users) {
+        Map<String, String> passwords = new HashMap<>();
+        for (String user : users.split(",")) {
+            int separator = user.indexOf(':');
+            if (separator > 0) {
+                passwords.put(user.substring(0, separator).trim(), user.substring(separator + 1).trim());
+            }
+        }
+        return passwords;
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties properties = new Properties();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                System.err.println("Ignoring argument " + arg + ", expected key=value");
+                continue;
+            }
+            properties.setProperty(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        SimulationServerConfig config = SimulationServerConfig.fromProperties(properties);
+        SimulationServer simulationServer = new SimulationServer(config);
+
+        for (SimulationNodeType type : SimulationNodeType.values()) {
+            int count = config.getNodeCount(type);
+            if (count > 0) {
+                int first = simulationServer.getFirstIdentifier(type);
+                log.info("{} {} nodes: ns={};i={} to ns={};i={}", count, type, simulationServer.getNamespaceIndex(), first,
+                        simulationServer.getNamespaceIndex(), first + count - 1);
+            }
+        }
+        if (config.getMethodCount() > 0) {
+            log.info("{} methods on {}: {} to {}", config.getMethodCount(),
+                    simulationServer.getFolderNodeId().toParseableString(),
+                    simulationServer.getMethodNodeId(0).toParseableString(),
+                    simulationServer.getMethodNodeId(config.getMethodCount() - 1).toParseableString());
+        }
+        log.info("Simulation server listening on {}{}", simulationServer.getEndpointUrl(),
+                config.isSecure() ? " (None and Basic256Sha256 endpoints)" : "");
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                simulationServer.close();
+            } catch (Exception ex) {
+                log.error("Error stopping the simulation server", ex);
+            }
+            stopped.countDown();
+        }));
+        stopped.await();
+    }
+
+    private static final class AcceptingCertificateValidator implements ServerCertificateValidator {
+        @Override
+        public void validateCertificateChain(List<X509Certificate> certificateChain) {
+        }
+
+        @Override
+        public void validateCertificateChain(List<X509Certificate> certificateChain, String applicationUri) {
+        }
+    }
+}
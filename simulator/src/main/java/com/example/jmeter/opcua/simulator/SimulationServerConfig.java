@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua.simulator;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Settings of a {@link SimulationServer}: where it listens, which nodes it serves and how it behaves.
+ */
+public final class SimulationServerConfig {
+    public static final String DEFAULT_NAMESPACE_URI = "urn:jmeter:opcua:simulator";
+
+    private String host = "127.0.0.1";
+    private int port;
+    private String namespaceUri = DEFAULT_NAMESPACE_URI;
+    private final Map<SimulationNodeType, Integer> nodeCounts = new EnumMap<>(SimulationNodeType.class);
+    private long latencyMillis;
+    private long latencyJitterMillis;
+    private long changeIntervalMillis;
+    private int methodCount;
+    private long historyIntervalMillis;
+    private int historyPageSize = 1000;
+    private boolean secure;
+    private String users = "";
+
+    public SimulationServerConfig() {
+        for (SimulationNodeType type : SimulationNodeType.values()) {
+            nodeCounts.put(type, 0);
+        }
+    }
+
+    /**
+     * Reads the settings from properties, for example the command line of the standalone server. Keys are
+     * {@code host}, {@code port}, {@code namespaceUri}, {@code booleans}, {@code ints}, {@code doubles},
+     * {@code strings}, {@code methods}, {@code latency}, {@code latencyJitter}, {@code changeInterval},
+     * {@code historyInterval}, {@code historyPageSize}, {@code secure} and {@code users}.
+     */
+    public static SimulationServerConfig fromProperties(Properties properties) {
+        SimulationServerConfig config = new SimulationServerConfig();
+        config.setHost(properties.getProperty("host", config.getHost()));
+        config.setPort(Integer.parseInt(properties.getProperty("port", "4840")));
+        config.setNamespaceUri(properties.getProperty("namespaceUri", config.getNamespaceUri()));
+        config.setNodeCount(SimulationNodeType.BOOLEAN, Integer.parseInt(properties.getProperty("booleans", "1000")));
+        config.setNodeCount(SimulationNodeType.INT32, Integer.parseInt(properties.getProperty("ints", "0")));
+        config.setNodeCount(SimulationNodeType.DOUBLE, Integer.parseInt(properties.getProperty("doubles", "0")));
+        config.setNodeCount(SimulationNodeType.STRING, Integer.parseInt(properties.getProperty("strings", "0")));
+        config.setMethodCount(Integer.parseInt(properties.getProperty("methods", "0")));
+        config.setLatencyMillis(Long.parseLong(properties.getProperty("latency", "0")));
+        config.setLatencyJitterMillis(Long.parseLong(properties.getProperty("latencyJitter", "0")));
+        config.setChangeIntervalMillis(Long.parseLong(properties.getProperty("changeInterval", "0")));
+        config.setHistoryIntervalMillis(Long.parseLong(properties.getProperty("historyInterval", "0")));
+        config.setHistoryPageSize(Integer.parseInt(properties.getProperty("historyPageSize", "1000")));
+        config.setSecure(Boolean.parseBoolean(properties.getProperty("secure", "false")));
+        config.setUsers(properties.getProperty("users", ""));
+        return config;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public SimulationServerConfig setHost(String host) {
+        this.host = host;
+        return this;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @param port the TCP port to listen on; 0 picks a free port
+     */
+    public SimulationServerConfig setPort(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public String getNamespaceUri() {
+        return namespaceUri;
+    }
+
+    public SimulationServerConfig setNamespaceUri(String namespaceUri) {
+        this.namespaceUri = namespaceUri;
+        return this;
+    }
+
+    public int getNodeCount(SimulationNodeType type) {
+        return nodeCounts.get(type);
+    }
+
+    public SimulationServerConfig setNodeCount(SimulationNodeType type, int count) {
+        nodeCounts.put(type, Math.max(0, count));
+        return this;
+    }
+
+    public int getMethodCount() {
+        return methodCount;
+    }
+
+    /**
+     * @param methodCount number of batch start methods on the simulation folder
+     */
+    public SimulationServerConfig setMethodCount(int methodCount) {
+        this.methodCount = Math.max(0, methodCount);
+        return this;
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * @param latencyMillis delay added before the server answers each Read, Write or Call request
+     */
+    public SimulationServerConfig setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = Math.max(0, latencyMillis);
+        return this;
+    }
+
+    public long getLatencyJitterMillis() {
+        return latencyJitterMillis;
+    }
+
+    /**
+     * @param latencyJitterMillis random extra delay, up to this value, added to the latency of each request
+     */
+    public SimulationServerConfig setLatencyJitterMillis(long latencyJitterMillis) {
+        this.latencyJitterMillis = Math.max(0, latencyJitterMillis);
+        return this;
+    }
+
+    public long getChangeIntervalMillis() {
+        return changeIntervalMillis;
+    }
+
+    /**
+     * @param changeIntervalMillis how often every node gets a new value; 0 keeps the values constant
+     */
+    public SimulationServerConfig setChangeIntervalMillis(long changeIntervalMillis) {
+        this.changeIntervalMillis = Math.max(0, changeIntervalMillis);
+        return this;
+    }
+
+    public long getHistoryIntervalMillis() {
+        return historyIntervalMillis;
+    }
+
+    /**
+     * @param historyIntervalMillis spacing of the values in the history of every node; 0 serves no history
+     */
+    public SimulationServerConfig setHistoryIntervalMillis(long historyIntervalMillis) {
+        this.historyIntervalMillis = Math.max(0, historyIntervalMillis);
+        return this;
+    }
+
+    public int getHistoryPageSize() {
+        return historyPageSize;
+    }
+
+    /**
+     * @param historyPageSize most values returned per node by one HistoryRead before a continuation point
+     */
+    public SimulationServerConfig setHistoryPageSize(int historyPageSize) {
+        this.historyPageSize = Math.max(1, historyPageSize);
+        return this;
+    }
+
+    public boolean isSecure() {
+        return secure;
+    }
+
+    /**
+     * @param secure also serve Basic256Sha256 Sign and SignAndEncrypt endpoints with a self-signed server
+     *               certificate; client certificates are accepted without a trust list
+     */
+    public SimulationServerConfig setSecure(boolean secure) {
+        this.secure = secure;
+        return this;
+    }
+
+    public String getUsers() {
+        return users;
+    }
+
+    /**
+     * @param users {@code user:password} pairs separated by commas that may activate sessions with a user
+     *              name token; empty offers no user name token
+     */
+    public SimulationServerConfig setUsers(String users) {
+        this.users = users == null ? "" : users.trim();
+        return this;
+    }
+}
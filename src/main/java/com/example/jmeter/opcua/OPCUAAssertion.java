@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+
+/**
+ * An expected value compiled once into a predicate on the {@link DataValue} read from a node. Values are tested
+ * directly, without converting them to text. Supported expressions:
+ * <ul>
+ *     <li>{@code 42}, {@code true}, {@code text}: equal to the value, parsed to the type of the value read</li>
+ *     <li>{@code 12.5 +- 0.1}: a number within the tolerance</li>
+ *     <li>{@code [10, 20]}: a number within the inclusive range; {@code > 10}, {@code >= 10}, {@code < 20} and
+ *     {@code <= 20} compare against one bound</li>
+ *     <li>{@code &0x0C}: all bits of the mask set; {@code &0x0C=0x04}: the masked bits equal to the value</li>
+ *     <li>{@code status:good}: a good status code, whatever the value</li>
+ *     <li>{@code =>5}: a leading {@code =} compares the rest of the text literally</li>
+ * </ul>
+ * Expected values written before the operators existed keep their meaning: text that looks like an operator but
+ * has no valid operand is compared literally, and the numeric operators compare a value that is not a number,
+ * such as a String, literally against the whole expression.
+ */
+public abstract class OPCUAAssertion {
+    private final String expression;
+
+    private OPCUAAssertion(String expression) {
+        this.expression = expression;
+    }
+
+    /**
+     * Compiles an expression.
+     */
+    public static OPCUAAssertion compile(String expression) {
+        String text = expression.trim();
+        Equals literal = new Equals(expression, expression);
+        try {
+            if (text.startsWith("=")) {
+                return new Equals(expression, expression.substring(expression.indexOf('=') + 1));
+            }
+            if (text.equalsIgnoreCase("status:good")) {
+                return new StatusGood(expression);
+            }
+            if (text.startsWith("&")) {
+                int separator = text.indexOf('=');
+                long mask = parseLong(separator < 0 ? text.substring(1) : text.substring(1, separator));
+                long bits = separator < 0 ? mask : parseLong(text.substring(separator + 1));
+                return new BitMask(expression, literal, mask, bits);
+            }
+            if (text.startsWith("[") && text.endsWith("]") && text.indexOf(',') > 0) {
+                int separator = text.indexOf(',');
+                return new Range(expression, literal, parseDouble(text.substring(1, separator)), true,
+                        parseDouble(text.substring(separator + 1, text.length() - 1)), true);
+            }
+            if (text.startsWith(">=")) {
+                return new Range(expression, literal, parseDouble(text.substring(2)), true, Double.POSITIVE_INFINITY, true);
+            }
+            if (text.startsWith(">")) {
+                return new Range(expression, literal, parseDouble(text.substring(1)), false, Double.POSITIVE_INFINITY, true);
+            }
+            if (text.startsWith("<=")) {
+                return new Range(expression, literal, Double.NEGATIVE_INFINITY, true, parseDouble(text.substring(2)), true);
+            }
+            if (text.startsWith("<")) {
+                return new Range(expression, literal, Double.NEGATIVE_INFINITY, true, parseDouble(text.substring(1)), false);
+            }
+            int tolerance = text.indexOf("+-");
+            if (tolerance > 0) {
+                return new Tolerance(expression, literal, parseDouble(text.substring(0, tolerance)),
+                        Math.abs(parseDouble(text.substring(tolerance + 2))));
+            }
+        } catch (NumberFormatException ex) {
+            // Not an operator after all, such as the text "<none>"
+        }
+        return literal;
+    }
+
+    /**
+     * Tests a value read from a node. A value that is null, or not a number for the numeric predicates, fails.
+     */
+    public boolean test(DataValue dataValue) {
+        Object actual = dataValue.getValue().getValue();
+        return actual != null && test(actual);
+    }
+
+    protected abstract boolean test(Object actual);
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private static double parseDouble(String text) {
+        return Double.parseDouble(text.trim());
+    }
+
+    private static long parseLong(String text) {
+        String trimmed = text.trim();
+        if (trimmed.startsWith("0x") || trimmed.startsWith("0X")) {
+            return Long.parseUnsignedLong(trimmed.substring(2), 16);
+        }
+        if (trimmed.startsWith("0b") || trimmed.startsWith("0B")) {
+            return Long.parseUnsignedLong(trimmed.substring(2), 2);
+        }
+        return Long.parseLong(trimmed);
+    }
+
+    private static final class Equals extends OPCUAAssertion {
+        // Marks expected text that is not a valid value of the type read
+        private static final Object INVALID = new Object();
+
+        private final String text;
+        // Expected value parsed for the type of the last value read; replaced as a whole, so no locking is needed
+        private volatile Parsed parsed;
+
+        private Equals(String expression, String text) {
+            super(expression);
+            this.text = text;
+        }
+
+        @Override
+        protected boolean test(Object actual) {
+            OPCUAValueCodec.ValueType type = OPCUAValueCodec.forValue(actual);
+            if (type == null) {
+                // Arrays and structures are compared by their text
+                return actual.toString().equals(text);
+            }
+            Parsed current = parsed;
+            if (current == null || current.type != type) {
+                Object value;
+                try {
+                    value = type.parse(text);
+                } catch (IllegalArgumentException ex) {
+                    value = INVALID;
+                }
+                current = new Parsed(type, value);
+                parsed = current;
+            }
+            return current.value != INVALID && type.matches(actual, current.value);
+        }
+
+        private static final class Parsed {
+            private final OPCUAValueCodec.ValueType type;
+            private final Object value;
+
+            private Parsed(OPCUAValueCodec.ValueType type, Object value) {
+                this.type = type;
+                this.value = value;
+            }
+        }
+    }
+
+    /**
+     * An operator on numbers; values that are not numbers are compared literally against the whole expression.
+     */
+    private abstract static class Numeric extends OPCUAAssertion {
+        private final Equals literal;
+
+        private Numeric(String expression, Equals literal) {
+            super(expression);
+            this.literal = literal;
+        }
+
+        @Override
+        protected final boolean test(Object actual) {
+            return actual instanceof Number ? test((Number) actual) : literal.test(actual);
+        }
+
+        protected abstract boolean test(Number actual);
+    }
+
+    private static final class Tolerance extends Numeric {
+        private final double expected;
+        private final double tolerance;
+
+        private Tolerance(String expression, Equals literal, double expected, double tolerance) {
+            super(expression, literal);
+            this.expected = expected;
+            this.tolerance = tolerance;
+        }
+
+        @Override
+        protected boolean test(Number actual) {
+            return Math.abs(actual.doubleValue() - expected) <= tolerance;
+        }
+    }
+
+    private static final class Range extends Numeric {
+        private final double min;
+        private final boolean minInclusive;
+        private final double max;
+        private final boolean maxInclusive;
+
+        private Range(String expression, Equals literal, double min, boolean minInclusive, double max,
+                      boolean maxInclusive) {
+            super(expression, literal);
+            this.min = min;
+            this.minInclusive = minInclusive;
+            this.max = max;
+            this.maxInclusive = maxInclusive;
+        }
+
+        @Override
+        protected boolean test(Number actual) {
+            double value = actual.doubleValue();
+            return (minInclusive ? value >= min : value > min) && (maxInclusive ? value <= max : value < max);
+        }
+    }
+
+    private static final class BitMask extends Numeric {
+        private final long mask;
+        private final long bits;
+
+        private BitMask(String expression, Equals literal, long mask, long bits) {
+            super(expression, literal);
+            this.mask = mask;
+            this.bits = bits;
+        }
+
+        @Override
+        protected boolean test(Number actual) {
+            // Floating point values have no bits to test
+            if (actual instanceof Double || actual instanceof Float) {
+                return false;
+            }
+            return (actual.longValue() & mask) == bits;
+        }
+    }
+
+    private static final class StatusGood extends OPCUAAssertion {
+        private StatusGood(String expression) {
+            super(expression);
+        }
+
+        @Override
+        public boolean test(DataValue dataValue) {
+            StatusCode statusCode = dataValue.getStatusCode();
+            return statusCode == null || statusCode.isGood();
+        }
+
+        @Override
+        protected boolean test(Object actual) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseDirection;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseResultMask;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseNextResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.ViewDescription;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * Walks the address space from a starting node and writes the numeric NodeIds of the variables found to a node
+ * catalogue (see {@link OPCUANodeCatalogue}), which the other samplers accept as their node list file. Several
+ * Browse requests, each for a batch of nodes, are kept in flight, and continuation points are followed with
+ * BrowseNext before new nodes are browsed so that the server can release them early.
+ */
+public class OPCUABrowseSampler extends AbstractSampler {
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LogManager.getLogger(OPCUABrowseSampler.class);
+
+    public static final String START_NODE = "OPCUABrowseSampler.startNode";
+    public static final String NAMESPACE = "OPCUABrowseSampler.namespace";
+    public static final String PARALLELISM = "OPCUABrowseSampler.parallelism";
+    public static final String NODES_PER_REQUEST = "OPCUABrowseSampler.nodesPerRequest";
+    public static final String MAX_REFERENCES = "OPCUABrowseSampler.maxReferences";
+    public static final String CATALOGUE_FILE = "OPCUABrowseSampler.catalogueFile";
+    public static final String REUSE_CATALOGUE = "OPCUABrowseSampler.reuseCatalogue";
+    public static final String TIMEOUT = "OPCUABrowseSampler.timeout";
+
+    public void setStartNode(String startNode) {
+        setProperty(START_NODE, startNode);
+    }
+
+    public String getStartNode() {
+        return getPropertyAsString(START_NODE);
+    }
+
+    public void setNamespace(String namespace) {
+        setProperty(NAMESPACE, namespace);
+    }
+
+    public String getNamespace() {
+        return getPropertyAsString(NAMESPACE);
+    }
+
+    public void setParallelism(String parallelism) {
+        setProperty(PARALLELISM, parallelism);
+    }
+
+    public String getParallelism() {
+        return getPropertyAsString(PARALLELISM);
+    }
+
+    public void setNodesPerRequest(String nodesPerRequest) {
+        setProperty(NODES_PER_REQUEST, nodesPerRequest);
+    }
+
+    public String getNodesPerRequest() {
+        return getPropertyAsString(NODES_PER_REQUEST);
+    }
+
+    public void setMaxReferences(String maxReferences) {
+        setProperty(MAX_REFERENCES, maxReferences);
+    }
+
+    public String getMaxReferences() {
+        return getPropertyAsString(MAX_REFERENCES);
+    }
+
+    public void setCatalogueFile(String catalogueFile) {
+        setProperty(CATALOGUE_FILE, catalogueFile);
+    }
+
+    public String getCatalogueFile() {
+        return getPropertyAsString(CATALOGUE_FILE);
+    }
+
+    public void setReuseCatalogue(boolean reuseCatalogue) {
+        setProperty(REUSE_CATALOGUE, reuseCatalogue);
+    }
+
+    public boolean isReuseCatalogue() {
+        return getPropertyAsBoolean(REUSE_CATALOGUE);
+    }
+
+    public void setTimeout(String timeout) {
+        setProperty(TIMEOUT, timeout);
+    }
+
+    public String getTimeout() {
+        return getPropertyAsString(TIMEOUT);
+    }
+
+    @Override
+    public SampleResult sample(Entry e) {
+        SampleResult result = new SampleResult();
+        result.setSampleLabel(getName());
+
+        String catalogueFile = getCatalogueFile().trim();
+        int parallelism = Math.max(1, (int) parseLong(getParallelism(), 8));
+        long timeout = parseLong(getTimeout(), 3000);
+
+        result.sampleStart(); // Start timing
+
+        try {
+            if (catalogueFile.isEmpty()) {
+                throw new IllegalArgumentException("No catalogue file configured.");
+            }
+            if (isReuseCatalogue() && Files.exists(Paths.get(catalogueFile))) {
+                // A catalogue from an earlier run is used as it is, without connecting to the server. Loading it
+                // here shares it with the samplers that read it later
+                int nodeCount = OPCUANodeList.get(catalogueFile).size();
+                result.setResponseMessage(String.format("Reused catalogue %s with %d nodes.", catalogueFile, nodeCount));
+                result.setSuccessful(true);
+                return result;
+            }
+
+            try (OPCUASessions.Lease lease = OPCUASessions.acquire(getThreadContext().getVariables())) {
+                if (lease == null) {
+                    log.error("OPC UA client connection is not available.");
+                    result.setResponseMessage("OPC UA client connection is not available.");
+                    result.setSuccessful(false);
+                    return result;
+                }
+                // Time spent waiting for a pooled session is reported as connect time
+                result.connectEnd();
+                OpcUaClient opcUaClient = lease.getClient();
+
+                String startNode = getStartNode().trim();
+                NodeId start = startNode.isEmpty() ? Identifiers.ObjectsFolder : NodeId.parse(startNode);
+                String namespace = getNamespace().trim();
+
+                OPCUAServerLimits limits = OPCUAServerLimits.get(opcUaClient, timeout);
+                Browser browser = new Browser(opcUaClient,
+                        namespace.isEmpty() ? -1 : Integer.parseInt(namespace),
+                        parallelism,
+                        OPCUAServerLimits.chunkSize(limits.getMaxNodesPerBrowse(),
+                                (int) parseLong(getNodesPerRequest(), 100), Integer.MAX_VALUE),
+                        uint(parseLong(getMaxReferences(), 1000)),
+                        timeout);
+                List<NodeId> variables = browser.run(start);
+                OPCUANodeCatalogue.write(catalogueFile, variables);
+
+                String responseMessage = String.format("Browsed %d nodes in %d Browse and %d BrowseNext requests "
+                                + "(up to %d in flight); wrote %d variables to %s.",
+                        browser.browsedNodes, browser.browseRequests, browser.browseNextRequests, parallelism,
+                        variables.size(), catalogueFile);
+                if (browser.nonNumericVariables > 0) {
+                    responseMessage += String.format("%nSkipped %d variables without a numeric NodeId.",
+                            browser.nonNumericVariables);
+                }
+                if (browser.failedNodes > 0) {
+                    responseMessage += String.format("%nFailed to browse %d nodes.", browser.failedNodes);
+                }
+                if (OPCUAResultVerbosity.get().logs()) {
+                    log.info(responseMessage);
+                }
+                result.setResponseMessage(responseMessage);
+                result.setResponseData(responseMessage, "UTF-8");
+                result.setSuccessful(browser.failedNodes == 0);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.setResponseMessage("Browse interrupted.");
+            result.setSuccessful(false);
+        } catch (Exception ex) {
+            log.error("Error browsing the address space: " + ex.getMessage(), ex);
+            result.setResponseMessage("Error browsing the address space: " + ex.getMessage());
+            if (OPCUAResultVerbosity.get().describes(false)) {
+                result.setResponseData("Exception: " + ex.getMessage(), "UTF-8");
+            }
+            result.setSuccessful(false);
+        } finally {
+            result.sampleEnd(); // End timing
+            OPCUAReconnectMonitor.sampleCompleted(getThreadContext().getVariables(), result);
+        }
+
+        return result;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException | NullPointerException ex) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Breadth-first walk of the hierarchical references. Requests are sent asynchronously and their responses
+     * queued, so all bookkeeping happens on the sampler thread without locking.
+     */
+    private static final class Browser {
+        private static final ViewDescription VIEW = new ViewDescription(NodeId.NULL_VALUE, DateTime.MIN_VALUE, uint(0));
+        private static final UInteger NODE_CLASS_MASK = uint(NodeClass.Object.getValue()
+                | NodeClass.Variable.getValue() | NodeClass.View.getValue());
+        private static final UInteger RESULT_MASK = uint(BrowseResultMask.ReferenceTypeId.getValue()
+                | BrowseResultMask.NodeClass.getValue());
+
+        private final OpcUaClient client;
+        private final int namespace;
+        private final int chunkSize;
+        private final UInteger maxReferences;
+        private final long timeout;
+        private int parallelism;
+
+        private final Set<NodeId> visited = new HashSet<>();
+        private final Deque<NodeId> pending = new ArrayDeque<>();
+        private final Deque<ByteString> continuationPoints = new ArrayDeque<>();
+        private final BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+        private final List<NodeId> variables = new ArrayList<>();
+        private int inFlight;
+
+        private int browsedNodes;
+        private int browseRequests;
+        private int browseNextRequests;
+        private int nonNumericVariables;
+        private int failedNodes;
+
+        private Browser(OpcUaClient client, int namespace, int parallelism, int chunkSize, UInteger maxReferences,
+                        long timeout) {
+            this.client = client;
+            this.namespace = namespace;
+            this.parallelism = parallelism;
+            this.chunkSize = chunkSize;
+            this.maxReferences = maxReferences;
+            this.timeout = timeout;
+        }
+
+        private List<NodeId> run(NodeId start) throws Exception {
+            visited.add(start);
+            pending.add(start);
+            try {
+                while (inFlight > 0 || !pending.isEmpty() || !continuationPoints.isEmpty()) {
+                    while (inFlight < parallelism && (!pending.isEmpty() || !continuationPoints.isEmpty())) {
+                        if (!continuationPoints.isEmpty()) {
+                            sendBrowseNext();
+                        } else {
+                            sendBrowse();
+                        }
+                    }
+
+                    Completion completion = completions.poll(timeout, TimeUnit.MILLISECONDS);
+                    if (completion == null) {
+                        throw new TimeoutException("No Browse response within " + timeout + " ms");
+                    }
+                    inFlight--;
+                    if (completion.failure != null) {
+                        throw new Exception(completion.failure.getMessage(), completion.failure);
+                    }
+                    for (int i = 0; completion.results != null && i < completion.results.length; i++) {
+                        process(completion, i);
+                    }
+                }
+            } finally {
+                releaseContinuationPoints();
+            }
+            return variables;
+        }
+
+        private void sendBrowse() {
+            List<NodeId> nodeIds = new ArrayList<>();
+            List<BrowseDescription> descriptions = new ArrayList<>();
+            while (nodeIds.size() < chunkSize && !pending.isEmpty()) {
+                NodeId nodeId = pending.poll();
+                nodeIds.add(nodeId);
+                descriptions.add(new BrowseDescription(nodeId, BrowseDirection.Forward,
+                        Identifiers.HierarchicalReferences, true, NODE_CLASS_MASK, RESULT_MASK));
+            }
+            inFlight++;
+            browseRequests++;
+            CompletableFuture<BrowseResponse> browse = OPCUAMetrics.track(OPCUAMetrics.BROWSE, client, System.nanoTime(),
+                    client.browse(VIEW, maxReferences, descriptions), browsed -> browsed.getResponseHeader().getServiceResult());
+            browse.whenComplete((response, ex) ->
+                    completions.add(new Completion(nodeIds, response == null ? null : response.getResults(), ex)));
+        }
+
+        private void sendBrowseNext() {
+            List<ByteString> points = new ArrayList<>();
+            while (points.size() < chunkSize && !continuationPoints.isEmpty()) {
+                points.add(continuationPoints.poll());
+            }
+            inFlight++;
+            browseNextRequests++;
+            CompletableFuture<BrowseNextResponse> browseNext = OPCUAMetrics.track(OPCUAMetrics.BROWSE_NEXT, client,
+                    System.nanoTime(), client.browseNext(false, points), browsed -> browsed.getResponseHeader().getServiceResult());
+            browseNext.whenComplete((response, ex) ->
+                    completions.add(new Completion(null, response == null ? null : response.getResults(), ex)));
+        }
+
+        private void process(Completion completion, int index) {
+            BrowseResult browseResult = completion.results[index];
+            StatusCode statusCode = browseResult.getStatusCode();
+            if (statusCode.getValue() == StatusCodes.Bad_NoContinuationPoints && completion.nodeIds != null) {
+                // The server holds as many continuation points as it allows; browse the node again later with
+                // fewer requests in flight
+                parallelism = Math.max(1, inFlight);
+                pending.add(completion.nodeIds.get(index));
+                return;
+            }
+            if (completion.nodeIds != null) {
+                browsedNodes++;
+            }
+            if (statusCode.isBad()) {
+                failedNodes++;
+                log.warn("Failed to browse {}: {}",
+                        completion.nodeIds != null ? completion.nodeIds.get(index) : "continuation point", statusCode);
+                return;
+            }
+
+            ReferenceDescription[] references = browseResult.getReferences();
+            if (references != null) {
+                for (ReferenceDescription reference : references) {
+                    add(reference);
+                }
+            }
+            ByteString continuationPoint = browseResult.getContinuationPoint();
+            if (continuationPoint != null && continuationPoint.isNotNull()) {
+                continuationPoints.add(continuationPoint);
+            }
+        }
+
+        private void add(ReferenceDescription reference) {
+            // Nodes on other servers are skipped
+            Optional<NodeId> target = reference.getNodeId().toNodeId(client.getNamespaceTable());
+            if (!target.isPresent() || !visited.add(target.get())) {
+                return;
+            }
+            NodeId nodeId = target.get();
+
+            // Properties describe their parent; they are neither listed nor browsed further
+            if (Identifiers.HasProperty.equals(reference.getReferenceTypeId())) {
+                return;
+            }
+            if (reference.getNodeClass() == NodeClass.Variable
+                    && (namespace < 0 || nodeId.getNamespaceIndex().intValue() == namespace)) {
+                if (nodeId.getIdentifier() instanceof UInteger) {
+                    variables.add(nodeId);
+                } else {
+                    nonNumericVariables++;
+                }
+            }
+            pending.add(nodeId);
+        }
+
+        private void releaseContinuationPoints() {
+            // After a failure, requests still in flight may return more continuation points; wait for them
+            // within the timeout so that the server can free those as well
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            try {
+                while (inFlight > 0) {
+                    Completion completion = completions.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (completion == null) {
+                        log.warn("{} Browse requests still in flight; their continuation points are not released", inFlight);
+                        break;
+                    }
+                    inFlight--;
+                    for (int i = 0; completion.results != null && i < completion.results.length; i++) {
+                        ByteString continuationPoint = completion.results[i].getContinuationPoint();
+                        if (continuationPoint != null && continuationPoint.isNotNull()) {
+                            continuationPoints.add(continuationPoint);
+                        }
+                    }
+                }
+
+                // Release as many points per request as the server accepts, one request at a time
+                while (!continuationPoints.isEmpty()) {
+                    List<ByteString> points = new ArrayList<>();
+                    while (points.size() < chunkSize && !continuationPoints.isEmpty()) {
+                        points.add(continuationPoints.poll());
+                    }
+                    client.browseNext(true, points).get(timeout, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException ex) {
+                log.warn("Failed to release continuation points: {}", ex.getMessage());
+            } finally {
+                continuationPoints.clear();
+            }
+        }
+    }
+
+    private static final class Completion {
+        private final List<NodeId> nodeIds;
+        private final BrowseResult[] results;
+        private final Throwable failure;
+
+        private Completion(List<NodeId> nodeIds, BrowseResult[] results, Throwable failure) {
+            this.nodeIds = nodeIds;
+            this.results = results;
+            this.failure = failure;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.samplers.gui.AbstractSamplerGui;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.net.URI;
+
+public class OPCUABrowseSamplerGui extends AbstractSamplerGui {
+    private static final Logger log = LogManager.getLogger(OPCUABrowseSamplerGui.class);
+
+    private JTextField startNodeField;
+    private JTextField namespaceField;
+    private JTextField parallelismField;
+    private JTextField nodesPerRequestField;
+    private JTextField maxReferencesField;
+    private JTextField catalogueFileField;
+    private JTextField timeoutField;
+    private JCheckBox reuseCatalogueCheckBox;
+
+    public OPCUABrowseSamplerGui() {
+        init();
+    }
+
+    private void init() {
+        setLayout(new BorderLayout(0, 5));
+        setBorder(makeBorder());
+
+        JPanel mainPanel = new VerticalPanel();
+        mainPanel.add(makeTitlePanel());
+
+        startNodeField = new JTextField(20);
+        namespaceField = new JTextField(5);
+        parallelismField = new JTextField(10);
+        nodesPerRequestField = new JTextField(10);
+        maxReferencesField = new JTextField(10);
+        catalogueFileField = new JTextField(30);
+        timeoutField = new JTextField(10);
+        reuseCatalogueCheckBox = new JCheckBox("Reuse Existing Catalogue (skip browsing)");
+
+        JPanel fieldsPanel = new JPanel(new GridLayout(8, 2));
+        fieldsPanel.add(new JLabel("Start Node (empty = Objects folder, e.g. ns=2;i=1000):"));
+        fieldsPanel.add(startNodeField);
+        fieldsPanel.add(new JLabel("Namespace Index (empty = all):"));
+        fieldsPanel.add(namespaceField);
+        fieldsPanel.add(new JLabel("Requests in Flight:"));
+        fieldsPanel.add(parallelismField);
+        fieldsPanel.add(new JLabel("Nodes per Request:"));
+        fieldsPanel.add(nodesPerRequestField);
+        fieldsPanel.add(new JLabel("Max References per Node (0 = server decides):"));
+        fieldsPanel.add(maxReferencesField);
+        fieldsPanel.add(new JLabel("Catalogue File (.csv for a node list):"));
+        fieldsPanel.add(catalogueFileField);
+        fieldsPanel.add(new JLabel("Timeout (ms):"));
+        fieldsPanel.add(timeoutField);
+        fieldsPanel.add(reuseCatalogueCheckBox);
+        fieldsPanel.add(new JLabel());
+
+        mainPanel.add(fieldsPanel);
+        add(mainPanel, BorderLayout.CENTER);
+
+        // Add developer information and hyperlink
+        JLabel developerLabel = new JLabel("<html><i>Developed by Mohammed Hlayel;</i></html>");
+        JLabel githubLink = new JLabel("<html><a href='https://github.com/Sahermatter2024'>Help and Update</a></html>");
+        githubLink.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        githubLink.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                try {
+                    Desktop.getDesktop().browse(new URI("https://github.com/Sahermatter2024"));
+                } catch (Exception ex) {
+                    log.error("Error opening link", ex);
+                }
+            }
+        });
+
+        JPanel footerPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        footerPanel.add(developerLabel);
+        footerPanel.add(githubLink);
+
+        add(footerPanel, BorderLayout.SOUTH);
+    }
+
+    @Override
+    public String getLabelResource() {
+        return "opcuaBrowseSampler_title";
+    }
+
+    @Override
+    public String getStaticLabel() {
+        return "OPC UA Browse Sampler";
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        OPCUABrowseSampler sampler = new OPCUABrowseSampler();
+        modifyTestElement(sampler);
+        return sampler;
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        super.configureTestElement(element);
+        element.setProperty(OPCUABrowseSampler.START_NODE, startNodeField.getText());
+        element.setProperty(OPCUABrowseSampler.NAMESPACE, namespaceField.getText());
+        element.setProperty(OPCUABrowseSampler.PARALLELISM, parallelismField.getText().isEmpty() ? "8" : parallelismField.getText());
+        element.setProperty(OPCUABrowseSampler.NODES_PER_REQUEST, nodesPerRequestField.getText().isEmpty() ? "100" : nodesPerRequestField.getText());
+        element.setProperty(OPCUABrowseSampler.MAX_REFERENCES, maxReferencesField.getText().isEmpty() ? "1000" : maxReferencesField.getText());
+        element.setProperty(OPCUABrowseSampler.CATALOGUE_FILE, catalogueFileField.getText());
+        element.setProperty(OPCUABrowseSampler.TIMEOUT, timeoutField.getText().isEmpty() ? "3000" : timeoutField.getText());
+        element.setProperty(OPCUABrowseSampler.REUSE_CATALOGUE, reuseCatalogueCheckBox.isSelected());
+    }
+
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+        if (element instanceof OPCUABrowseSampler) {
+            OPCUABrowseSampler sampler = (OPCUABrowseSampler) element;
+            startNodeField.setText(sampler.getStartNode());
+            namespaceField.setText(sampler.getNamespace());
+            parallelismField.setText(sampler.getParallelism());
+            nodesPerRequestField.setText(sampler.getNodesPerRequest());
+            maxReferencesField.setText(sampler.getMaxReferences());
+            catalogueFileField.setText(sampler.getCatalogueFile());
+            timeoutField.setText(sampler.getTimeout());
+            reuseCatalogueCheckBox.setSelected(sampler.isReuseCatalogue());
+        }
+    }
+
+    @Override
+    public void clearGui() {
+        super.clearGui();
+        startNodeField.setText("");
+        namespaceField.setText("");
+        parallelismField.setText("8");
+        nodesPerRequestField.setText("100");
+        maxReferencesField.setText("1000");
+        catalogueFileField.setText("");
+        timeoutField.setText("3000");
+        reuseCatalogueCheckBox.setSelected(true);
+    }
+}
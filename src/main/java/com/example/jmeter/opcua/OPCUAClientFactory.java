@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.config.OpcUaClientConfig;
+import org.eclipse.milo.opcua.sdk.client.api.config.OpcUaClientConfigBuilder;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+import org.eclipse.milo.opcua.stack.core.util.EndpointUtil;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates connected {@link OpcUaClient} instances. Shared by the connection sampler and the session pool
+ * so that both open sessions the same way.
+ */
+public final class OPCUAClientFactory {
+    private static final Logger log = LogManager.getLogger(OPCUAClientFactory.class);
+
+    private OPCUAClientFactory() {
+    }
+
+    public static OpcUaClient connect(String endpointUrl, String ipAddress, long timeout, long endpointCacheTtl) throws Exception {
+        return connect(endpointUrl, ipAddress, timeout, endpointCacheTtl, OPCUASecurity.NONE, null);
+    }
+
+    public static OpcUaClient connect(String endpointUrl, String ipAddress, long timeout, long endpointCacheTtl,
+                                      OPCUASecurity security, OPCUAConnectPhases phases) throws Exception {
+        EndpointDescription endpoint;
+        if (phases != null) {
+            phases.start(OPCUAConnectPhases.Phase.DISCOVERY);
+        }
+        try {
+            endpoint = discoverEndpoint(endpointUrl, ipAddress, timeout, endpointCacheTtl, security);
+        } catch (Exception ex) {
+            if (phases != null) {
+                phases.fail(OPCUAConnectPhases.Phase.DISCOVERY, ex);
+            }
+            throw ex;
+        }
+        if (phases != null) {
+            phases.end(OPCUAConnectPhases.Phase.DISCOVERY);
+        }
+        return connect(endpoint, timeout, security, phases);
+    }
+
+    public static EndpointDescription discoverEndpoint(String endpointUrl, String ipAddress, long timeout,
+                                                       long endpointCacheTtl) throws Exception {
+        return discoverEndpoint(endpointUrl, ipAddress, timeout, endpointCacheTtl, OPCUASecurity.NONE);
+    }
+
+    public static EndpointDescription discoverEndpoint(String endpointUrl, String ipAddress, long timeout,
+                                                       long endpointCacheTtl, OPCUASecurity security) throws Exception {
+        // Retrieve endpoints using DiscoveryClient, or from the endpoint cache
+        List<EndpointDescription> endpoints = OPCUAEndpointCache.getEndpoints(endpointUrl, timeout, endpointCacheTtl);
+
+        // Log endpoints for debugging
+        boolean logs = OPCUAResultVerbosity.get().logs();
+        if (logs) {
+            log.info("Discovered Endpoints: " + endpoints);
+        }
+
+        // Choose the endpoint with the configured security policy, mode and user token
+        EndpointDescription selectedEndpoint = security.select(endpoints);
+
+        // Update the endpoint URL if needed
+        EndpointDescription updatedEndpoint = EndpointUtil.updateUrl(selectedEndpoint, ipAddress);
+
+        // Log updated endpoint
+        if (logs) {
+            log.info("Selected Endpoint: " + selectedEndpoint);
+            log.info("Updated Endpoint: " + updatedEndpoint);
+        }
+
+        return updatedEndpoint;
+    }
+
+    public static OpcUaClient connect(EndpointDescription endpoint, long timeout) throws Exception {
+        return connect(endpoint, timeout, OPCUASecurity.NONE, null);
+    }
+
+    public static OpcUaClient connect(EndpointDescription endpoint, long timeout, OPCUASecurity security,
+                                      OPCUAConnectPhases phases) throws Exception {
+        OpcUaClient opcUaClient = create(endpoint, timeout, security);
+        if (phases == null) {
+            opcUaClient.connect().get(timeout, TimeUnit.MILLISECONDS);
+            return opcUaClient;
+        }
+
+        // Open the secure channel first (TCP connect, Hello/Ack, OpenSecureChannel) so that the crypto handshake
+        // is timed apart from CreateSession/ActivateSession; connect() then reuses the open channel
+        describe(phases, security);
+        phases.start(OPCUAConnectPhases.Phase.SECURE_CHANNEL);
+        try {
+            opcUaClient.getStackClient().connect().get(timeout, TimeUnit.MILLISECONDS);
+        } catch (Exception ex) {
+            phases.fail(OPCUAConnectPhases.Phase.SECURE_CHANNEL, ex);
+            throw ex;
+        }
+        phases.end(OPCUAConnectPhases.Phase.SECURE_CHANNEL);
+
+        phases.start(OPCUAConnectPhases.Phase.SESSION);
+        try {
+            opcUaClient.connect().get(timeout, TimeUnit.MILLISECONDS);
+        } catch (Exception ex) {
+            phases.fail(OPCUAConnectPhases.Phase.SESSION, ex);
+            opcUaClient.getStackClient().disconnect();
+            throw ex;
+        }
+        phases.end(OPCUAConnectPhases.Phase.SESSION);
+
+        return opcUaClient;
+    }
+
+    /**
+     * Connects without blocking the calling thread; the future completes on Milo's executor.
+     */
+    public static CompletableFuture<OpcUaClient> connectAsync(EndpointDescription endpoint, long timeout) {
+        return connectAsync(endpoint, timeout, OPCUASecurity.NONE, null);
+    }
+
+    /**
+     * Connects without blocking the calling thread, timing the secure channel and the session apart when phases
+     * are given; the future completes on Milo's executor.
+     */
+    public static CompletableFuture<OpcUaClient> connectAsync(EndpointDescription endpoint, long timeout,
+                                                              OPCUASecurity security, OPCUAConnectPhases phases) {
+        CompletableFuture<OpcUaClient> connected = new CompletableFuture<>();
+        OpcUaClient opcUaClient;
+        try {
+            opcUaClient = create(endpoint, timeout, security);
+        } catch (UaException | IOException ex) {
+            connected.completeExceptionally(ex);
+            return connected;
+        }
+        if (phases == null) {
+            return opcUaClient.connect().thenApply(client -> opcUaClient);
+        }
+
+        describe(phases, security);
+        phases.start(OPCUAConnectPhases.Phase.SECURE_CHANNEL);
+        opcUaClient.getStackClient().connect().whenComplete((stackClient, channelEx) -> {
+            if (channelEx != null) {
+                phases.fail(OPCUAConnectPhases.Phase.SECURE_CHANNEL, channelEx);
+                connected.completeExceptionally(channelEx);
+                return;
+            }
+            phases.end(OPCUAConnectPhases.Phase.SECURE_CHANNEL);
+
+            phases.start(OPCUAConnectPhases.Phase.SESSION);
+            opcUaClient.connect().whenComplete((client, sessionEx) -> {
+                if (sessionEx != null) {
+                    phases.fail(OPCUAConnectPhases.Phase.SESSION, sessionEx);
+                    opcUaClient.getStackClient().disconnect();
+                    connected.completeExceptionally(sessionEx);
+                } else {
+                    phases.end(OPCUAConnectPhases.Phase.SESSION);
+                    connected.complete(opcUaClient);
+                }
+            });
+        });
+        return connected;
+    }
+
+    private static void describe(OPCUAConnectPhases phases, OPCUASecurity security) {
+        // The OpenSecureChannel exchange carries the asymmetric handshake; ActivateSession signs the user token
+        phases.setDetail(OPCUAConnectPhases.Phase.SECURE_CHANNEL,
+                security.getPolicy().name() + "/" + security.getMode().name());
+        phases.setDetail(OPCUAConnectPhases.Phase.SESSION, security.getUserToken().name() + " user token");
+    }
+
+    private static OpcUaClient create(EndpointDescription endpoint, long timeout, OPCUASecurity security)
+            throws UaException, IOException {
+        // Build the client configuration
+        OpcUaClientConfigBuilder builder = new OpcUaClientConfigBuilder()
+                .setEndpoint(endpoint)
+                .setRequestTimeout(UInteger.valueOf(timeout));
+        // Client certificate and trust list are loaded once per JVM and shared by all sessions
+        security.configure(builder);
+        // Shared, sized event loop, executor and wheel timer when configured by JMeter properties
+        OPCUATransportResources.configure(builder);
+        OpcUaClientConfig clientConfig = builder.build();
+
+        // Create an instance of OpcUaClient
+        return OpcUaClient.create(clientConfig);
+    }
+}
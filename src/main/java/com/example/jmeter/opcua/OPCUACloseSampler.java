@@ -28,6 +28,7 @@ import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
@@ -43,13 +44,29 @@ public class OPCUACloseSampler extends AbstractSampler {
         SampleResult result = new SampleResult();
         result.setSampleLabel(getName());
 
-        OpcUaClient opcUaClient = (OpcUaClient) JMeterContextService.getContext().getVariables().getObject("opcUaClient");
+        JMeterVariables variables = JMeterContextService.getContext().getVariables();
+        OpcUaClient opcUaClient = (OpcUaClient) variables.getObject(OPCUASessions.CLIENT_VARIABLE);
+        boolean logs = OPCUAResultVerbosity.get().logs();
 
-        if (opcUaClient != null) {
+        if (variables.getObject(OPCUASessions.POOL_VARIABLE) != null) {
+            // Pooled sessions stay open for other threads; they are closed on idle timeout or at test end
+            result.sampleStart(); // Start timing
+            variables.remove(OPCUASessions.POOL_VARIABLE);
+            if (logs) {
+                log.info("Released OPC UA session pool.");
+            }
+            result.setResponseMessage("Released OPC UA session pool.");
+            result.setSuccessful(true);
+            result.sampleEnd(); // End timing
+        } else if (opcUaClient != null) {
             try {
                 result.sampleStart(); // Start timing
+                OPCUAConnectionLifecycle.unregister(opcUaClient);
+                OPCUAReconnectMonitor.detach(variables);
                 opcUaClient.disconnect().get();
-                log.info("Disconnected from OPC UA server.");
+                if (logs) {
+                    log.info("Disconnected from OPC UA server.");
+                }
                 result.setResponseMessage("Disconnected from OPC UA server.");
                 result.setSuccessful(true);
             } catch (InterruptedException | ExecutionException ex) {
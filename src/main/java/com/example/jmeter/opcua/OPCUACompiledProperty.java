@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.property.FunctionProperty;
+import org.apache.jmeter.testelement.property.JMeterProperty;
+import org.apache.jmeter.testelement.property.MultiProperty;
+import org.apache.jmeter.testelement.property.PropertyIterator;
+
+/**
+ * A sampler setting that is evaluated once per thread when its properties are constant, and on every sample
+ * when one of them contains a JMeter variable or function.
+ */
+public final class OPCUACompiledProperty<T> {
+
+    @FunctionalInterface
+    public interface Evaluator<T> {
+        T evaluate() throws Exception;
+    }
+
+    private final T constant;
+    private final Evaluator<T> evaluator;
+
+    private OPCUACompiledProperty(T constant, Evaluator<T> evaluator) {
+        this.constant = constant;
+        this.evaluator = evaluator;
+    }
+
+    public static <T> OPCUACompiledProperty<T> of(TestElement element, Evaluator<T> evaluator, String... propertyNames) {
+        for (String propertyName : propertyNames) {
+            if (isDynamic(element.getProperty(propertyName))) {
+                return new OPCUACompiledProperty<>(null, evaluator);
+            }
+        }
+        try {
+            return new OPCUACompiledProperty<>(evaluator.evaluate(), null);
+        } catch (Exception ex) {
+            // Keep evaluating per sample so that the error is reported on the sample result
+            return new OPCUACompiledProperty<>(null, evaluator);
+        }
+    }
+
+    public T get() throws Exception {
+        return evaluator == null ? constant : evaluator.evaluate();
+    }
+
+    public boolean isConstant() {
+        return evaluator == null;
+    }
+
+    private static boolean isDynamic(JMeterProperty property) {
+        if (property instanceof FunctionProperty) {
+            return true;
+        }
+        if (property instanceof MultiProperty) {
+            PropertyIterator iterator = ((MultiProperty) property).iterator();
+            while (iterator.hasNext()) {
+                if (isDynamic(iterator.next())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
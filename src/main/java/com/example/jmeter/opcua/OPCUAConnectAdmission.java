@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JVM-wide admission control for new OPC UA connections, configured by JMeter properties. A token bucket paces
+ * connects to a rate, and a semaphore bounds the handshakes (discovery, secure channel and session) in flight,
+ * so a thread group that starts all its threads at once does not flood the server's accept backlog.
+ *
+ * <p>The settings are read on first use and again when a test starts, so changed properties take effect with the
+ * next test. With both limits at 0 every connect is admitted at once.
+ */
+public final class OPCUAConnectAdmission {
+    private static final Logger log = LogManager.getLogger(OPCUAConnectAdmission.class);
+
+    // New connections per second over all threads; 0 = no rate limit
+    public static final String RATE = "opcua.connect.rate";
+    // Connects admitted at once after an idle period before the rate applies; defaults to 1 (evenly spaced)
+    public static final String BURST = "opcua.connect.burst";
+    // Connection handshakes in flight at the same time; 0 = no limit
+    public static final String MAX_CONCURRENT = "opcua.connect.maxConcurrent";
+
+    private static final Permit UNLIMITED = new Permit(null, 0);
+
+    // Replaced as a whole when the properties are read again, so admit() needs no lock to see complete limits
+    private static volatile Limits limits;
+
+    private static final LongAdder admitted = new LongAdder();
+    private static final LongAdder totalWaitNanos = new LongAdder();
+    private static final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private OPCUAConnectAdmission() {
+    }
+
+    /**
+     * Waits until a new connection may be opened. Close the permit when the connection is open or has failed,
+     * so that the next handshake may start.
+     */
+    public static Permit admit() throws InterruptedException {
+        Limits current = limits();
+        if (!current.isEnabled()) {
+            return UNLIMITED;
+        }
+
+        long start = System.nanoTime();
+        if (current.intervalNanos > 0) {
+            long waitNanos = current.reserve(start);
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+        if (current.handshakes != null) {
+            current.handshakes.acquire();
+        }
+        long waitNanos = System.nanoTime() - start;
+
+        admitted.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        // The permit releases the slot of the limits it was admitted under, even if they are replaced meanwhile
+        return new Permit(current.handshakes, waitNanos);
+    }
+
+    public static boolean isEnabled() {
+        return limits().isEnabled();
+    }
+
+    /**
+     * Reads the limits again and clears the wait statistics for a new test.
+     */
+    public static void reset() {
+        limits = Limits.read();
+        admitted.reset();
+        totalWaitNanos.reset();
+        maxWaitNanos.set(0);
+    }
+
+    public static String summary() {
+        long count = admitted.sum();
+        return String.format("OPC UA connect admission: %d connects admitted, average wait %.1f ms, max wait %d ms",
+                count, count == 0 ? 0.0 : totalWaitNanos.sum() / (double) count / 1_000_000.0,
+                TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+    }
+
+    private static Limits limits() {
+        Limits current = limits;
+        if (current == null) {
+            // Only the first callers wait here; afterwards the volatile read above is all admit() costs
+            synchronized (OPCUAConnectAdmission.class) {
+                current = limits;
+                if (current == null) {
+                    current = Limits.read();
+                    limits = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * The configured limits and the state of the token bucket.
+     */
+    static final class Limits {
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final Semaphore handshakes;
+        // Time at which the next token is due
+        private final AtomicLong nextTokenNanos = new AtomicLong(Long.MIN_VALUE);
+
+        Limits(double rate, int burst, int maxConcurrent) {
+            intervalNanos = rate > 0 ? Math.max(1, (long) (1_000_000_000L / rate)) : 0;
+            burstNanos = intervalNanos * Math.max(1, burst);
+            handshakes = maxConcurrent > 0 ? new Semaphore(maxConcurrent, true) : null;
+        }
+
+        private static Limits read() {
+            double rate;
+            String rateValue = JMeterUtils.getPropDefault(RATE, "0");
+            try {
+                rate = Double.parseDouble(rateValue.trim());
+            } catch (NumberFormatException ex) {
+                log.warn("Invalid {} [{}], expected connects per second; connects are not rate limited", RATE, rateValue);
+                rate = 0; // Default of no rate limit
+            }
+            int burst = Math.max(1, JMeterUtils.getPropDefault(BURST, 1));
+            int maxConcurrent = JMeterUtils.getPropDefault(MAX_CONCURRENT, 0);
+
+            log.info("OPC UA connect admission: rate={} connects/s, burst={}, max concurrent handshakes={} (0 = unlimited)",
+                    rate, burst, maxConcurrent);
+            return new Limits(rate, burst, maxConcurrent);
+        }
+
+        boolean isEnabled() {
+            return intervalNanos > 0 || handshakes != null;
+        }
+
+        /**
+         * Takes the next token and returns how long to wait for it from {@code now}; zero or less means at once.
+         */
+        long reserve(long now) {
+            // A bucket of burst tokens refills one token per interval; tokens are handed out in order of arrival
+            while (true) {
+                long next = nextTokenNanos.get();
+                long token = Math.max(next, now - burstNanos + intervalNanos);
+                if (nextTokenNanos.compareAndSet(next, token + intervalNanos)) {
+                    return token - now;
+                }
+            }
+        }
+    }
+
+    /**
+     * Admission of one connection; holds a handshake slot until closed.
+     */
+    public static final class Permit implements AutoCloseable {
+        private final Semaphore handshakes;
+        private final long waitNanos;
+        private boolean closed;
+
+        private Permit(Semaphore handshakes, long waitNanos) {
+            this.handshakes = handshakes;
+            this.waitNanos = waitNanos;
+        }
+
+        /**
+         * Time spent waiting for the rate limit and a free handshake slot.
+         */
+        public long getWaitNanos() {
+            return waitNanos;
+        }
+
+        @Override
+        public void close() {
+            if (!closed && handshakes != null) {
+                closed = true;
+                handshakes.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.samplers.SampleResult;
+
+/**
+ * Records how long each phase of opening an OPC UA connection took, and reports the phases as sub-results
+ * of the connection sample.
+ */
+public final class OPCUAConnectPhases {
+
+    public enum Phase {
+        // GetEndpoints on the discovery endpoint, or an endpoint cache lookup
+        DISCOVERY("Discovery"),
+        // TCP connect, Hello/Ack and OpenSecureChannel
+        SECURE_CHANNEL("Secure Channel"),
+        // CreateSession and ActivateSession
+        SESSION("Session");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final SampleResult parent;
+    private final long[] startTimes = new long[Phase.values().length];
+    private final long[] endTimes = new long[Phase.values().length];
+    private final String[] failures = new String[Phase.values().length];
+    private final String[] details = new String[Phase.values().length];
+
+    /**
+     * @param parent the connection sample; its connect time is set when the secure channel is open,
+     *               may be null when only the phase times are needed
+     */
+    public OPCUAConnectPhases(SampleResult parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Sets what the phase negotiated, for example the security policy of the secure channel, to be shown with
+     * its time.
+     */
+    public void setDetail(Phase phase, String detail) {
+        details[phase.ordinal()] = detail;
+    }
+
+    public String getDetail(Phase phase) {
+        return details[phase.ordinal()];
+    }
+
+    public void start(Phase phase) {
+        startTimes[phase.ordinal()] = System.currentTimeMillis();
+    }
+
+    public void end(Phase phase) {
+        endTimes[phase.ordinal()] = System.currentTimeMillis();
+        if (phase == Phase.SECURE_CHANNEL && parent != null) {
+            parent.connectEnd();
+        }
+    }
+
+    public void fail(Phase phase, Throwable cause) {
+        end(phase);
+        failures[phase.ordinal()] = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    public boolean isStarted(Phase phase) {
+        return startTimes[phase.ordinal()] > 0;
+    }
+
+    public boolean isSucceeded(Phase phase) {
+        return isStarted(phase) && failures[phase.ordinal()] == null;
+    }
+
+    /**
+     * The outcome of a phase as shown in its sub-result, for example "Secure Channel (Basic256Sha256/Sign)
+     * completed in 12 ms".
+     */
+    public String describe(Phase phase) {
+        int i = phase.ordinal();
+        String description = details[i] == null ? phase.getLabel() : phase.getLabel() + " (" + details[i] + ")";
+        return failures[i] == null ? description + " completed in " + getElapsed(phase) + " ms"
+                : description + " failed: " + failures[i];
+    }
+
+    public long getStartTime(Phase phase) {
+        return startTimes[phase.ordinal()];
+    }
+
+    public long getElapsed(Phase phase) {
+        int i = phase.ordinal();
+        return startTimes[i] > 0 && endTimes[i] >= startTimes[i] ? endTimes[i] - startTimes[i] : 0;
+    }
+
+    /**
+     * Adds one sub-result per phase that was started, without changing the timing of the parent.
+     */
+    public void addSubResults(SampleResult result, String label) {
+        for (Phase phase : Phase.values()) {
+            if (!isStarted(phase)) {
+                continue;
+            }
+            int i = phase.ordinal();
+            SampleResult phaseResult = new SampleResult();
+            phaseResult.setSampleLabel(label + " - " + phase.getLabel());
+            phaseResult.setStampAndTime(startTimes[i], getElapsed(phase));
+            phaseResult.setResponseMessage(describe(phase));
+            phaseResult.setSuccessful(failures[i] == null);
+            result.addRawSubResult(phaseResult);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVM-wide registry of the per-thread OPC UA sessions opened by the connection sampler. Keepalive expiry
+ * disconnects are scheduled on one shared timer wheel instead of a scheduler per sampler clone, and every
+ * session still open at test end is closed.
+ */
+public final class OPCUAConnectionLifecycle {
+    private static final Logger log = LogManager.getLogger(OPCUAConnectionLifecycle.class);
+
+    // Keepalive expiry does not need better than 100 ms resolution
+    private static final long TICK_MILLIS = 100;
+
+    private static final ConcurrentMap<OpcUaClient, Session> SESSIONS = new ConcurrentHashMap<>();
+    private static HashedWheelTimer timer;
+
+    private OPCUAConnectionLifecycle() {
+    }
+
+    /**
+     * Registers a session opened by the current thread.
+     *
+     * @param keepalive milliseconds after which the session is disconnected; 0 keeps it open until it is
+     *                  closed by the close sampler or at test end
+     */
+    public static void register(OpcUaClient client, long keepalive) {
+        Session session = new Session(client, Thread.currentThread());
+        Session previous = SESSIONS.put(client, session);
+        if (previous != null) {
+            previous.cancelExpiry();
+        }
+        if (keepalive > 0) {
+            session.expiry = timer().newTimeout(t -> expire(session), keepalive, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Removes a session that is being closed by its owner, cancelling its keepalive expiry.
+     */
+    public static void unregister(OpcUaClient client) {
+        Session session = SESSIONS.remove(client);
+        if (session != null) {
+            session.cancelExpiry();
+        }
+    }
+
+    /**
+     * Disconnects every registered session and stops the timer. Called at test end.
+     */
+    public static void closeAll() {
+        List<Session> sessions = new ArrayList<>(SESSIONS.values());
+        int leaked = getLeakedSessions();
+        SESSIONS.clear();
+
+        for (Session session : sessions) {
+            session.cancelExpiry();
+            disconnect(session.client, "test end");
+        }
+        if (!sessions.isEmpty()) {
+            log.info("Closed {} OPC UA sessions at test end ({} leaked by finished threads).", sessions.size(), leaked);
+        }
+
+        synchronized (OPCUAConnectionLifecycle.class) {
+            if (timer != null) {
+                timer.stop();
+                timer = null;
+            }
+        }
+    }
+
+    /**
+     * Sessions that are registered and not yet closed.
+     */
+    public static int getLiveSessions() {
+        return SESSIONS.size();
+    }
+
+    /**
+     * Live sessions with a pending keepalive expiry.
+     */
+    public static int getExpiringSessions() {
+        int count = 0;
+        for (Session session : SESSIONS.values()) {
+            if (session.expiry != null && !session.expiry.isExpired()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Live sessions without an expiry whose JMeter thread has finished; nothing will close them before
+     * test end.
+     */
+    public static int getLeakedSessions() {
+        int count = 0;
+        for (Session session : SESSIONS.values()) {
+            if (session.expiry == null && !session.owner.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static synchronized HashedWheelTimer timer() {
+        if (timer == null) {
+            timer = new HashedWheelTimer(r -> {
+                Thread thread = new Thread(r, "opcua-lifecycle-timer");
+                thread.setDaemon(true);
+                return thread;
+            }, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return timer;
+    }
+
+    private static void expire(Session session) {
+        if (SESSIONS.remove(session.client, session)) {
+            disconnect(session.client, "keepalive timeout");
+        }
+    }
+
+    // Never blocks: expiry runs on the timer thread shared by all sessions
+    private static void disconnect(OpcUaClient client, String reason) {
+        client.disconnect().whenComplete((c, ex) -> {
+            if (ex != null) {
+                log.error("Error disconnecting from OPC UA server: " + ex.getMessage(), ex);
+            } else if (OPCUAResultVerbosity.get().logs()) {
+                log.info("Disconnected from OPC UA server due to {}.", reason);
+            }
+        });
+    }
+
+    private static final class Session {
+        private final OpcUaClient client;
+        private final Thread owner;
+        private volatile Timeout expiry;
+
+        private Session(OpcUaClient client, Thread owner) {
+            this.client = client;
+            this.owner = owner;
+        }
+
+        private void cancelExpiry() {
+            Timeout timeout = expiry;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+}
@@ -27,24 +27,17 @@ package com.example.jmeter.opcua;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
-import org.eclipse.milo.opcua.sdk.client.api.config.OpcUaClientConfig;
-import org.eclipse.milo.opcua.sdk.client.api.config.OpcUaClientConfigBuilder;
-import org.eclipse.milo.opcua.stack.client.DiscoveryClient;
-import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
 import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
-import org.eclipse.milo.opcua.stack.core.util.EndpointUtil;
 
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
-public class OPCUAConnectionSampler extends AbstractSampler {
+public class OPCUAConnectionSampler extends AbstractSampler implements TestStateListener {
     private static final long serialVersionUID = 1L;
     private static final Logger log = LoggingManager.getLoggerForClass();
 
@@ -53,8 +46,14 @@ public class OPCUAConnectionSampler extends AbstractSampler {
     public static final String PROTOCOL = "OPCUAConnectionSampler.protocol";
     public static final String TIMEOUT = "OPCUAConnectionSampler.timeout";
     public static final String KEEPALIVE = "OPCUAConnectionSampler.keepalive";
-
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    public static final String POOL_SIZE = "OPCUAConnectionSampler.poolSize";
+    public static final String POOL_IDLE_TIMEOUT = "OPCUAConnectionSampler.poolIdleTimeout";
+    public static final String ENDPOINT_CACHE_TTL = "OPCUAConnectionSampler.endpointCacheTtl";
+    public static final String REPORT_DISCOVERY = "OPCUAConnectionSampler.reportDiscovery";
+    public static final String REPORT_PHASES = "OPCUAConnectionSampler.reportPhases";
+    public static final String AUTO_RECONNECT = "OPCUAConnectionSampler.autoReconnect";
+    // Prefix of the security settings, see OPCUASecurity
+    public static final String SECURITY_PREFIX = "OPCUAConnectionSampler.";
 
     public void setIpAddress(String ipAddress) {
         setProperty(IP_ADDRESS, ipAddress);
@@ -96,6 +95,54 @@ public class OPCUAConnectionSampler extends AbstractSampler {
         return getPropertyAsString(KEEPALIVE);
     }
 
+    public void setPoolSize(String poolSize) {
+        setProperty(POOL_SIZE, poolSize);
+    }
+
+    public String getPoolSize() {
+        return getPropertyAsString(POOL_SIZE);
+    }
+
+    public void setPoolIdleTimeout(String poolIdleTimeout) {
+        setProperty(POOL_IDLE_TIMEOUT, poolIdleTimeout);
+    }
+
+    public String getPoolIdleTimeout() {
+        return getPropertyAsString(POOL_IDLE_TIMEOUT);
+    }
+
+    public void setEndpointCacheTtl(String endpointCacheTtl) {
+        setProperty(ENDPOINT_CACHE_TTL, endpointCacheTtl);
+    }
+
+    public String getEndpointCacheTtl() {
+        return getPropertyAsString(ENDPOINT_CACHE_TTL);
+    }
+
+    public void setReportDiscovery(boolean reportDiscovery) {
+        setProperty(REPORT_DISCOVERY, reportDiscovery);
+    }
+
+    public boolean isReportDiscovery() {
+        return getPropertyAsBoolean(REPORT_DISCOVERY);
+    }
+
+    public void setReportPhases(boolean reportPhases) {
+        setProperty(REPORT_PHASES, reportPhases);
+    }
+
+    public boolean isReportPhases() {
+        return getPropertyAsBoolean(REPORT_PHASES);
+    }
+
+    public void setAutoReconnect(boolean autoReconnect) {
+        setProperty(AUTO_RECONNECT, autoReconnect);
+    }
+
+    public boolean isAutoReconnect() {
+        return getPropertyAsBoolean(AUTO_RECONNECT);
+    }
+
     @Override
     public SampleResult sample(Entry e) {
         SampleResult result = new SampleResult();
@@ -122,64 +169,194 @@ public class OPCUAConnectionSampler extends AbstractSampler {
             keepalive = 0; // Default keepalive of 0 ms (no keepalive)
         }
 
+        int poolSize;
+        long poolIdleTimeout;
+
+        try {
+            poolSize = Integer.parseInt(getPoolSize());
+        } catch (NumberFormatException ex) {
+            poolSize = 0; // Default pool size of 0 (one session per thread)
+        }
+
+        try {
+            poolIdleTimeout = Long.parseLong(getPoolIdleTimeout());
+        } catch (NumberFormatException ex) {
+            poolIdleTimeout = 60000; // Default idle timeout of 60 s
+        }
+
+        long endpointCacheTtl;
+
+        try {
+            endpointCacheTtl = Long.parseLong(getEndpointCacheTtl());
+        } catch (NumberFormatException ex) {
+            endpointCacheTtl = 0; // Default TTL of 0 ms (discover on every connect)
+        }
+
         // Log the debug information
-        log.info("IP Address: " + ipAddress);
-        log.info("Port: " + port);
-        log.info("Protocol: " + protocol);
-        log.info("Constructed Endpoint URL: " + endpointUrl);
-        log.info("Timeout: " + timeout);
-        log.info("Keepalive: " + keepalive);
+        OPCUAResultVerbosity verbosity = OPCUAResultVerbosity.get();
+        if (verbosity.logs()) {
+            log.info("IP Address: " + ipAddress);
+            log.info("Port: " + port);
+            log.info("Protocol: " + protocol);
+            log.info("Constructed Endpoint URL: " + endpointUrl);
+            log.info("Timeout: " + timeout);
+            log.info("Keepalive: " + keepalive);
+            log.info("Session Pool Size: " + poolSize);
+            log.info("Endpoint Cache TTL: " + endpointCacheTtl);
+        }
 
+        OPCUASecurity security;
         try {
-            result.sampleStart(); // Start timing
+            security = OPCUASecurity.fromElement(this, SECURITY_PREFIX);
+        } catch (IllegalArgumentException ex) {
+            log.error("Invalid OPC UA security settings: " + ex.getMessage());
+            result.sampleStart();
+            result.sampleEnd();
+            result.setResponseMessage("Invalid OPC UA security settings: " + ex.getMessage());
+            result.setSuccessful(false);
+            return result;
+        }
+        if (verbosity.logs()) {
+            log.info("Security: " + security);
+        }
 
-            // Retrieve endpoints using DiscoveryClient
-            CompletableFuture<List<EndpointDescription>> endpointsFuture = DiscoveryClient.getEndpoints(endpointUrl);
-            List<EndpointDescription> endpoints = endpointsFuture.get(timeout, TimeUnit.MILLISECONDS);
+        if (poolSize > 0) {
+            return samplePooled(result, endpointUrl, ipAddress, timeout, poolSize, poolIdleTimeout, endpointCacheTtl,
+                    security);
+        }
 
-            // Log endpoints for debugging
-            log.info("Discovered Endpoints: " + endpoints);
+        // Wait for admission before discovery, so that GetEndpoints is paced too; the wait is reported as its own
+        // sub-result and is not part of the connect time
+        SampleResult admissionResult = null;
+        OPCUAConnectAdmission.Permit permit;
+        long admissionStart = System.currentTimeMillis();
+        try {
+            permit = OPCUAConnectAdmission.admit();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.sampleStart();
+            result.sampleEnd();
+            result.setResponseMessage("Interrupted while waiting for connect admission.");
+            result.setSuccessful(false);
+            return result;
+        }
+        if (OPCUAConnectAdmission.isEnabled()) {
+            long waitMillis = TimeUnit.NANOSECONDS.toMillis(permit.getWaitNanos());
+            admissionResult = new SampleResult();
+            admissionResult.setSampleLabel(getName() + " - Admission");
+            admissionResult.setStampAndTime(admissionStart, waitMillis);
+            admissionResult.setResponseMessage("Waited " + waitMillis + " ms for connect admission");
+            admissionResult.setSuccessful(true);
+        }
 
-            // Choose the desired endpoint from the list, for example, the first one
-            EndpointDescription selectedEndpoint = endpoints.get(0);
+        // Optionally run discovery outside the timed connect and report it as its own sub-result
+        SampleResult discoveryResult = null;
+        EndpointDescription endpoint = null;
+        if (isReportDiscovery()) {
+            discoveryResult = new SampleResult();
+            discoveryResult.setSampleLabel(getName() + " - Discovery");
+            discoveryResult.sampleStart();
+            try {
+                endpoint = OPCUAClientFactory.discoverEndpoint(endpointUrl, ipAddress, timeout, endpointCacheTtl, security);
+                discoveryResult.setResponseMessage("Discovered endpoint " + endpoint.getEndpointUrl());
+                discoveryResult.setSuccessful(true);
+            } catch (Exception ex) {
+                log.error("Error discovering OPC UA endpoints: " + ex.getMessage(), ex);
+                discoveryResult.setResponseMessage("Failed to discover OPC UA endpoints: " + ex.getMessage());
+                discoveryResult.setSuccessful(false);
+            } finally {
+                discoveryResult.sampleEnd();
+            }
+        }
 
-            // Update the endpoint URL if needed
-            EndpointDescription updatedEndpoint = EndpointUtil.updateUrl(selectedEndpoint, ipAddress);
+        // Phase timings; connect time is set on the result once the secure channel is open
+        OPCUAConnectPhases phases = new OPCUAConnectPhases(result);
 
-            // Log updated endpoint
-            log.info("Selected Endpoint: " + selectedEndpoint);
-            log.info("Updated Endpoint: " + updatedEndpoint);
+        try {
+            result.sampleStart(); // Start timing
 
-            // Build the client configuration
-            OpcUaClientConfig clientConfig = new OpcUaClientConfigBuilder()
-                    .setEndpoint(updatedEndpoint)
-                    .setRequestTimeout(UInteger.valueOf(timeout))
-                    .build();
+            if (discoveryResult != null && !discoveryResult.isSuccessful()) {
+                throw new IllegalStateException(discoveryResult.getResponseMessage());
+            }
 
-            // Create an instance of OpcUaClient
-            opcUaClient = OpcUaClient.create(clientConfig);
-            opcUaClient.connect().get(timeout, TimeUnit.MILLISECONDS);
+            opcUaClient = endpoint != null
+                    ? OPCUAClientFactory.connect(endpoint, timeout, security, phases)
+                    : OPCUAClientFactory.connect(endpointUrl, ipAddress, timeout, endpointCacheTtl, security, phases);
 
-            log.info("Connected to OPC UA server.");
+            if (verbosity.logs()) {
+                log.info("Connected to OPC UA server.");
+            }
             result.setResponseMessage("Connected to OPC UA server.");
             result.setSuccessful(true);
 
             // Store the opcUaClient object in a JMeter variable
-            JMeterContextService.getContext().getVariables().putObject("opcUaClient", opcUaClient);
-
-            if (keepalive > 0) {
-                // Schedule a task to close the connection after the keepalive period
-                OpcUaClient finalOpcUaClient = opcUaClient;
-                scheduler.schedule(() -> {
-                    try {
-                        finalOpcUaClient.disconnect().get();
-                        log.info("Disconnected from OPC UA server due to keepalive timeout.");
-                    } catch (Exception ex) {
-                        log.error("Error disconnecting from OPC UA server: " + ex.getMessage(), ex);
-                    }
-                }, keepalive, TimeUnit.MILLISECONDS);
+            JMeterVariables variables = JMeterContextService.getContext().getVariables();
+            variables.putObject(OPCUASessions.CLIENT_VARIABLE, opcUaClient);
+
+            // Report recoveries of this session; otherwise any monitor of a previous session is dropped
+            if (isAutoReconnect()) {
+                OPCUAReconnectMonitor.attach(variables, opcUaClient, getName());
+            } else {
+                OPCUAReconnectMonitor.detach(variables);
+            }
+
+            // Track the session JVM-wide; a keepalive > 0 schedules its disconnect on the shared timer wheel
+            OPCUAConnectionLifecycle.register(opcUaClient, keepalive);
+            if (verbosity.describes(true)) {
+                result.setResponseData(String.format("Live sessions: %d, expiring: %d, leaked: %d",
+                        OPCUAConnectionLifecycle.getLiveSessions(), OPCUAConnectionLifecycle.getExpiringSessions(),
+                        OPCUAConnectionLifecycle.getLeakedSessions()), "UTF-8");
+            }
+
+        } catch (Exception ex) {
+            log.error("Error connecting to OPC UA server: " + ex.getMessage(), ex);
+            result.setResponseMessage("Failed to connect to OPC UA server: " + ex.getMessage());
+            result.setSuccessful(false);
+        } finally {
+            result.sampleEnd(); // End timing
+            permit.close();
+            if (admissionResult != null) {
+                result.addRawSubResult(admissionResult);
+            }
+            if (discoveryResult != null) {
+                result.addRawSubResult(discoveryResult);
+            }
+            if (isReportPhases()) {
+                phases.addSubResults(result, getName());
             }
+        }
+
+        return result;
+    }
 
+    private SampleResult samplePooled(SampleResult result, String endpointUrl, String ipAddress, long timeout,
+                                      int poolSize, long poolIdleTimeout, long endpointCacheTtl,
+                                      OPCUASecurity security) {
+        try {
+            result.sampleStart(); // Start timing
+
+            OPCUASessionPool pool = OPCUASessionPool.getOrCreate(endpointUrl, poolSize, poolIdleTimeout, timeout,
+                    () -> {
+                        // Pooled sessions open on demand; their admission wait counts as the borrower's wait
+                        try (OPCUAConnectAdmission.Permit permit = OPCUAConnectAdmission.admit()) {
+                            return OPCUAClientFactory.connect(endpointUrl, ipAddress, timeout, endpointCacheTtl, security, null);
+                        }
+                    });
+
+            // Borrow and return one session so that the sample verifies the endpoint is reachable
+            OpcUaClient opcUaClient = pool.borrow();
+            pool.release(opcUaClient);
+
+            // Store the pool in a JMeter variable; other samplers borrow sessions from it per sample
+            JMeterContextService.getContext().getVariables().putObject(OPCUASessions.POOL_VARIABLE, pool);
+
+            String message = String.format("Attached to OPC UA session pool (%d of %d sessions open, %d idle).",
+                    pool.getOpenSessions(), pool.getMaxSessions(), pool.getIdleSessions());
+            if (OPCUAResultVerbosity.get().logs()) {
+                log.info(message);
+            }
+            result.setResponseMessage(message);
+            result.setSuccessful(true);
         } catch (Exception ex) {
             log.error("Error connecting to OPC UA server: " + ex.getMessage(), ex);
             result.setResponseMessage("Failed to connect to OPC UA server: " + ex.getMessage());
@@ -190,4 +367,36 @@ public class OPCUAConnectionSampler extends AbstractSampler {
 
         return result;
     }
+
+    @Override
+    public void testStarted() {
+        testStarted("");
+    }
+
+    @Override
+    public void testStarted(String host) {
+        // Pools are created lazily by the first sample
+        OPCUAReconnectMonitor.reset();
+        OPCUAConnectAdmission.reset();
+        OPCUAResultVerbosity.reset();
+        OPCUAMetrics.reset();
+    }
+
+    @Override
+    public void testEnded() {
+        testEnded("");
+    }
+
+    @Override
+    public void testEnded(String host) {
+        log.info(OPCUAReconnectMonitor.summary());
+        if (OPCUAConnectAdmission.isEnabled()) {
+            log.info(OPCUAConnectAdmission.summary());
+        }
+        OPCUAConnectionLifecycle.closeAll();
+        OPCUASessionPool.closeAll();
+        OPCUAEndpointCache.clear();
+        // Sessions are closed, so no call records after this write
+        OPCUAMetrics.flush();
+    }
 }
@@ -40,10 +40,17 @@ public class OPCUAConnectionSamplerGui extends AbstractSamplerGui {
     private static final Logger log = LogManager.getLogger(OPCUAConnectionSamplerGui.class);
 
     private JTextField ipAddressField;
+    private OPCUASecurityPanel securityPanel;
     private JTextField portField;
     private JComboBox<String> protocolDropdown;
     private JTextField timeoutField;
     private JTextField keepaliveField;
+    private JTextField poolSizeField;
+    private JTextField poolIdleTimeoutField;
+    private JTextField endpointCacheTtlField;
+    private JCheckBox reportDiscoveryCheckBox;
+    private JCheckBox reportPhasesCheckBox;
+    private JCheckBox autoReconnectCheckBox;
 
     public OPCUAConnectionSamplerGui() {
         init();
@@ -57,12 +64,19 @@ public class OPCUAConnectionSamplerGui extends AbstractSamplerGui {
         mainPanel.add(makeTitlePanel());
 
         ipAddressField = new JTextField(20);
+        securityPanel = new OPCUASecurityPanel();
         portField = new JTextField(5);
         protocolDropdown = new JComboBox<>(new String[]{"opc.tcp", "opc.https", "opc.wss"});
         timeoutField = new JTextField(10);
         keepaliveField = new JTextField(10);
-
-        JPanel fieldsPanel = new JPanel(new GridLayout(5, 2));
+        poolSizeField = new JTextField(10);
+        poolIdleTimeoutField = new JTextField(10);
+        endpointCacheTtlField = new JTextField(10);
+        reportDiscoveryCheckBox = new JCheckBox("Report Discovery Separately");
+        reportPhasesCheckBox = new JCheckBox("Report Connection Phases");
+        autoReconnectCheckBox = new JCheckBox("Auto Reconnect (Report Recoveries)");
+
+        JPanel fieldsPanel = new JPanel(new GridLayout(10, 2));
         fieldsPanel.add(new JLabel("IP Address:"));
         fieldsPanel.add(ipAddressField);
         fieldsPanel.add(new JLabel("Port:"));
@@ -73,8 +87,19 @@ public class OPCUAConnectionSamplerGui extends AbstractSamplerGui {
         fieldsPanel.add(timeoutField);
         fieldsPanel.add(new JLabel("Keepalive (ms):"));
         fieldsPanel.add(keepaliveField);
+        fieldsPanel.add(new JLabel("Session Pool Size (0 = per thread):"));
+        fieldsPanel.add(poolSizeField);
+        fieldsPanel.add(new JLabel("Pool Idle Timeout (ms):"));
+        fieldsPanel.add(poolIdleTimeoutField);
+        fieldsPanel.add(new JLabel("Endpoint Cache TTL (ms, 0 = off):"));
+        fieldsPanel.add(endpointCacheTtlField);
+        fieldsPanel.add(reportDiscoveryCheckBox);
+        fieldsPanel.add(reportPhasesCheckBox);
+        fieldsPanel.add(autoReconnectCheckBox);
+        fieldsPanel.add(new JLabel());
 
         mainPanel.add(fieldsPanel);
+        mainPanel.add(securityPanel);
         add(mainPanel, BorderLayout.CENTER);
 
         // Add developer information and hyperlink
@@ -124,6 +149,13 @@ public class OPCUAConnectionSamplerGui extends AbstractSamplerGui {
         element.setProperty(OPCUAConnectionSampler.PROTOCOL, protocolDropdown.getSelectedItem().toString());
         element.setProperty(OPCUAConnectionSampler.TIMEOUT, timeoutField.getText().isEmpty() ? "2000" : timeoutField.getText());
         element.setProperty(OPCUAConnectionSampler.KEEPALIVE, keepaliveField.getText().isEmpty() ? "0" : keepaliveField.getText());
+        element.setProperty(OPCUAConnectionSampler.POOL_SIZE, poolSizeField.getText().isEmpty() ? "0" : poolSizeField.getText());
+        element.setProperty(OPCUAConnectionSampler.POOL_IDLE_TIMEOUT, poolIdleTimeoutField.getText().isEmpty() ? "60000" : poolIdleTimeoutField.getText());
+        element.setProperty(OPCUAConnectionSampler.ENDPOINT_CACHE_TTL, endpointCacheTtlField.getText().isEmpty() ? "0" : endpointCacheTtlField.getText());
+        element.setProperty(OPCUAConnectionSampler.REPORT_DISCOVERY, reportDiscoveryCheckBox.isSelected());
+        element.setProperty(OPCUAConnectionSampler.REPORT_PHASES, reportPhasesCheckBox.isSelected());
+        element.setProperty(OPCUAConnectionSampler.AUTO_RECONNECT, autoReconnectCheckBox.isSelected());
+        securityPanel.modifyTestElement(element, OPCUAConnectionSampler.SECURITY_PREFIX);
     }
 
     @Override
@@ -136,6 +168,13 @@ public class OPCUAConnectionSamplerGui extends AbstractSamplerGui {
             protocolDropdown.setSelectedItem(sampler.getProtocol());
             timeoutField.setText(sampler.getTimeout().equals("0") ? "" : sampler.getTimeout());
             keepaliveField.setText(sampler.getKeepalive().equals("0") ? "" : sampler.getKeepalive());
+            poolSizeField.setText(sampler.getPoolSize().equals("0") ? "" : sampler.getPoolSize());
+            poolIdleTimeoutField.setText(sampler.getPoolIdleTimeout());
+            endpointCacheTtlField.setText(sampler.getEndpointCacheTtl().equals("0") ? "" : sampler.getEndpointCacheTtl());
+            reportDiscoveryCheckBox.setSelected(sampler.isReportDiscovery());
+            reportPhasesCheckBox.setSelected(sampler.isReportPhases());
+            autoReconnectCheckBox.setSelected(sampler.isAutoReconnect());
+            securityPanel.configure(sampler, OPCUAConnectionSampler.SECURITY_PREFIX);
         }
     }
 
@@ -147,5 +186,12 @@ public class OPCUAConnectionSamplerGui extends AbstractSamplerGui {
         protocolDropdown.setSelectedIndex(0);
         timeoutField.setText("");
         keepaliveField.setText("");
+        poolSizeField.setText("");
+        poolIdleTimeoutField.setText("");
+        endpointCacheTtlField.setText("");
+        reportDiscoveryCheckBox.setSelected(false);
+        reportPhasesCheckBox.setSelected(false);
+        autoReconnectCheckBox.setSelected(false);
+        securityPanel.clear();
     }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.stack.client.DiscoveryClient;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVM-wide cache of GetEndpoints results keyed by endpoint URL. Concurrent lookups for the same URL share a
+ * single discovery request, so a connect storm only hits the discovery server once per TTL.
+ */
+public final class OPCUAEndpointCache {
+    private static final Logger log = LogManager.getLogger(OPCUAEndpointCache.class);
+
+    private static final ConcurrentMap<String, CachedEndpoints> CACHE = new ConcurrentHashMap<>();
+
+    private OPCUAEndpointCache() {
+    }
+
+    /**
+     * Returns the endpoints of the server, discovering them if there is no cached entry younger than
+     * {@code ttl} milliseconds. A TTL of 0 or less bypasses the cache.
+     */
+    public static List<EndpointDescription> getEndpoints(String endpointUrl, long timeout, long ttl) throws Exception {
+        if (ttl <= 0) {
+            return DiscoveryClient.getEndpoints(endpointUrl, OPCUATransportResources::configure).get(timeout, TimeUnit.MILLISECONDS);
+        }
+
+        long now = System.currentTimeMillis();
+        CachedEndpoints cached = CACHE.get(endpointUrl);
+        if (cached == null || cached.expiresAt < now) {
+            CachedEndpoints fresh = new CachedEndpoints(new CompletableFuture<>(), now + ttl);
+            boolean owner = cached == null
+                    ? CACHE.putIfAbsent(endpointUrl, fresh) == null
+                    : CACHE.replace(endpointUrl, cached, fresh);
+            if (owner) {
+                if (OPCUAResultVerbosity.get().logs()) {
+                    log.info("Discovering endpoints for {}", endpointUrl);
+                }
+                DiscoveryClient.getEndpoints(endpointUrl, OPCUATransportResources::configure).whenComplete((endpoints, ex) -> {
+                    if (ex != null) {
+                        // Do not cache failures; the next caller retries the discovery
+                        CACHE.remove(endpointUrl, fresh);
+                        fresh.endpoints.completeExceptionally(ex);
+                    } else {
+                        fresh.endpoints.complete(endpoints);
+                    }
+                });
+            }
+            cached = CACHE.getOrDefault(endpointUrl, fresh);
+        }
+
+        return cached.endpoints.get(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    public static void invalidate(String endpointUrl) {
+        CACHE.remove(endpointUrl);
+    }
+
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    private static final class CachedEndpoints {
+        private final CompletableFuture<List<EndpointDescription>> endpoints;
+        private final long expiresAt;
+
+        private CachedEndpoints(CompletableFuture<List<EndpointDescription>> endpoints, long expiresAt) {
+            this.endpoints = endpoints;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,537 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.assertions.AssertionResult;
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExtensionObject;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.AggregateConfiguration;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryData;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadDetails;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadProcessedDetails;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadRawModifiedDetails;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.ubyte;
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * Reads the raw or processed history of a set of nodes, following continuation points until every node's
+ * history in the time range has been read or its value limit is reached. Each page is handled as it arrives:
+ * its values are counted, asserted and optionally written to a spill file, and then dropped, so a year of
+ * history is read in the memory of one page. Requests carry the nodes that still have a continuation point,
+ * in chunks no larger than the server's MaxNodesPerHistoryReadData.
+ */
+public class OPCUAHistoryReadSampler extends AbstractSampler implements ThreadListener {
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LogManager.getLogger(OPCUAHistoryReadSampler.class);
+
+    public static final String MODE_RAW = "Raw";
+    public static final String MODE_PROCESSED = "Processed";
+    public static final String[] AGGREGATES = {"Average", "Minimum", "Maximum", "Count"};
+
+    public static final String NODES = "OPCUAHistoryReadSampler.nodes";
+    public static final String NODE_FILE = "OPCUAHistoryReadSampler.nodeFile";
+    public static final String MODE = "OPCUAHistoryReadSampler.mode";
+    public static final String START_TIME = "OPCUAHistoryReadSampler.startTime";
+    public static final String END_TIME = "OPCUAHistoryReadSampler.endTime";
+    public static final String VALUES_PER_PAGE = "OPCUAHistoryReadSampler.valuesPerPage";
+    public static final String MAX_VALUES = "OPCUAHistoryReadSampler.maxValues";
+    public static final String AGGREGATE = "OPCUAHistoryReadSampler.aggregate";
+    public static final String PROCESSING_INTERVAL = "OPCUAHistoryReadSampler.processingInterval";
+    public static final String EXPECTED_VALUE = "OPCUAHistoryReadSampler.expectedValue";
+    public static final String SPILL_FILE = "OPCUAHistoryReadSampler.spillFile";
+    public static final String NODES_PER_REQUEST = "OPCUAHistoryReadSampler.nodesPerRequest";
+    public static final String TIMEOUT = "OPCUAHistoryReadSampler.timeout";
+
+    private transient OPCUACompiledProperty<List<NodeId>> compiledNodes;
+
+    public List<List<String>> getNodes() {
+        return OPCUANodeTable.getRows(this, NODES);
+    }
+
+    public void setNodes(List<List<String>> nodes) {
+        setProperty(OPCUANodeTable.toProperty(NODES, nodes));
+    }
+
+    public String getNodeFile() {
+        return getPropertyAsString(NODE_FILE);
+    }
+
+    public String getMode() {
+        return getPropertyAsString(MODE, MODE_RAW);
+    }
+
+    public String getStartTime() {
+        return getPropertyAsString(START_TIME);
+    }
+
+    public String getEndTime() {
+        return getPropertyAsString(END_TIME);
+    }
+
+    public String getValuesPerPage() {
+        return getPropertyAsString(VALUES_PER_PAGE);
+    }
+
+    public String getMaxValues() {
+        return getPropertyAsString(MAX_VALUES);
+    }
+
+    public String getAggregate() {
+        return getPropertyAsString(AGGREGATE, AGGREGATES[0]);
+    }
+
+    public String getProcessingInterval() {
+        return getPropertyAsString(PROCESSING_INTERVAL);
+    }
+
+    public String getExpectedValue() {
+        return getPropertyAsString(EXPECTED_VALUE);
+    }
+
+    public String getSpillFile() {
+        return getPropertyAsString(SPILL_FILE);
+    }
+
+    public String getNodesPerRequest() {
+        return getPropertyAsString(NODES_PER_REQUEST);
+    }
+
+    public String getTimeout() {
+        return getPropertyAsString(TIMEOUT);
+    }
+
+    @Override
+    public SampleResult sample(Entry e) {
+        SampleResult result = new SampleResult();
+        result.setSampleLabel(getName());
+        OPCUAResultVerbosity verbosity = OPCUAResultVerbosity.get();
+        long timeout = parseLong(getTimeout(), 3000);
+
+        if (compiledNodes == null) {
+            compile();
+        }
+
+        result.sampleStart(); // Start timing
+
+        try (OPCUASessions.Lease lease = OPCUASessions.acquire(getThreadContext().getVariables())) {
+            if (lease == null) {
+                log.error("OPC UA client connection is not available.");
+                result.setResponseMessage("OPC UA client connection is not available.");
+                result.setSuccessful(false);
+                return result;
+            }
+            // Time spent waiting for a pooled session is reported as connect time
+            result.connectEnd();
+            OpcUaClient opcUaClient = lease.getClient();
+
+            List<NodeId> nodeIds = compiledNodes.get();
+            if (nodeIds.isEmpty()) {
+                throw new IllegalArgumentException("No nodes configured.");
+            }
+
+            String expectedValue = getExpectedValue().trim();
+            OPCUAAssertion assertion = expectedValue.isEmpty() ? null : OPCUAAssertion.compile(expectedValue);
+            String spillFile = getSpillFile().trim();
+
+            OPCUAServerLimits limits = OPCUAServerLimits.get(opcUaClient, timeout);
+            int chunkSize = OPCUAServerLimits.chunkSize(limits.getMaxNodesPerHistoryReadData(),
+                    (int) parseLong(getNodesPerRequest(), 0), nodeIds.size());
+
+            Pager pager;
+            try (BufferedWriter spill = spillFile.isEmpty() ? null : openSpillFile(spillFile)) {
+                pager = new Pager(opcUaClient, nodeIds, createDetails(), assertion, spill, result,
+                        parseLong(getMaxValues(), 0), chunkSize, timeout);
+                pager.run();
+            }
+
+            long elapsed = Math.max(1, System.currentTimeMillis() - result.getStartTime());
+            boolean successful = pager.failedNodes == 0 && pager.assertionFailures == 0;
+            String responseMessage = String.format("Read %d values of %d nodes in %d pages (%d HistoryRead requests, "
+                            + "%d nodes per request); first page after %d ms; %.0f values/s.",
+                    pager.values, nodeIds.size(), pager.pages, pager.requests, chunkSize,
+                    result.getLatency(), pager.values * 1000.0 / elapsed);
+            if (pager.failedNodes > 0) {
+                responseMessage += String.format("%nFailed to read the history of %d nodes.", pager.failedNodes);
+            }
+            if (pager.assertionFailures > 0) {
+                responseMessage += String.format("%n%d values did not match %s.", pager.assertionFailures, assertion);
+                AssertionResult assertionResult = new AssertionResult("Assertion for history values");
+                assertionResult.setFailure(true);
+                assertionResult.setFailureMessage(pager.assertionFailures + " of " + pager.values
+                        + " values did not match " + assertion);
+                result.addAssertionResult(assertionResult);
+            }
+            if (!spillFile.isEmpty()) {
+                responseMessage += String.format("%nWrote the values to %s.", spillFile);
+            }
+
+            if (verbosity.logs()) {
+                log.info(responseMessage);
+            }
+            if (verbosity.describes(successful)) {
+                result.setResponseMessage(responseMessage);
+                result.setResponseData(responseMessage, "UTF-8");
+            } else if (!successful) {
+                result.setResponseMessage(pager.failedNodes + " of " + nodeIds.size() + " nodes failed, "
+                        + pager.assertionFailures + " values did not match");
+            }
+            result.setSuccessful(successful);
+        } catch (Exception ex) {
+            log.error("Error reading history: " + ex.getMessage(), ex);
+            result.setResponseMessage("Error reading history: " + ex.getMessage());
+            if (verbosity.describes(false)) {
+                result.setResponseData("Exception: " + ex.getMessage(), "UTF-8");
+            }
+            result.setSuccessful(false);
+        } finally {
+            result.sampleEnd(); // End timing
+            OPCUAReconnectMonitor.sampleCompleted(getThreadContext().getVariables(), result);
+        }
+
+        return result;
+    }
+
+    @Override
+    public void threadStarted() {
+        compile();
+    }
+
+    @Override
+    public void threadFinished() {
+        // Nothing to release; the compiled node list is dropped with the sampler clone
+    }
+
+    private void compile() {
+        // The node list is resolved once per thread unless it uses variables or functions
+        compiledNodes = OPCUACompiledProperty.of(this, this::collectNodes, NODES, NODE_FILE);
+    }
+
+    private List<NodeId> collectNodes() throws IOException {
+        List<NodeId> nodeIds = new ArrayList<>();
+        for (List<String> row : getNodes()) {
+            try {
+                nodeIds.add(new NodeId(Integer.parseInt(row.get(0)), Integer.parseInt(row.get(1))));
+            } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+                log.warn("Invalid NodeId format: " + row);
+            }
+        }
+
+        String nodeFile = getNodeFile();
+        if (nodeFile != null && !nodeFile.isEmpty()) {
+            return OPCUANodeList.concat(nodeIds, OPCUANodeList.get(nodeFile).getNodeIds());
+        }
+        return nodeIds;
+    }
+
+    private HistoryReadDetails createDetails() {
+        long now = System.currentTimeMillis();
+        DateTime start = toDateTime(getStartTime(), now - TimeUnit.HOURS.toMillis(1));
+        DateTime end = toDateTime(getEndTime(), now);
+
+        if (MODE_PROCESSED.equalsIgnoreCase(getMode())) {
+            // The aggregate list is filled in per request, since it must have one entry per node
+            AggregateConfiguration configuration = new AggregateConfiguration(true, false, ubyte(100), ubyte(100), true);
+            return new ReadProcessedDetails(start, end, (double) parseLong(getProcessingInterval(), 60000),
+                    new NodeId[0], configuration);
+        }
+        long valuesPerPage = parseLong(getValuesPerPage(), 1000);
+        return new ReadRawModifiedDetails(false, start, end, uint(Math.max(0, valuesPerPage)), false);
+    }
+
+    private NodeId aggregateType() {
+        String aggregate = getAggregate();
+        if (aggregate.equalsIgnoreCase("Minimum")) {
+            return Identifiers.AggregateFunction_Minimum;
+        }
+        if (aggregate.equalsIgnoreCase("Maximum")) {
+            return Identifiers.AggregateFunction_Maximum;
+        }
+        if (aggregate.equalsIgnoreCase("Count")) {
+            return Identifiers.AggregateFunction_Count;
+        }
+        return Identifiers.AggregateFunction_Average;
+    }
+
+    /**
+     * Parses an ISO-8601 instant, a number of milliseconds since the epoch, {@code now} or {@code now-<n><unit>}
+     * with the unit {@code s}, {@code m}, {@code h} or {@code d}; empty means the default.
+     */
+    static DateTime toDateTime(String text, long defaultMillis) {
+        String value = text == null ? "" : text.trim();
+        if (value.isEmpty()) {
+            return new DateTime(Instant.ofEpochMilli(defaultMillis));
+        }
+        if (value.toLowerCase().startsWith("now")) {
+            long millis = System.currentTimeMillis();
+            String offset = value.substring(3).trim();
+            if (!offset.isEmpty()) {
+                if (!offset.startsWith("-") || offset.length() < 3) {
+                    throw new IllegalArgumentException("Invalid time: " + text);
+                }
+                long amount = Long.parseLong(offset.substring(1, offset.length() - 1).trim());
+                switch (Character.toLowerCase(offset.charAt(offset.length() - 1))) {
+                    case 's':
+                        millis -= TimeUnit.SECONDS.toMillis(amount);
+                        break;
+                    case 'm':
+                        millis -= TimeUnit.MINUTES.toMillis(amount);
+                        break;
+                    case 'h':
+                        millis -= TimeUnit.HOURS.toMillis(amount);
+                        break;
+                    case 'd':
+                        millis -= TimeUnit.DAYS.toMillis(amount);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid time unit: " + text);
+                }
+            }
+            return new DateTime(Instant.ofEpochMilli(millis));
+        }
+        if (value.chars().allMatch(Character::isDigit)) {
+            return new DateTime(Instant.ofEpochMilli(Long.parseLong(value)));
+        }
+        return new DateTime(Instant.parse(value));
+    }
+
+    private static BufferedWriter openSpillFile(String path) throws IOException {
+        Path file = Paths.get(path);
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        writer.write("# nodeId,sourceTimestamp,value,status");
+        writer.newLine();
+        return writer;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException | NullPointerException ex) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Sends one HistoryRead request at a time for the nodes waiting for their next page, and handles each page
+     * before the next request. Nodes that are not finished go to the back of the queue with their continuation
+     * point, so every node advances at the same pace.
+     */
+    private final class Pager {
+        private final OpcUaClient client;
+        private final List<NodeId> nodeIds;
+        private final HistoryReadDetails details;
+        private final OPCUAAssertion assertion;
+        private final BufferedWriter spill;
+        private final SampleResult result;
+        private final long maxValues;
+        private final int chunkSize;
+        private final long timeout;
+
+        private final ByteString[] continuationPoints;
+        private final long[] nodeValues;
+        private final Deque<Integer> pending = new ArrayDeque<>();
+        private final List<HistoryReadValueId> released = new ArrayList<>();
+
+        private long values;
+        private int pages;
+        private int requests;
+        private int failedNodes;
+        private long assertionFailures;
+
+        private Pager(OpcUaClient client, List<NodeId> nodeIds, HistoryReadDetails details, OPCUAAssertion assertion,
+                      BufferedWriter spill, SampleResult result, long maxValues, int chunkSize, long timeout) {
+            this.client = client;
+            this.nodeIds = nodeIds;
+            this.details = details;
+            this.assertion = assertion;
+            this.spill = spill;
+            this.result = result;
+            this.maxValues = maxValues;
+            this.chunkSize = chunkSize;
+            this.timeout = timeout;
+            this.continuationPoints = new ByteString[nodeIds.size()];
+            this.nodeValues = new long[nodeIds.size()];
+        }
+
+        private void run() throws Exception {
+            for (int i = 0; i < nodeIds.size(); i++) {
+                pending.add(i);
+            }
+            try {
+                while (!pending.isEmpty()) {
+                    int[] chunk = new int[Math.min(chunkSize, pending.size())];
+                    List<HistoryReadValueId> readValueIds = new ArrayList<>(chunk.length);
+                    for (int i = 0; i < chunk.length; i++) {
+                        chunk[i] = pending.poll();
+                        readValueIds.add(readValueId(chunk[i]));
+                    }
+
+                    HistoryReadResponse response = OPCUAMetrics.track(OPCUAMetrics.HISTORY_READ, client, System.nanoTime(),
+                            client.historyRead(detailsFor(chunk.length), TimestampsToReturn.Source, false, readValueIds),
+                            read -> read.getResponseHeader().getServiceResult()).get(timeout, TimeUnit.MILLISECONDS);
+                    requests++;
+                    if (requests == 1) {
+                        // Time to the first response
+                        result.latencyEnd();
+                    }
+
+                    HistoryReadResult[] results = response.getResults();
+                    for (int i = 0; i < chunk.length; i++) {
+                        handle(chunk[i], results != null && i < results.length ? results[i] : null);
+                    }
+                }
+            } finally {
+                releaseContinuationPoints();
+            }
+        }
+
+        private void handle(int node, HistoryReadResult historyReadResult) throws IOException {
+            continuationPoints[node] = null;
+            StatusCode status = historyReadResult == null ? null : historyReadResult.getStatusCode();
+            if (status == null || status.isBad()) {
+                failedNodes++;
+                log.warn("Failed to read the history of NodeId {}: {}", nodeIds.get(node), status);
+                return;
+            }
+            pages++;
+
+            ExtensionObject data = historyReadResult.getHistoryData();
+            DataValue[] dataValues = data == null ? null
+                    : ((HistoryData) data.decode(client.getStaticSerializationContext())).getDataValues();
+            if (dataValues != null) {
+                int count = dataValues.length;
+                if (maxValues > 0) {
+                    count = (int) Math.min(count, maxValues - nodeValues[node]);
+                }
+                for (int i = 0; i < count; i++) {
+                    handle(node, dataValues[i]);
+                }
+                nodeValues[node] += count;
+                values += count;
+            }
+
+            ByteString continuationPoint = historyReadResult.getContinuationPoint();
+            if (continuationPoint != null && continuationPoint.isNotNull()) {
+                if (maxValues > 0 && nodeValues[node] >= maxValues) {
+                    released.add(new HistoryReadValueId(nodeIds.get(node), null, QualifiedName.NULL_VALUE, continuationPoint));
+                } else {
+                    continuationPoints[node] = continuationPoint;
+                    pending.add(node);
+                }
+            }
+        }
+
+        private void handle(int node, DataValue dataValue) throws IOException {
+            if (assertion != null && !assertion.test(dataValue)) {
+                assertionFailures++;
+            }
+            if (spill != null) {
+                Object value = dataValue.getValue().getValue();
+                DateTime sourceTime = dataValue.getSourceTime();
+                StatusCode status = dataValue.getStatusCode();
+                spill.write(nodeIds.get(node).toParseableString() + ","
+                        + (sourceTime == null ? "" : sourceTime.getJavaInstant()) + ","
+                        + (value == null ? "" : value) + ","
+                        + (status == null ? "" : "0x" + Long.toHexString(status.getValue()).toUpperCase()));
+                spill.newLine();
+            }
+        }
+
+        private HistoryReadValueId readValueId(int node) {
+            ByteString continuationPoint = continuationPoints[node];
+            return new HistoryReadValueId(nodeIds.get(node), null, QualifiedName.NULL_VALUE,
+                    continuationPoint == null ? ByteString.NULL_VALUE : continuationPoint);
+        }
+
+        private HistoryReadDetails detailsFor(int nodeCount) {
+            if (!(details instanceof ReadProcessedDetails)) {
+                return details;
+            }
+            ReadProcessedDetails processed = (ReadProcessedDetails) details;
+            if (processed.getAggregateType().length == nodeCount) {
+                return processed;
+            }
+            NodeId[] aggregateTypes = new NodeId[nodeCount];
+            Arrays.fill(aggregateTypes, aggregateType());
+            return new ReadProcessedDetails(processed.getStartTime(), processed.getEndTime(),
+                    processed.getProcessingInterval(), aggregateTypes, processed.getAggregateConfiguration());
+        }
+
+        private void releaseContinuationPoints() {
+            // Nodes stopped at the value limit, or left pending or in flight by an error, would otherwise hold
+            // server resources
+            for (int node = 0; node < continuationPoints.length; node++) {
+                if (continuationPoints[node] != null) {
+                    released.add(readValueId(node));
+                    continuationPoints[node] = null;
+                }
+            }
+            for (int from = 0; from < released.size(); from += chunkSize) {
+                List<HistoryReadValueId> chunk = released.subList(from, Math.min(released.size(), from + chunkSize));
+                try {
+                    client.historyRead(detailsFor(chunk.size()), TimestampsToReturn.Source, true, chunk)
+                            .get(timeout, TimeUnit.MILLISECONDS);
+                } catch (Exception ex) {
+                    log.warn("Failed to release history continuation points: {}", ex.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.samplers.gui.AbstractSamplerGui;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.net.URI;
+
+public class OPCUAHistoryReadSamplerGui extends AbstractSamplerGui {
+    private static final Logger log = LogManager.getLogger(OPCUAHistoryReadSamplerGui.class);
+
+    private OPCUANodeTablePanel nodeTablePanel;
+    private JTextField nodeFileField;
+    private JComboBox<String> modeDropdown;
+    private JTextField startTimeField;
+    private JTextField endTimeField;
+    private JTextField valuesPerPageField;
+    private JTextField maxValuesField;
+    private JComboBox<String> aggregateDropdown;
+    private JTextField processingIntervalField;
+    private JTextField expectedValueField;
+    private JTextField spillFileField;
+    private JTextField nodesPerRequestField;
+    private JTextField timeoutField;
+
+    public OPCUAHistoryReadSamplerGui() {
+        init();
+    }
+
+    private void init() {
+        setLayout(new BorderLayout(0, 5));
+        setBorder(makeBorder());
+
+        JPanel mainPanel = new VerticalPanel();
+        mainPanel.add(makeTitlePanel());
+
+        nodeTablePanel = new OPCUANodeTablePanel("Nodes", "Namespace Index (ns=)", "Identifier (i=)");
+        nodeFileField = new JTextField(30);
+        modeDropdown = new JComboBox<>(new String[]{OPCUAHistoryReadSampler.MODE_RAW, OPCUAHistoryReadSampler.MODE_PROCESSED});
+        startTimeField = new JTextField(20);
+        endTimeField = new JTextField(20);
+        valuesPerPageField = new JTextField(10);
+        maxValuesField = new JTextField(10);
+        aggregateDropdown = new JComboBox<>(OPCUAHistoryReadSampler.AGGREGATES);
+        processingIntervalField = new JTextField(10);
+        expectedValueField = new JTextField(20);
+        spillFileField = new JTextField(30);
+        nodesPerRequestField = new JTextField(10);
+        timeoutField = new JTextField(10);
+
+        JPanel fieldsPanel = new JPanel(new GridLayout(12, 2));
+        fieldsPanel.setBorder(BorderFactory.createTitledBorder("Settings"));
+        fieldsPanel.add(new JLabel("Node List File (CSV ns,i per line, or catalogue):"));
+        fieldsPanel.add(nodeFileField);
+        fieldsPanel.add(new JLabel("Mode:"));
+        fieldsPanel.add(modeDropdown);
+        fieldsPanel.add(new JLabel("Start Time (ISO instant, now-1h, ...):"));
+        fieldsPanel.add(startTimeField);
+        fieldsPanel.add(new JLabel("End Time (empty = now):"));
+        fieldsPanel.add(endTimeField);
+        fieldsPanel.add(new JLabel("Values per Page (Raw):"));
+        fieldsPanel.add(valuesPerPageField);
+        fieldsPanel.add(new JLabel("Max Values per Node (0 = all):"));
+        fieldsPanel.add(maxValuesField);
+        fieldsPanel.add(new JLabel("Aggregate (Processed):"));
+        fieldsPanel.add(aggregateDropdown);
+        fieldsPanel.add(new JLabel("Processing Interval (ms, Processed):"));
+        fieldsPanel.add(processingIntervalField);
+        fieldsPanel.add(new JLabel("Expected Value (every value, e.g. status:good):"));
+        fieldsPanel.add(expectedValueField);
+        fieldsPanel.add(new JLabel("Spill File (CSV, empty = none):"));
+        fieldsPanel.add(spillFileField);
+        fieldsPanel.add(new JLabel("Max Nodes per Request (0 = server limit):"));
+        fieldsPanel.add(nodesPerRequestField);
+        fieldsPanel.add(new JLabel("Timeout (ms):"));
+        fieldsPanel.add(timeoutField);
+
+        mainPanel.add(nodeTablePanel);
+        mainPanel.add(fieldsPanel);
+        add(mainPanel, BorderLayout.CENTER);
+
+        // Add developer information and hyperlink
+        JLabel developerLabel = new JLabel("<html><i>Developed by Mohammed Hlayel;</i></html>");
+        JLabel githubLink = new JLabel("<html><a href='https://github.com/Sahermatter2024'>Help and Update</a></html>");
+        githubLink.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        githubLink.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                try {
+                    Desktop.getDesktop().browse(new URI("https://github.com/Sahermatter2024"));
+                } catch (Exception ex) {
+                    log.error("Error opening link", ex);
+                }
+            }
+        });
+
+        JPanel footerPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        footerPanel.add(developerLabel);
+        footerPanel.add(githubLink);
+
+        add(footerPanel, BorderLayout.SOUTH);
+    }
+
+    @Override
+    public String getLabelResource() {
+        return "opcuaHistoryReadSampler_title";
+    }
+
+    @Override
+    public String getStaticLabel() {
+        return "OPC UA History Read Sampler";
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        OPCUAHistoryReadSampler sampler = new OPCUAHistoryReadSampler();
+        modifyTestElement(sampler);
+        return sampler;
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        super.configureTestElement(element);
+        if (element instanceof OPCUAHistoryReadSampler) {
+            ((OPCUAHistoryReadSampler) element).setNodes(nodeTablePanel.getRows());
+        }
+        element.setProperty(OPCUAHistoryReadSampler.NODE_FILE, nodeFileField.getText());
+        element.setProperty(OPCUAHistoryReadSampler.MODE, (String) modeDropdown.getSelectedItem());
+        element.setProperty(OPCUAHistoryReadSampler.START_TIME, startTimeField.getText().isEmpty() ? "now-1h" : startTimeField.getText());
+        element.setProperty(OPCUAHistoryReadSampler.END_TIME, endTimeField.getText());
+        element.setProperty(OPCUAHistoryReadSampler.VALUES_PER_PAGE, valuesPerPageField.getText().isEmpty() ? "1000" : valuesPerPageField.getText());
+        element.setProperty(OPCUAHistoryReadSampler.MAX_VALUES, maxValuesField.getText().isEmpty() ? "0" : maxValuesField.getText());
+        element.setProperty(OPCUAHistoryReadSampler.AGGREGATE, (String) aggregateDropdown.getSelectedItem());
+        element.setProperty(OPCUAHistoryReadSampler.PROCESSING_INTERVAL, processingIntervalField.getText().isEmpty() ? "60000" : processingIntervalField.getText());
+        element.setProperty(OPCUAHistoryReadSampler.EXPECTED_VALUE, expectedValueField.getText());
+        element.setProperty(OPCUAHistoryReadSampler.SPILL_FILE, spillFileField.getText());
+        element.setProperty(OPCUAHistoryReadSampler.NODES_PER_REQUEST, nodesPerRequestField.getText().isEmpty() ? "0" : nodesPerRequestField.getText());
+        element.setProperty(OPCUAHistoryReadSampler.TIMEOUT, timeoutField.getText().isEmpty() ? "3000" : timeoutField.getText());
+    }
+
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+        if (element instanceof OPCUAHistoryReadSampler) {
+            OPCUAHistoryReadSampler sampler = (OPCUAHistoryReadSampler) element;
+            nodeTablePanel.setRows(sampler.getNodes());
+            nodeFileField.setText(sampler.getNodeFile());
+            modeDropdown.setSelectedItem(sampler.getMode());
+            startTimeField.setText(sampler.getStartTime());
+            endTimeField.setText(sampler.getEndTime());
+            valuesPerPageField.setText(sampler.getValuesPerPage());
+            maxValuesField.setText(sampler.getMaxValues());
+            aggregateDropdown.setSelectedItem(sampler.getAggregate());
+            processingIntervalField.setText(sampler.getProcessingInterval());
+            expectedValueField.setText(sampler.getExpectedValue());
+            spillFileField.setText(sampler.getSpillFile());
+            nodesPerRequestField.setText(sampler.getNodesPerRequest());
+            timeoutField.setText(sampler.getTimeout());
+        }
+    }
+
+    @Override
+    public void clearGui() {
+        super.clearGui();
+        nodeTablePanel.clear();
+        nodeFileField.setText("");
+        modeDropdown.setSelectedItem(OPCUAHistoryReadSampler.MODE_RAW);
+        startTimeField.setText("now-1h");
+        endTimeField.setText("");
+        valuesPerPageField.setText("1000");
+        maxValuesField.setText("0");
+        aggregateDropdown.setSelectedItem(OPCUAHistoryReadSampler.AGGREGATES[0]);
+        processingIntervalField.setText("60000");
+        expectedValueField.setText("");
+        spillFileField.setText("");
+        nodesPerRequestField.setText("0");
+        timeoutField.setText("3000");
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.stack.client.security.ClientCertificateValidator;
+import org.eclipse.milo.opcua.stack.client.security.DefaultClientCertificateValidator;
+import org.eclipse.milo.opcua.stack.core.security.DefaultTrustListManager;
+import org.eclipse.milo.opcua.stack.core.util.CertificateUtil;
+import org.eclipse.milo.opcua.stack.core.util.SelfSignedCertificateBuilder;
+import org.eclipse.milo.opcua.stack.core.util.SelfSignedCertificateGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Client certificate, key pair and server trust list shared JVM-wide by every session that uses security.
+ * They are loaded, or generated, on first use and reused afterwards, so opening a secure session costs only
+ * the handshake and never a key generation or keystore read. A generated certificate is saved to the keystore
+ * named by the JMeter property {@value #GENERATED_KEYSTORE_PROPERTY} and loaded from there by later runs, so
+ * the server only has to trust it once.
+ */
+public final class OPCUAKeyMaterial {
+    private static final Logger log = LogManager.getLogger(OPCUAKeyMaterial.class);
+
+    // Application URI of the generated certificate; a keystore certificate brings its own
+    public static final String APPLICATION_URI = "urn:jmeter:opcua:sampler";
+
+    public static final String GENERATED_KEYSTORE_PROPERTY = "opcua.client.certificate.file";
+    private static final String GENERATED_KEYSTORE_DEFAULT =
+            Paths.get(System.getProperty("user.home"), ".jmeter-opcua", "client-certificate.p12").toString();
+    // The generated keystore only protects a self-signed test certificate, so its password is fixed
+    private static final String GENERATED_KEYSTORE_PASSWORD = "jmeter-opcua";
+    private static final String GENERATED_KEY_ALIAS = "client";
+
+    private static final ConcurrentMap<String, OPCUAKeyMaterial> CACHE = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, ClientCertificateValidator> VALIDATORS = new ConcurrentHashMap<>();
+
+    private final KeyPair keyPair;
+    private final X509Certificate[] certificateChain;
+    private final String applicationUri;
+
+    private OPCUAKeyMaterial(KeyPair keyPair, X509Certificate[] certificateChain, String applicationUri) {
+        this.keyPair = keyPair;
+        this.certificateChain = certificateChain;
+        this.applicationUri = applicationUri;
+    }
+
+    /**
+     * Returns the key material from a PKCS12 keystore, or a self-signed certificate when no keystore is given.
+     * The self-signed certificate is generated on the first run and loaded from its keystore file afterwards. A keystore is read once per path and alias; the password of the first caller wins.
+     *
+     * @param alias entry of the keystore holding the key; empty takes the first key entry
+     */
+    public static OPCUAKeyMaterial get(String keystore, String password, String alias) throws IOException {
+        String key = keystore.isEmpty() ? "" : Paths.get(keystore).toAbsolutePath().normalize() + "#" + alias;
+        try {
+            // Threads asking for the same keystore while it loads wait for that load instead of starting their own
+            return CACHE.computeIfAbsent(key, k -> {
+                try {
+                    return keystore.isEmpty() ? loadOrGenerate() : load(keystore, password, alias);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Returns the validator of server certificates for a trust list directory; the directory holds
+     * {@code trusted/certs}, {@code issuers/certs} and {@code rejected}, and certificates of unknown servers
+     * land in {@code rejected} to be moved to {@code trusted/certs}. Without a directory every server is accepted;
+     * {@link OPCUASecurity} only allows that for policy None or when accepting any server was chosen explicitly.
+     */
+    public static ClientCertificateValidator getValidator(String trustDir, boolean acceptAnyServer) throws IOException {
+        if (trustDir.isEmpty()) {
+            return VALIDATORS.computeIfAbsent(acceptAnyServer ? "*" : "", k -> {
+                if (acceptAnyServer) {
+                    log.warn("Accepting any OPC UA server certificate; server certificates are not validated");
+                }
+                return new ClientCertificateValidator.InsecureValidator();
+            });
+        }
+        String key = Paths.get(trustDir).toAbsolutePath().normalize().toString();
+        try {
+            return VALIDATORS.computeIfAbsent(key, k -> {
+                try {
+                    log.info("Loading OPC UA trust list from {}", k);
+                    return new DefaultClientCertificateValidator(new DefaultTrustListManager(new File(k)));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    public KeyPair getKeyPair() {
+        return keyPair;
+    }
+
+    public X509Certificate getCertificate() {
+        return certificateChain[0];
+    }
+
+    public X509Certificate[] getCertificateChain() {
+        return certificateChain;
+    }
+
+    public String getApplicationUri() {
+        return applicationUri;
+    }
+
+    private static OPCUAKeyMaterial loadOrGenerate() throws IOException {
+        String file = JMeterUtils.getPropDefault(GENERATED_KEYSTORE_PROPERTY, GENERATED_KEYSTORE_DEFAULT).trim();
+        if (file.isEmpty()) {
+            return generate(null);
+        }
+        if (Files.exists(Paths.get(file))) {
+            try {
+                return load(file, GENERATED_KEYSTORE_PASSWORD, GENERATED_KEY_ALIAS);
+            } catch (IOException ex) {
+                log.warn("Cannot load the generated OPC UA client certificate from {}, generating a new one: {}",
+                        file, ex.getMessage());
+            }
+        }
+        return generate(Paths.get(file));
+    }
+
+    private static OPCUAKeyMaterial generate(Path file) throws IOException {
+        OPCUAKeyMaterial keyMaterial;
+        try {
+            KeyPair keyPair = SelfSignedCertificateGenerator.generateRsaKeyPair(2048);
+            String hostName = InetAddress.getLocalHost().getHostName();
+            X509Certificate certificate = new SelfSignedCertificateBuilder(keyPair)
+                    .setCommonName("JMeter OPC UA Sampler")
+                    .setApplicationUri(APPLICATION_URI)
+                    .addDnsName(hostName)
+                    .build();
+            log.info("Generated a self-signed OPC UA client certificate for {} ({})", APPLICATION_URI,
+                    certificate.getSubjectX500Principal());
+            keyMaterial = new OPCUAKeyMaterial(keyPair, new X509Certificate[]{certificate}, APPLICATION_URI);
+        } catch (Exception ex) {
+            throw new IOException("Cannot generate an OPC UA client certificate: " + ex.getMessage(), ex);
+        }
+        if (file != null) {
+            save(keyMaterial, file);
+        }
+        return keyMaterial;
+    }
+
+    private static void save(OPCUAKeyMaterial keyMaterial, Path file) {
+        // A run that cannot save the certificate still uses it; the next run generates another one
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            KeyStore store = KeyStore.getInstance("PKCS12");
+            store.load(null, null);
+            store.setKeyEntry(GENERATED_KEY_ALIAS, keyMaterial.keyPair.getPrivate(),
+                    GENERATED_KEYSTORE_PASSWORD.toCharArray(), keyMaterial.certificateChain);
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    store.store(out, GENERATED_KEYSTORE_PASSWORD.toCharArray());
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            log.info("Saved the generated OPC UA client certificate to {}", file);
+        } catch (IOException | GeneralSecurityException ex) {
+            log.warn("Cannot save the generated OPC UA client certificate to {}: {}", file, ex.getMessage());
+        }
+    }
+
+    private static String firstKeyEntry(KeyStore store) throws GeneralSecurityException {
+        for (Enumeration<String> aliases = store.aliases(); aliases.hasMoreElements(); ) {
+            String candidate = aliases.nextElement();
+            if (store.isKeyEntry(candidate)) {
+                return candidate;
+            }
+        }
+        return "";
+    }
+
+    private static OPCUAKeyMaterial load(String keystore, String password, String alias) throws IOException {
+        char[] secret = password.toCharArray();
+        try (InputStream in = Files.newInputStream(Paths.get(keystore))) {
+            KeyStore store = KeyStore.getInstance("PKCS12");
+            store.load(in, secret);
+
+            String entry = alias.isEmpty() ? firstKeyEntry(store) : alias;
+            Key key = entry.isEmpty() ? null : store.getKey(entry, secret);
+            if (!(key instanceof PrivateKey)) {
+                throw new IOException("Keystore " + keystore + " has no private key"
+                        + (alias.isEmpty() ? "" : " under alias " + alias));
+            }
+            Certificate[] chain = store.getCertificateChain(entry);
+            X509Certificate[] certificateChain = Arrays.copyOf(chain, chain.length, X509Certificate[].class);
+            String applicationUri = CertificateUtil.getSanUri(certificateChain[0]).orElseThrow(() -> new IOException(
+                    "Certificate " + entry + " in " + keystore + " has no application URI in its subject alternative name"));
+
+            log.info("Loaded OPC UA client certificate {} for {} from {}", entry, applicationUri, keystore);
+            return new OPCUAKeyMaterial(new KeyPair(certificateChain[0].getPublicKey(), (PrivateKey) key),
+                    certificateChain, applicationUri);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Cannot read keystore " + keystore + ": " + ex.getMessage(), ex);
+        }
+    }
+}
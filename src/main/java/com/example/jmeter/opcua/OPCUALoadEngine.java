@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Open-model load generator behind the load engine sampler. It keeps many OPC UA sessions open and issues reads
+ * and writes at target rates without blocking, however fast the server answers. Every connect, read and write
+ * completion is queued as its own {@link SampleResult} for the owning JMeter thread to report; each connect also
+ * reports its secure channel handshake on its own, so the cost of the security policy shows apart from the session.
+ */
+public final class OPCUALoadEngine implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(OPCUALoadEngine.class);
+
+    // Sessions opened at the same time while ramping up
+    private static final int CONNECT_CONCURRENCY = 100;
+    // Pacing resolution of the arrival scheduler
+    private static final long TICK_MILLIS = 5;
+    // Completions waiting to be reported before new ones are counted as unreported
+    private static final int MAX_QUEUED_RESULTS = 100_000;
+
+    private final String label;
+    private final EndpointDescription endpoint;
+    private final OPCUASecurity security;
+    private final long timeout;
+    private final int sessionCount;
+    private final NodeId[] nodeIds;
+    private final double readRate;
+    private final double writeRate;
+    private final long duration;
+    private final int maxOutstanding;
+    private final OPCUAResultVerbosity verbosity = OPCUAResultVerbosity.get();
+    // Labels of the per-request results, built once rather than for every request
+    private final String connectLabel;
+    private final String channelLabel;
+    private final String readLabel;
+    private final String writeLabel;
+
+    private final AtomicReferenceArray<OpcUaClient> sessions;
+    private final AtomicInteger connectedSessions = new AtomicInteger();
+    private final AtomicInteger nextConnect = new AtomicInteger();
+    private final AtomicInteger pendingConnects = new AtomicInteger();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final BlockingQueue<SampleResult> completions = new LinkedBlockingQueue<>(MAX_QUEUED_RESULTS);
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder unreported = new LongAdder();
+
+    // Only touched by the scheduler thread
+    private long startNanos;
+    private long lastTickNanos;
+    private double readsDue;
+    private double writesDue;
+    private int nextSession;
+    private int nextNode;
+    private boolean nextWriteValue;
+
+    // Two values of each node's DataType, written in turn; null until the DataTypes have been read
+    private volatile Variant[][] writeValues;
+    private final AtomicBoolean writeTypesRequested = new AtomicBoolean();
+
+    private volatile long endNanos;
+    private volatile boolean finished;
+    private volatile boolean closed;
+
+    /**
+     * @param readRate       target reads per second over all sessions once every session is connected
+     * @param writeRate      target writes per second over all sessions once every session is connected
+     * @param duration       milliseconds to generate load for; 0 runs until {@link #close()}
+     * @param maxOutstanding requests in flight above which new arrivals are dropped and counted
+     */
+    public OPCUALoadEngine(String label, EndpointDescription endpoint, OPCUASecurity security, long timeout,
+                           int sessionCount, NodeId[] nodeIds, double readRate, double writeRate, long duration,
+                           int maxOutstanding) {
+        this.label = label;
+        this.connectLabel = label + " - Connect";
+        this.channelLabel = label + " - " + OPCUAConnectPhases.Phase.SECURE_CHANNEL.getLabel();
+        this.readLabel = label + " - Read";
+        this.writeLabel = label + " - Write";
+        this.endpoint = endpoint;
+        this.security = security;
+        this.timeout = timeout;
+        this.sessionCount = sessionCount;
+        this.nodeIds = nodeIds;
+        this.readRate = readRate;
+        this.writeRate = writeRate;
+        this.duration = duration;
+        this.maxOutstanding = maxOutstanding;
+        this.sessions = new AtomicReferenceArray<>(sessionCount);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "opcua-load-engine-" + label);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+        lastTickNanos = startNanos;
+        for (int i = 0; i < Math.min(CONNECT_CONCURRENCY, sessionCount); i++) {
+            connectNext();
+        }
+        scheduler.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits up to the given time for the next completion.
+     *
+     * @return the completion, or null if none arrived in time
+     */
+    public SampleResult poll(long timeoutMillis) throws InterruptedException {
+        return completions.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * True once the duration has passed and every issued request has completed and been reported.
+     */
+    public boolean isDone() {
+        return finished && outstanding.get() == 0 && pendingConnects.get() == 0 && completions.isEmpty();
+    }
+
+    public SampleResult summary() {
+        double seconds = Math.max(1, (endNanos > 0 ? endNanos : System.nanoTime()) - startNanos) / 1e9;
+        String message = String.format("Sessions connected: %d of %d%n"
+                        + "Reads: %d (%.1f/s, target %.1f/s)%n"
+                        + "Writes: %d (%.1f/s, target %.1f/s)%n"
+                        + "Failed requests: %d%n"
+                        + "Arrivals dropped at %d outstanding requests: %d%n"
+                        + "Completions not reported (queue full): %d",
+                connectedSessions.get(), sessionCount,
+                reads.sum(), reads.sum() / seconds, readRate,
+                writes.sum(), writes.sum() / seconds, writeRate,
+                failures.sum(), maxOutstanding, dropped.sum(), unreported.sum());
+
+        SampleResult result = new SampleResult();
+        result.setSampleLabel(label + " - Summary");
+        result.setStampAndTime(System.currentTimeMillis(), 0);
+        result.setResponseMessage(message);
+        result.setResponseData(message, "UTF-8");
+        result.setSuccessful(dropped.sum() == 0 && unreported.sum() == 0);
+        return result;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        finished = true;
+        scheduler.shutdownNow();
+        for (int i = 0; i < connectedSessions.get(); i++) {
+            OpcUaClient client = sessions.get(i);
+            if (client != null) {
+                client.disconnect();
+            }
+        }
+    }
+
+    private void connectNext() {
+        if (closed || nextConnect.getAndIncrement() >= sessionCount) {
+            return;
+        }
+        pendingConnects.incrementAndGet();
+        long startMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        OPCUAConnectPhases phases = new OPCUAConnectPhases(null);
+        OPCUAClientFactory.connectAsync(endpoint, timeout, security, phases).whenComplete((client, ex) -> {
+            if (phases.isStarted(OPCUAConnectPhases.Phase.SECURE_CHANNEL)) {
+                recordChannel(phases);
+            }
+            if (ex != null) {
+                failures.increment();
+                record(connectLabel, startMillis, start, false, "Failed to connect: " + ex.getMessage());
+            } else if (closed) {
+                client.disconnect();
+            } else {
+                sessions.set(connectedSessions.getAndIncrement(), client);
+                if (writeRate > 0 && writeTypesRequested.compareAndSet(false, true)) {
+                    resolveWriteValues(client);
+                }
+                record(connectLabel, startMillis, start, true,
+                        verbosity.describes(true) ? "Connected to " + endpoint.getEndpointUrl() : null);
+            }
+            pendingConnects.decrementAndGet();
+            connectNext();
+        });
+    }
+
+    private void tick() {
+        try {
+            long now = System.nanoTime();
+            if (duration > 0 && now - startNanos >= TimeUnit.MILLISECONDS.toNanos(duration)) {
+                endNanos = now;
+                finished = true;
+                scheduler.shutdown();
+                return;
+            }
+
+            // Sessions still connecting do not generate load yet, so the rate ramps up with the connections
+            int connected = connectedSessions.get();
+            double seconds = (now - lastTickNanos) / 1e9 * connected / sessionCount;
+            lastTickNanos = now;
+            readsDue += readRate * seconds;
+            if (writeValues != null) {
+                // Writes start once the values are encoded for the DataTypes of the nodes
+                writesDue += writeRate * seconds;
+            }
+
+            for (; readsDue >= 1; readsDue--) {
+                issue(connected, false);
+            }
+            for (; writesDue >= 1; writesDue--) {
+                issue(connected, true);
+            }
+        } catch (RuntimeException ex) {
+            // An exception would cancel the periodic task and silently stop the load
+            log.error("Error issuing OPC UA requests: " + ex.getMessage(), ex);
+        }
+    }
+
+    private void issue(int connected, boolean write) {
+        if (outstanding.get() >= maxOutstanding) {
+            dropped.increment();
+            return;
+        }
+        OpcUaClient client = null;
+        for (int attempt = 0; attempt < connected && client == null; attempt++) {
+            nextSession = (nextSession + 1) % connected;
+            client = sessions.get(nextSession);
+        }
+        if (client == null) {
+            dropped.increment();
+            return;
+        }
+        OpcUaClient session = client;
+        int node = nextNode;
+        NodeId nodeId = nodeIds[node];
+        nextNode = (nextNode + 1) % nodeIds.length;
+
+        outstanding.incrementAndGet();
+        long startMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        if (write) {
+            writes.increment();
+            Variant value = writeValues[node][nextWriteValue ? 0 : 1];
+            nextWriteValue = !nextWriteValue;
+            client.writeValue(nodeId, new DataValue(value)).whenComplete((statusCode, ex) -> {
+                outstanding.decrementAndGet();
+                if (ex != null) {
+                    OPCUAMetrics.record(OPCUAMetrics.WRITE, session, ex, start);
+                    failures.increment();
+                    record(writeLabel, startMillis, start, false,
+                            verbosity.describes(false) ? "NodeId=" + nodeId + ", Error=" + ex.getMessage() : null);
+                } else {
+                    OPCUAMetrics.record(OPCUAMetrics.WRITE, session, statusCode, start);
+                    boolean good = statusCode.isGood();
+                    if (!good) {
+                        failures.increment();
+                    }
+                    record(writeLabel, startMillis, start, good,
+                            verbosity.describes(good) ? "NodeId=" + nodeId + ", Value=" + value.getValue() + ", Status=" + statusCode : null);
+                }
+            });
+        } else {
+            reads.increment();
+            client.readValue(0.0, TimestampsToReturn.Neither, nodeId).whenComplete((dataValue, ex) -> {
+                outstanding.decrementAndGet();
+                if (ex != null) {
+                    OPCUAMetrics.record(OPCUAMetrics.READ, session, ex, start);
+                    failures.increment();
+                    record(readLabel, startMillis, start, false,
+                            verbosity.describes(false) ? "NodeId=" + nodeId + ", Error=" + ex.getMessage() : null);
+                } else {
+                    OPCUAMetrics.record(OPCUAMetrics.READ, session,
+                            dataValue.getStatusCode() == null ? StatusCode.GOOD : dataValue.getStatusCode(), start);
+                    boolean good = dataValue.getStatusCode() == null || dataValue.getStatusCode().isGood();
+                    if (!good) {
+                        failures.increment();
+                    }
+                    record(readLabel, startMillis, start, good, verbosity.describes(good)
+                            ? "NodeId=" + nodeId + ", Value=" + dataValue.getValue().getValue() + ", Status=" + dataValue.getStatusCode()
+                            : null);
+                }
+            });
+        }
+    }
+
+    private void resolveWriteValues(OpcUaClient client) {
+        // Reading the DataTypes blocks, so it runs neither on the scheduler nor on a Milo thread
+        CompletableFuture.runAsync(() -> {
+            long startMillis = System.currentTimeMillis();
+            long start = System.nanoTime();
+            try {
+                List<OPCUAValueCodec.ValueType> types = OPCUAValueCodec.resolve(client, Arrays.asList(nodeIds), timeout);
+                Variant[][] values = new Variant[nodeIds.length][];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = toggledValues(types.get(i));
+                }
+                writeValues = values;
+            } catch (Exception ex) {
+                log.error("Cannot read the DataTypes of the nodes to write: " + ex.getMessage(), ex);
+                failures.increment();
+                record(writeLabel, startMillis, start, false, "Cannot read the DataTypes of the nodes to write: " + ex.getMessage());
+            }
+        });
+    }
+
+    private static Variant[] toggledValues(OPCUAValueCodec.ValueType type) {
+        switch (type) {
+            case BOOLEAN:
+                return new Variant[]{type.encode("true"), type.encode("false")};
+            case DATE_TIME:
+                return new Variant[]{type.encode("2000-01-01T00:00:00Z"), type.encode("2000-01-01T00:00:01Z")};
+            default:
+                // Numbers, strings and localized text
+                return new Variant[]{type.encode("1"), type.encode("0")};
+        }
+    }
+
+    private void recordChannel(OPCUAConnectPhases phases) {
+        OPCUAConnectPhases.Phase phase = OPCUAConnectPhases.Phase.SECURE_CHANNEL;
+        boolean successful = phases.isSucceeded(phase);
+        recordElapsed(channelLabel, phases.getStartTime(phase), phases.getElapsed(phase), successful,
+                verbosity.describes(successful) ? phases.describe(phase) : null);
+    }
+
+    private void record(String sampleLabel, long startMillis, long start, boolean successful, String message) {
+        recordElapsed(sampleLabel, startMillis, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), successful,
+                message);
+    }
+
+    private void recordElapsed(String sampleLabel, long startMillis, long elapsedMillis, boolean successful,
+                               String message) {
+        SampleResult result = new SampleResult();
+        result.setSampleLabel(sampleLabel);
+        result.setStampAndTime(startMillis, elapsedMillis);
+        result.setSuccessful(successful);
+        if (message != null) {
+            result.setResponseMessage(message);
+        }
+        if (!completions.offer(result)) {
+            unreported.increment();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives many OPC UA sessions from one JMeter thread. The first sample starts an {@link OPCUALoadEngine}; every
+ * sample after that reports one connect, read or write completion, and the last one reports a summary and stops
+ * the thread.
+ */
+public class OPCUALoadEngineSampler extends AbstractSampler implements ThreadListener {
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LogManager.getLogger(OPCUALoadEngineSampler.class);
+
+    // How long one sample waits for a completion before returning nothing
+    private static final long POLL_MILLIS = 1000;
+
+    public static final String IP_ADDRESS = "OPCUALoadEngineSampler.ipAddress";
+    public static final String PORT = "OPCUALoadEngineSampler.port";
+    public static final String PROTOCOL = "OPCUALoadEngineSampler.protocol";
+    public static final String SESSIONS = "OPCUALoadEngineSampler.sessions";
+    public static final String NODES = "OPCUALoadEngineSampler.nodes";
+    public static final String NODE_FILE = "OPCUALoadEngineSampler.nodeFile";
+    public static final String READ_RATE = "OPCUALoadEngineSampler.readRate";
+    public static final String WRITE_RATE = "OPCUALoadEngineSampler.writeRate";
+    public static final String DURATION = "OPCUALoadEngineSampler.duration";
+    public static final String TIMEOUT = "OPCUALoadEngineSampler.timeout";
+    public static final String MAX_OUTSTANDING = "OPCUALoadEngineSampler.maxOutstanding";
+    // Prefix of the security settings, see OPCUASecurity
+    public static final String SECURITY_PREFIX = "OPCUALoadEngineSampler.";
+
+    private transient OPCUALoadEngine engine;
+    private transient OPCUACompiledProperty<List<NodeId>> compiledNodeIds;
+
+    public void setIpAddress(String ipAddress) {
+        setProperty(IP_ADDRESS, ipAddress);
+    }
+
+    public String getIpAddress() {
+        return getPropertyAsString(IP_ADDRESS);
+    }
+
+    public void setPort(String port) {
+        setProperty(PORT, port);
+    }
+
+    public String getPort() {
+        return getPropertyAsString(PORT);
+    }
+
+    public void setProtocol(String protocol) {
+        setProperty(PROTOCOL, protocol);
+    }
+
+    public String getProtocol() {
+        return getPropertyAsString(PROTOCOL);
+    }
+
+    public void setSessions(String sessions) {
+        setProperty(SESSIONS, sessions);
+    }
+
+    public String getSessions() {
+        return getPropertyAsString(SESSIONS);
+    }
+
+    public List<List<String>> getNodes() {
+        return OPCUANodeTable.getRows(this, NODES);
+    }
+
+    public void setNodes(List<List<String>> nodes) {
+        setProperty(OPCUANodeTable.toProperty(NODES, nodes));
+    }
+
+    public void setNodeFile(String nodeFile) {
+        setProperty(NODE_FILE, nodeFile);
+    }
+
+    public String getNodeFile() {
+        return getPropertyAsString(NODE_FILE);
+    }
+
+    public void setReadRate(String readRate) {
+        setProperty(READ_RATE, readRate);
+    }
+
+    public String getReadRate() {
+        return getPropertyAsString(READ_RATE);
+    }
+
+    public void setWriteRate(String writeRate) {
+        setProperty(WRITE_RATE, writeRate);
+    }
+
+    public String getWriteRate() {
+        return getPropertyAsString(WRITE_RATE);
+    }
+
+    public void setDuration(String duration) {
+        setProperty(DURATION, duration);
+    }
+
+    public String getDuration() {
+        return getPropertyAsString(DURATION);
+    }
+
+    public void setTimeout(String timeout) {
+        setProperty(TIMEOUT, timeout);
+    }
+
+    public String getTimeout() {
+        return getPropertyAsString(TIMEOUT);
+    }
+
+    public void setMaxOutstanding(String maxOutstanding) {
+        setProperty(MAX_OUTSTANDING, maxOutstanding);
+    }
+
+    public String getMaxOutstanding() {
+        return getPropertyAsString(MAX_OUTSTANDING);
+    }
+
+    @Override
+    public SampleResult sample(Entry e) {
+        if (engine == null) {
+            SampleResult failure = startEngine();
+            if (failure != null) {
+                return failure;
+            }
+        }
+
+        try {
+            SampleResult completion = engine.poll(POLL_MILLIS);
+            if (completion != null) {
+                return completion;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (engine.isDone()) {
+            SampleResult summary = engine.summary();
+            log.info(summary.getResponseMessage());
+            summary.setStopThread(true);
+            return summary;
+        }
+        // Nothing completed within the poll interval; JMeter records no sample for a null result
+        return null;
+    }
+
+    private SampleResult startEngine() {
+        SampleResult result = new SampleResult();
+        result.setSampleLabel(getName() + " - Start");
+        result.sampleStart(); // Start timing
+
+        String ipAddress = getIpAddress();
+        String endpointUrl = String.format("%s://%s:%s", getProtocol(), ipAddress, getPort());
+        long timeout = parseLong(getTimeout(), 5000);
+
+        try {
+            if (compiledNodeIds == null) {
+                compile();
+            }
+            List<NodeId> nodeIds = compiledNodeIds.get();
+            if (nodeIds.isEmpty()) {
+                throw new IllegalStateException("No nodes configured.");
+            }
+
+            // Discovery runs once; all sessions connect to the same endpoint and share the client certificate
+            OPCUASecurity security = OPCUASecurity.fromElement(this, SECURITY_PREFIX);
+            EndpointDescription endpoint = OPCUAClientFactory.discoverEndpoint(endpointUrl, ipAddress, timeout, 0, security);
+
+            engine = new OPCUALoadEngine(getName(), endpoint, security, timeout,
+                    Math.max(1, (int) parseLong(getSessions(), 100)),
+                    nodeIds.toArray(new NodeId[0]),
+                    parseDouble(getReadRate(), 100),
+                    parseDouble(getWriteRate(), 0),
+                    parseLong(getDuration(), 60000),
+                    Math.max(1, (int) parseLong(getMaxOutstanding(), 10000)));
+            engine.start();
+            return null;
+        } catch (Exception ex) {
+            log.error("Error starting OPC UA load engine: " + ex.getMessage(), ex);
+            result.sampleEnd(); // End timing
+            result.setResponseMessage("Failed to start OPC UA load engine: " + ex.getMessage());
+            result.setSuccessful(false);
+            result.setStopThread(true);
+            return result;
+        }
+    }
+
+    @Override
+    public void threadStarted() {
+        // The engine starts with the first sample
+        compile();
+    }
+
+    @Override
+    public void threadFinished() {
+        if (engine != null) {
+            engine.close();
+            engine = null;
+            OPCUAMetrics.flush();
+        }
+    }
+
+    private void compile() {
+        compiledNodeIds = OPCUACompiledProperty.of(this, this::collectNodeIds, NODES, NODE_FILE);
+    }
+
+    private List<NodeId> collectNodeIds() throws IOException {
+        List<List<String>> rows = getNodes();
+        List<NodeId> nodeIds = new ArrayList<>(rows.size());
+        for (List<String> row : rows) {
+            try {
+                nodeIds.add(new NodeId(Integer.parseInt(row.get(0)), Integer.parseInt(row.get(1))));
+            } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+                log.warn("Invalid NodeId format: " + row);
+            }
+        }
+
+        String nodeFile = getNodeFile();
+        if (nodeFile != null && !nodeFile.isEmpty()) {
+            // The file is loaded once per JVM and its NodeIds are shared by all threads
+            return OPCUANodeList.concat(nodeIds, OPCUANodeList.get(nodeFile).getNodeIds());
+        }
+        return nodeIds;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException | NullPointerException ex) {
+            return defaultValue;
+        }
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException | NullPointerException ex) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.samplers.gui.AbstractSamplerGui;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.net.URI;
+
+public class OPCUALoadEngineSamplerGui extends AbstractSamplerGui {
+    private static final Logger log = LogManager.getLogger(OPCUALoadEngineSamplerGui.class);
+
+    private JTextField ipAddressField;
+    private OPCUASecurityPanel securityPanel;
+    private JTextField portField;
+    private JComboBox<String> protocolDropdown;
+    private JTextField sessionsField;
+    private OPCUANodeTablePanel nodeTablePanel;
+    private JTextField nodeFileField;
+    private JTextField readRateField;
+    private JTextField writeRateField;
+    private JTextField durationField;
+    private JTextField timeoutField;
+    private JTextField maxOutstandingField;
+
+    public OPCUALoadEngineSamplerGui() {
+        init();
+    }
+
+    private void init() {
+        setLayout(new BorderLayout(0, 5));
+        setBorder(makeBorder());
+
+        JPanel mainPanel = new VerticalPanel();
+        mainPanel.add(makeTitlePanel());
+
+        ipAddressField = new JTextField(20);
+        securityPanel = new OPCUASecurityPanel();
+        portField = new JTextField(5);
+        protocolDropdown = new JComboBox<>(new String[]{"opc.tcp", "opc.https", "opc.wss"});
+        sessionsField = new JTextField(10);
+        nodeTablePanel = new OPCUANodeTablePanel("Nodes", "Namespace Index (ns=)", "Identifier (i=)");
+        nodeFileField = new JTextField(30);
+        readRateField = new JTextField(10);
+        writeRateField = new JTextField(10);
+        durationField = new JTextField(10);
+        timeoutField = new JTextField(10);
+        maxOutstandingField = new JTextField(10);
+
+        JPanel fieldsPanel = new JPanel(new GridLayout(10, 2));
+        fieldsPanel.setBorder(BorderFactory.createTitledBorder("Settings"));
+        fieldsPanel.add(new JLabel("IP Address:"));
+        fieldsPanel.add(ipAddressField);
+        fieldsPanel.add(new JLabel("Port:"));
+        fieldsPanel.add(portField);
+        fieldsPanel.add(new JLabel("Protocol:"));
+        fieldsPanel.add(protocolDropdown);
+        fieldsPanel.add(new JLabel("Sessions:"));
+        fieldsPanel.add(sessionsField);
+        fieldsPanel.add(new JLabel("Node List File (CSV ns,i per line, or catalogue):"));
+        fieldsPanel.add(nodeFileField);
+        fieldsPanel.add(new JLabel("Read Rate (requests/s, all sessions):"));
+        fieldsPanel.add(readRateField);
+        fieldsPanel.add(new JLabel("Write Rate (requests/s, all sessions):"));
+        fieldsPanel.add(writeRateField);
+        fieldsPanel.add(new JLabel("Duration (ms, 0 = until test end):"));
+        fieldsPanel.add(durationField);
+        fieldsPanel.add(new JLabel("Timeout (ms):"));
+        fieldsPanel.add(timeoutField);
+        fieldsPanel.add(new JLabel("Max Outstanding Requests:"));
+        fieldsPanel.add(maxOutstandingField);
+
+        mainPanel.add(fieldsPanel);
+        mainPanel.add(securityPanel);
+        mainPanel.add(nodeTablePanel);
+        add(mainPanel, BorderLayout.CENTER);
+
+        // Add developer information and hyperlink
+        JLabel developerLabel = new JLabel("<html><i>Developed by Mohammed Hlayel;</i></html>");
+        JLabel githubLink = new JLabel("<html><a href='https://github.com/Sahermatter2024'>Help and Update</a></html>");
+        githubLink.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        githubLink.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                try {
+                    Desktop.getDesktop().browse(new URI("https://github.com/Sahermatter2024"));
+                } catch (Exception ex) {
+                    log.error("Error opening link", ex);
+                }
+            }
+        });
+
+        JPanel footerPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        footerPanel.add(developerLabel);
+        footerPanel.add(githubLink);
+
+        add(footerPanel, BorderLayout.SOUTH);
+    }
+
+    @Override
+    public String getLabelResource() {
+        return "opcuaLoadEngineSampler_title";
+    }
+
+    @Override
+    public String getStaticLabel() {
+        return "OPC UA Load Engine";
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        OPCUALoadEngineSampler sampler = new OPCUALoadEngineSampler();
+        modifyTestElement(sampler);
+        return sampler;
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        super.configureTestElement(element);
+        if (element instanceof OPCUALoadEngineSampler) {
+            ((OPCUALoadEngineSampler) element).setNodes(nodeTablePanel.getRows());
+        }
+        element.setProperty(OPCUALoadEngineSampler.IP_ADDRESS, ipAddressField.getText());
+        element.setProperty(OPCUALoadEngineSampler.PORT, portField.getText());
+        element.setProperty(OPCUALoadEngineSampler.PROTOCOL, protocolDropdown.getSelectedItem().toString());
+        element.setProperty(OPCUALoadEngineSampler.SESSIONS, sessionsField.getText().isEmpty() ? "100" : sessionsField.getText());
+        element.setProperty(OPCUALoadEngineSampler.NODE_FILE, nodeFileField.getText());
+        element.setProperty(OPCUALoadEngineSampler.READ_RATE, readRateField.getText().isEmpty() ? "100" : readRateField.getText());
+        element.setProperty(OPCUALoadEngineSampler.WRITE_RATE, writeRateField.getText().isEmpty() ? "0" : writeRateField.getText());
+        element.setProperty(OPCUALoadEngineSampler.DURATION, durationField.getText().isEmpty() ? "60000" : durationField.getText());
+        element.setProperty(OPCUALoadEngineSampler.TIMEOUT, timeoutField.getText().isEmpty() ? "5000" : timeoutField.getText());
+        element.setProperty(OPCUALoadEngineSampler.MAX_OUTSTANDING, maxOutstandingField.getText().isEmpty() ? "10000" : maxOutstandingField.getText());
+        securityPanel.modifyTestElement(element, OPCUALoadEngineSampler.SECURITY_PREFIX);
+    }
+
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+        if (element instanceof OPCUALoadEngineSampler) {
+            OPCUALoadEngineSampler sampler = (OPCUALoadEngineSampler) element;
+            ipAddressField.setText(sampler.getIpAddress());
+            portField.setText(sampler.getPort());
+            protocolDropdown.setSelectedItem(sampler.getProtocol());
+            sessionsField.setText(sampler.getSessions());
+            nodeTablePanel.setRows(sampler.getNodes());
+            nodeFileField.setText(sampler.getNodeFile());
+            readRateField.setText(sampler.getReadRate());
+            writeRateField.setText(sampler.getWriteRate());
+            durationField.setText(sampler.getDuration());
+            timeoutField.setText(sampler.getTimeout());
+            maxOutstandingField.setText(sampler.getMaxOutstanding());
+            securityPanel.configure(sampler, OPCUALoadEngineSampler.SECURITY_PREFIX);
+        }
+    }
+
+    @Override
+    public void clearGui() {
+        super.clearGui();
+        ipAddressField.setText("");
+        portField.setText("");
+        protocolDropdown.setSelectedIndex(0);
+        sessionsField.setText("100");
+        nodeTablePanel.clear();
+        nodeFileField.setText("");
+        readRateField.setText("100");
+        writeRateField.setText("0");
+        durationField.setText("60000");
+        timeoutField.setText("5000");
+        maxOutstandingField.setText("10000");
+        securityPanel.clear();
+    }
+}
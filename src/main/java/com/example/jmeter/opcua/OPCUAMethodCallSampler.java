@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallMethodRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallMethodResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Calls many methods with as few Call service requests as the server's MaxNodesPerMethodCall allows. The input
+ * argument types of each method are looked up once per session, and the arguments are encoded once per thread
+ * and session while the settings stay the same. Each call gets a sub-result with its status and the latency of
+ * the request that carried it.
+ */
+public class OPCUAMethodCallSampler extends AbstractSampler implements ThreadListener {
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LogManager.getLogger(OPCUAMethodCallSampler.class);
+
+    public static final String METHODS = "OPCUAMethodCallSampler.methods";
+    public static final String METHOD_FILE = "OPCUAMethodCallSampler.methodFile";
+    public static final String MAX_METHODS_PER_REQUEST = "OPCUAMethodCallSampler.maxMethodsPerRequest";
+    public static final String MAX_IN_FLIGHT = "OPCUAMethodCallSampler.maxInFlight";
+    public static final String TIMEOUT = "OPCUAMethodCallSampler.timeout";
+
+    private transient OPCUACompiledProperty<List<Call>> compiledCalls;
+    private transient Encoded encoded;
+
+    public List<List<String>> getMethods() {
+        return OPCUANodeTable.getRows(this, METHODS);
+    }
+
+    public void setMethods(List<List<String>> methods) {
+        setProperty(OPCUANodeTable.toProperty(METHODS, methods));
+    }
+
+    public String getMethodFile() {
+        return getPropertyAsString(METHOD_FILE);
+    }
+
+    public String getMaxMethodsPerRequest() {
+        return getPropertyAsString(MAX_METHODS_PER_REQUEST);
+    }
+
+    public String getMaxInFlight() {
+        return getPropertyAsString(MAX_IN_FLIGHT);
+    }
+
+    public String getTimeout() {
+        return getPropertyAsString(TIMEOUT);
+    }
+
+    @Override
+    public SampleResult sample(Entry e) {
+        SampleResult result = new SampleResult();
+        result.setSampleLabel(getName());
+        OPCUAResultVerbosity verbosity = OPCUAResultVerbosity.get();
+        long timeout = parseLong(getTimeout(), 3000);
+
+        result.sampleStart(); // Start timing
+
+        try (OPCUASessions.Lease lease = OPCUASessions.acquire(getThreadContext().getVariables())) {
+            if (lease == null) {
+                log.error("OPC UA client connection is not available.");
+                result.setResponseMessage("OPC UA client connection is not available.");
+                result.setSuccessful(false);
+                return result;
+            }
+            // Time spent waiting for a pooled session is reported as connect time
+            result.connectEnd();
+            OpcUaClient opcUaClient = lease.getClient();
+
+            if (compiledCalls == null) {
+                compile();
+            }
+            List<Call> calls = compiledCalls.get();
+            if (calls.isEmpty()) {
+                throw new IllegalArgumentException("No methods configured.");
+            }
+            List<CallMethodRequest> requests = encode(opcUaClient, calls, timeout);
+
+            OPCUAServerLimits limits = OPCUAServerLimits.get(opcUaClient, timeout);
+            int chunkSize = OPCUAServerLimits.chunkSize(limits.getMaxNodesPerMethodCall(),
+                    (int) parseLong(getMaxMethodsPerRequest(), 0), requests.size());
+            CallMethodResult[] callResults = new CallMethodResult[requests.size()];
+            String[] failures = new String[requests.size()];
+            long[] startTimes = new long[(requests.size() + chunkSize - 1) / chunkSize];
+            long[] endTimes = new long[startTimes.length];
+            callChunked(opcUaClient, requests, chunkSize, timeout, callResults, failures, startTimes, endTimes);
+
+            int goodCalls = 0;
+            StringBuilder responseData = new StringBuilder();
+            for (int i = 0; i < requests.size(); i++) {
+                Call call = calls.get(i);
+                int chunk = i / chunkSize;
+                StatusCode status = callResults[i] == null ? null : callResults[i].getStatusCode();
+                boolean good = status != null && status.isGood();
+                if (good) {
+                    goodCalls++;
+                }
+                if (!verbosity.describes(good)) {
+                    continue;
+                }
+
+                String outcome = describe(callResults[i], failures[i]);
+                long elapsed = endTimes[chunk] >= startTimes[chunk] ? endTimes[chunk] - startTimes[chunk] : 0;
+                responseData.append(call).append(": ").append(outcome).append(" in ").append(elapsed).append(" ms\n");
+
+                SampleResult callResult = new SampleResult();
+                callResult.setSampleLabel(getName() + " - " + call.methodId.toParseableString());
+                callResult.setStampAndTime(startTimes[chunk], elapsed);
+                callResult.setResponseCode(status == null ? "" : statusName(status));
+                callResult.setResponseMessage(call + ": " + outcome);
+                callResult.setSuccessful(good);
+                result.storeSubResult(callResult, false);
+            }
+
+            boolean successful = goodCalls == requests.size();
+            String responseMessage = String.format("Called %d methods in %d Call requests (%d methods per request): "
+                            + "%d good, %d failed.",
+                    requests.size(), startTimes.length, chunkSize, goodCalls, requests.size() - goodCalls);
+            if (verbosity.logs()) {
+                log.info(responseMessage);
+            }
+            if (verbosity.describes(successful)) {
+                result.setResponseMessage(responseMessage);
+                result.setResponseData(responseMessage + "\n" + responseData, "UTF-8");
+            } else if (!successful) {
+                result.setResponseMessage((requests.size() - goodCalls) + " of " + requests.size() + " calls failed");
+            }
+            result.setSuccessful(successful);
+        } catch (Exception ex) {
+            log.error("Error calling methods: " + ex.getMessage(), ex);
+            result.setResponseMessage("Error calling methods: " + ex.getMessage());
+            if (verbosity.describes(false)) {
+                result.setResponseData("Exception: " + ex.getMessage(), "UTF-8");
+            }
+            result.setSuccessful(false);
+        } finally {
+            result.sampleEnd(); // End timing
+            OPCUAReconnectMonitor.sampleCompleted(getThreadContext().getVariables(), result);
+        }
+
+        return result;
+    }
+
+    private void callChunked(OpcUaClient opcUaClient, List<CallMethodRequest> requests, int chunkSize, long timeout,
+                             CallMethodResult[] callResults, String[] failures, long[] startTimes, long[] endTimes)
+            throws Exception {
+        // Keep at most maxInFlight Call requests outstanding on the session
+        Semaphore window = new Semaphore(Math.max(1, (int) parseLong(getMaxInFlight(), 1)));
+        List<CompletableFuture<Completion>> completions = new ArrayList<>();
+        for (int from = 0; from < requests.size(); from += chunkSize) {
+            int to = Math.min(requests.size(), from + chunkSize);
+            if (!window.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException("Timed out waiting for outstanding Call requests.");
+            }
+            startTimes[completions.size()] = System.currentTimeMillis();
+            CompletableFuture<CallResponse> response = OPCUAMetrics.track(OPCUAMetrics.CALL, opcUaClient, System.nanoTime(),
+                    opcUaClient.call(requests.subList(from, to)), called -> called.getResponseHeader().getServiceResult());
+            // The completion carries the response and its end time; the arrays are only written on this thread
+            completions.add(response.handle((callResponse, ex) -> {
+                long endTime = System.currentTimeMillis();
+                window.release();
+                return new Completion(callResponse, ex, endTime);
+            }));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        for (int chunk = 0; chunk < completions.size(); chunk++) {
+            int from = chunk * chunkSize;
+            int to = Math.min(requests.size(), from + chunkSize);
+            Throwable failure;
+            try {
+                Completion completion = completions.get(chunk).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                endTimes[chunk] = completion.endTime;
+                failure = completion.failure;
+                CallMethodResult[] results = completion.response == null ? null : completion.response.getResults();
+                if (results != null) {
+                    System.arraycopy(results, 0, callResults, from, Math.min(results.length, to - from));
+                }
+            } catch (Exception ex) {
+                endTimes[chunk] = System.currentTimeMillis();
+                failure = ex;
+            }
+            if (failure != null) {
+                log.error("Error calling methods", failure);
+                Throwable cause = (failure instanceof ExecutionException || failure instanceof CompletionException)
+                        && failure.getCause() != null ? failure.getCause() : failure;
+                Arrays.fill(failures, from, to, cause.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the encoded requests, encoding them again only when the session or the configured calls change.
+     */
+    private List<CallMethodRequest> encode(OpcUaClient opcUaClient, List<Call> calls, long timeout) throws Exception {
+        Encoded current = encoded;
+        if (current != null && current.client == opcUaClient && current.calls == calls) {
+            return current.requests;
+        }
+
+        List<NodeId> methodIds = new ArrayList<>(calls.size());
+        for (Call call : calls) {
+            methodIds.add(call.methodId);
+        }
+        List<List<OPCUAValueCodec.ValueType>> argumentTypes =
+                OPCUAValueCodec.resolveInputArguments(opcUaClient, methodIds, timeout);
+
+        List<CallMethodRequest> requests = new ArrayList<>(calls.size());
+        for (int i = 0; i < calls.size(); i++) {
+            Call call = calls.get(i);
+            List<OPCUAValueCodec.ValueType> types = argumentTypes.get(i);
+            if (call.arguments.size() != types.size()) {
+                throw new IllegalArgumentException(String.format("Method %s takes %d input arguments, but %d are given",
+                        call.methodId.toParseableString(), types.size(), call.arguments.size()));
+            }
+            Variant[] inputArguments = new Variant[types.size()];
+            for (int j = 0; j < inputArguments.length; j++) {
+                try {
+                    inputArguments[j] = types.get(j).encode(call.arguments.get(j));
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException(String.format("Cannot pass [%s] as argument %d of method %s of type %s",
+                            call.arguments.get(j), j + 1, call.methodId.toParseableString(), types.get(j)), ex);
+                }
+            }
+            requests.add(new CallMethodRequest(call.objectId, call.methodId, inputArguments));
+        }
+
+        encoded = new Encoded(opcUaClient, calls, Collections.unmodifiableList(requests));
+        return encoded.requests;
+    }
+
+    @Override
+    public void threadStarted() {
+        compile();
+    }
+
+    @Override
+    public void threadFinished() {
+        // Nothing to release; the encoded requests are dropped with the sampler clone
+    }
+
+    private void compile() {
+        // Parse the method list once per thread; settings using variables or functions stay per sample
+        compiledCalls = OPCUACompiledProperty.of(this, this::collectCalls, METHODS, METHOD_FILE);
+        encoded = null;
+    }
+
+    private List<Call> collectCalls() throws IOException {
+        List<List<String>> rows = new ArrayList<>(getMethods());
+        String methodFile = getMethodFile();
+        if (methodFile != null && !methodFile.isEmpty()) {
+            rows.addAll(OPCUANodeTable.loadCsv(methodFile, 3));
+        }
+
+        List<Call> calls = new ArrayList<>(rows.size());
+        for (List<String> row : rows) {
+            if (row.size() < 2 || row.get(0).trim().isEmpty() || row.get(1).trim().isEmpty()) {
+                continue;
+            }
+            try {
+                String arguments = row.size() > 2 ? row.get(2) : "";
+                calls.add(new Call(NodeId.parse(row.get(0).trim()), NodeId.parse(row.get(1).trim()),
+                        arguments.isEmpty() ? Collections.emptyList() : Arrays.asList(arguments.split(";", -1))));
+            } catch (RuntimeException ex) {
+                log.warn("Invalid method row: " + row);
+            }
+        }
+        return calls;
+    }
+
+    private static String describe(CallMethodResult callResult, String failure) {
+        if (callResult == null) {
+            return "failed: " + failure;
+        }
+        StringBuilder text = new StringBuilder(statusName(callResult.getStatusCode()));
+        StatusCode[] argumentResults = callResult.getInputArgumentResults();
+        if (argumentResults != null && callResult.getStatusCode().isBad()) {
+            for (int i = 0; i < argumentResults.length; i++) {
+                if (argumentResults[i] != null && argumentResults[i].isBad()) {
+                    text.append(", argument ").append(i + 1).append(' ').append(statusName(argumentResults[i]));
+                }
+            }
+        }
+        Variant[] outputArguments = callResult.getOutputArguments();
+        if (outputArguments != null && outputArguments.length > 0) {
+            text.append(" ->");
+            for (Variant output : outputArguments) {
+                text.append(' ').append(output.getValue());
+            }
+        }
+        return text.toString();
+    }
+
+    private static String statusName(StatusCode status) {
+        return StatusCodes.lookup(status.getValue()).map(names -> names[0])
+                .orElse(String.format("0x%08X", status.getValue()));
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException | NullPointerException ex) {
+            return defaultValue;
+        }
+    }
+
+    private static final class Call {
+        private final NodeId objectId;
+        private final NodeId methodId;
+        private final List<String> arguments;
+
+        private Call(NodeId objectId, NodeId methodId, List<String> arguments) {
+            this.objectId = objectId;
+            this.methodId = methodId;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public String toString() {
+            return methodId.toParseableString() + " on " + objectId.toParseableString() + " " + arguments;
+        }
+    }
+
+    private static final class Completion {
+        private final CallResponse response;
+        private final Throwable failure;
+        private final long endTime;
+
+        private Completion(CallResponse response, Throwable failure, long endTime) {
+            this.response = response;
+            this.failure = failure;
+            this.endTime = endTime;
+        }
+    }
+
+    private static final class Encoded {
+        private final OpcUaClient client;
+        private final List<Call> calls;
+        private final List<CallMethodRequest> requests;
+
+        private Encoded(OpcUaClient client, List<Call> calls, List<CallMethodRequest> requests) {
+            this.client = client;
+            this.calls = calls;
+            this.requests = requests;
+        }
+    }
+}
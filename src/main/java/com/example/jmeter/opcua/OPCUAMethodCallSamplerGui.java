@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.samplers.gui.AbstractSamplerGui;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.net.URI;
+
+public class OPCUAMethodCallSamplerGui extends AbstractSamplerGui {
+    private static final Logger log = LogManager.getLogger(OPCUAMethodCallSamplerGui.class);
+
+    private OPCUANodeTablePanel methodTablePanel;
+    private JTextField methodFileField;
+    private JTextField maxMethodsPerRequestField;
+    private JTextField maxInFlightField;
+    private JTextField timeoutField;
+
+    public OPCUAMethodCallSamplerGui() {
+        init();
+    }
+
+    private void init() {
+        setLayout(new BorderLayout(0, 5));
+        setBorder(makeBorder());
+
+        JPanel mainPanel = new VerticalPanel();
+        mainPanel.add(makeTitlePanel());
+
+        methodTablePanel = new OPCUANodeTablePanel("Methods to Call",
+                "Object (e.g. ns=2;s=Line1)", "Method (e.g. ns=2;i=5001)", "Input Arguments (; separated)");
+        methodFileField = new JTextField(30);
+        maxMethodsPerRequestField = new JTextField(10);
+        maxInFlightField = new JTextField(10);
+        timeoutField = new JTextField(10);
+
+        JPanel fieldsPanel = new JPanel(new GridLayout(4, 2));
+        fieldsPanel.setBorder(BorderFactory.createTitledBorder("Settings"));
+        fieldsPanel.add(new JLabel("Method List File (CSV object,method,arguments per line):"));
+        fieldsPanel.add(methodFileField);
+        fieldsPanel.add(new JLabel("Max Methods per Request (0 = server limit):"));
+        fieldsPanel.add(maxMethodsPerRequestField);
+        fieldsPanel.add(new JLabel("Max Requests in Flight:"));
+        fieldsPanel.add(maxInFlightField);
+        fieldsPanel.add(new JLabel("Timeout (ms):"));
+        fieldsPanel.add(timeoutField);
+
+        mainPanel.add(methodTablePanel);
+        mainPanel.add(fieldsPanel);
+        add(mainPanel, BorderLayout.CENTER);
+
+        // Add developer information and hyperlink
+        JLabel developerLabel = new JLabel("<html><i>Developed by Mohammed Hlayel;</i></html>");
+        JLabel githubLink = new JLabel("<html><a href='https://github.com/Sahermatter2024'>Help and Update</a></html>");
+        githubLink.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        githubLink.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                try {
+                    Desktop.getDesktop().browse(new URI("https://github.com/Sahermatter2024"));
+                } catch (Exception ex) {
+                    log.error("Error opening link", ex);
+                }
+            }
+        });
+
+        JPanel footerPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        footerPanel.add(developerLabel);
+        footerPanel.add(githubLink);
+
+        add(footerPanel, BorderLayout.SOUTH);
+    }
+
+    @Override
+    public String getLabelResource() {
+        return "opcuaMethodCallSampler_title";
+    }
+
+    @Override
+    public String getStaticLabel() {
+        return "OPC UA Method Call Sampler";
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        OPCUAMethodCallSampler sampler = new OPCUAMethodCallSampler();
+        modifyTestElement(sampler);
+        return sampler;
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        super.configureTestElement(element);
+        if (element instanceof OPCUAMethodCallSampler) {
+            ((OPCUAMethodCallSampler) element).setMethods(methodTablePanel.getRows());
+        }
+        element.setProperty(OPCUAMethodCallSampler.METHOD_FILE, methodFileField.getText());
+        element.setProperty(OPCUAMethodCallSampler.MAX_METHODS_PER_REQUEST, maxMethodsPerRequestField.getText().isEmpty() ? "0" : maxMethodsPerRequestField.getText());
+        element.setProperty(OPCUAMethodCallSampler.MAX_IN_FLIGHT, maxInFlightField.getText().isEmpty() ? "1" : maxInFlightField.getText());
+        element.setProperty(OPCUAMethodCallSampler.TIMEOUT, timeoutField.getText().isEmpty() ? "3000" : timeoutField.getText());
+    }
+
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+        if (element instanceof OPCUAMethodCallSampler) {
+            OPCUAMethodCallSampler sampler = (OPCUAMethodCallSampler) element;
+            methodTablePanel.setRows(sampler.getMethods());
+            methodFileField.setText(sampler.getMethodFile());
+            maxMethodsPerRequestField.setText(sampler.getMaxMethodsPerRequest());
+            maxInFlightField.setText(sampler.getMaxInFlight());
+            timeoutField.setText(sampler.getTimeout());
+        }
+    }
+
+    @Override
+    public void clearGui() {
+        super.clearGui();
+        methodTablePanel.clear();
+        methodFileField.setText("");
+        maxMethodsPerRequestField.setText("0");
+        maxInFlightField.setText("1");
+        timeoutField.setText("3000");
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * JVM-wide latency histograms of OPC UA service calls, keyed by service, endpoint URL and status code, and
+ * written to a local file at a fixed interval. Samplers record the latency of every call next to their
+ * {@code SampleResult}; the histograms keep the full distribution, so the high percentiles that JMeter's
+ * aggregate listeners cannot report at high sample rates stay exact to three significant digits.
+ *
+ * <p>Recording is off unless the file property is set. The settings are read on first use and again when a test
+ * starts, which also clears the histograms, so every test reports only its own calls.
+ */
+public final class OPCUAMetrics {
+    private static final Logger log = LogManager.getLogger(OPCUAMetrics.class);
+
+    // File the metrics are written to; empty = no metrics
+    public static final String FILE = "opcua.metrics.file";
+    // prometheus (text exposition format, rewritten each interval) or csv (one row per series and interval)
+    public static final String FORMAT = "opcua.metrics.format";
+    // Milliseconds between writes
+    public static final String INTERVAL = "opcua.metrics.interval";
+
+    public static final String FORMAT_PROMETHEUS = "prometheus";
+    public static final String FORMAT_CSV = "csv";
+
+    public static final String READ = "Read";
+    public static final String WRITE = "Write";
+    public static final String CALL = "Call";
+    public static final String HISTORY_READ = "HistoryRead";
+    public static final String BROWSE = "Browse";
+    public static final String BROWSE_NEXT = "BrowseNext";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 0.9999};
+    private static final String CSV_HEADER =
+            "timestamp,service,endpoint,status,count,mean_us,p50_us,p90_us,p99_us,p99_9_us,p99_99_us,max_us";
+
+    // One writer thread for the JVM; each instance schedules its own writes on it
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "opcua-metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Replaced as a whole by reset(), so the check on every call is a volatile read and needs no lock
+    private static volatile OPCUAMetrics instance = create();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(OPCUAMetrics::flush, "opcua-metrics-shutdown"));
+    }
+
+    // service -> endpoint URL -> status code -> histograms
+    private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<Long, Series>>> series =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, String> statusNames = new ConcurrentHashMap<>();
+    private final Path file;
+    private final boolean csv;
+    private boolean csvHeaderWritten;
+    private ScheduledFuture<?> writes;
+
+    private OPCUAMetrics(Path file, boolean csv) {
+        this.file = file;
+        this.csv = csv;
+    }
+
+    public static boolean isEnabled() {
+        return instance != null;
+    }
+
+    /**
+     * Writes what the current histograms hold, then reads the settings again and starts with empty histograms,
+     * for a new test.
+     */
+    public static synchronized void reset() {
+        OPCUAMetrics previous = instance;
+        if (previous != null) {
+            previous.writes.cancel(false);
+            previous.export();
+        }
+        instance = create();
+    }
+
+    /**
+     * Records a completed service call.
+     *
+     * @param startNanos {@link System#nanoTime()} when the request was sent
+     */
+    public static void record(String service, OpcUaClient client, StatusCode status, long startNanos) {
+        OPCUAMetrics metrics = instance;
+        if (metrics != null) {
+            metrics.recordValue(service, client, status.getValue(), System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Records a service call that failed without a response, under the status code of the failure.
+     */
+    public static void record(String service, OpcUaClient client, Throwable failure, long startNanos) {
+        OPCUAMetrics metrics = instance;
+        if (metrics != null) {
+            long status = UaException.extractStatusCode(failure).map(StatusCode::getValue)
+                    .orElse(StatusCodes.Bad_UnexpectedError);
+            metrics.recordValue(service, client, status, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Records the call behind a request when it completes and returns the same request. A request that completes
+     * normally counts as Good; pass {@code System.nanoTime()} ahead of the request argument, so that it is taken
+     * before the request is sent.
+     */
+    public static <T> CompletableFuture<T> track(String service, OpcUaClient client, long startNanos,
+                                                 CompletableFuture<T> request) {
+        return track(service, client, startNanos, request, response -> StatusCode.GOOD);
+    }
+
+    /**
+     * Like {@link #track(String, OpcUaClient, long, CompletableFuture)}, taking the status code from the response:
+     * the value status of a single read or write, or the service result of a request with several operations.
+     */
+    public static <T> CompletableFuture<T> track(String service, OpcUaClient client, long startNanos,
+                                                 CompletableFuture<T> request, Function<T, StatusCode> status) {
+        if (instance != null) {
+            request.whenComplete((response, ex) -> {
+                if (ex != null) {
+                    record(service, client, ex, startNanos);
+                } else {
+                    StatusCode statusCode = status.apply(response);
+                    record(service, client, statusCode == null ? StatusCode.GOOD : statusCode, startNanos);
+                }
+            });
+        }
+        return request;
+    }
+
+    /**
+     * Writes the values recorded since the last write, for example at the end of a test.
+     */
+    public static void flush() {
+        OPCUAMetrics metrics = instance;
+        if (metrics != null) {
+            metrics.export();
+        }
+    }
+
+    private void recordValue(String service, OpcUaClient client, long status, long latencyNanos) {
+        String endpoint = client.getConfig().getEndpoint().getEndpointUrl();
+        Series target = lookup(lookup(lookup(series, service, k -> new ConcurrentHashMap<>()),
+                endpoint, k -> new ConcurrentHashMap<>()), status, k -> new Series());
+        // Recorder is wait-free; the writer swaps its buffers without blocking the samplers
+        target.recorder.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+    }
+
+    private synchronized void export() {
+        long now = System.currentTimeMillis();
+        try {
+            if (csv) {
+                writeCsv(now);
+            } else {
+                writePrometheus();
+            }
+        } catch (IOException | RuntimeException ex) {
+            // Logged and retried at the next interval; a failure must not stop the writer thread
+            log.warn("Cannot write OPC UA metrics to {}: {}", file, ex.getMessage());
+        }
+    }
+
+    private void writeCsv(long now) throws IOException {
+        StringBuilder rows = new StringBuilder();
+        if (!csvHeaderWritten && (!Files.exists(file) || Files.size(file) == 0)) {
+            rows.append(CSV_HEADER).append('\n');
+        }
+        for (Map.Entry<String, ConcurrentMap<String, ConcurrentMap<Long, Series>>> byService : sorted(series)) {
+            for (Map.Entry<String, ConcurrentMap<Long, Series>> byEndpoint : sorted(byService.getValue())) {
+                for (Map.Entry<Long, Series> byStatus : sorted(byEndpoint.getValue())) {
+                    Histogram interval = byStatus.getValue().nextInterval();
+                    if (interval.getTotalCount() == 0) {
+                        continue;
+                    }
+                    rows.append(now).append(',').append(byService.getKey()).append(',')
+                            .append(csvField(byEndpoint.getKey())).append(',').append(statusName(byStatus.getKey()))
+                            .append(',').append(interval.getTotalCount())
+                            .append(',').append(String.format(Locale.ROOT, "%.1f", interval.getMean()));
+                    for (double quantile : QUANTILES) {
+                        rows.append(',').append(interval.getValueAtPercentile(quantile * 100.0));
+                    }
+                    rows.append(',').append(interval.getMaxValue()).append('\n');
+                }
+            }
+        }
+        csvHeaderWritten = true;
+        if (rows.length() > 0) {
+            Files.write(file, rows.toString().getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private void writePrometheus() throws IOException {
+        // Written next to the target and moved over it, so a scraper never reads half a file
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write("# HELP opcua_request_latency_seconds Latency of OPC UA service calls since the test started\n");
+            out.write("# TYPE opcua_request_latency_seconds summary\n");
+            StringBuilder max = new StringBuilder();
+            for (Map.Entry<String, ConcurrentMap<String, ConcurrentMap<Long, Series>>> byService : sorted(series)) {
+                for (Map.Entry<String, ConcurrentMap<Long, Series>> byEndpoint : sorted(byService.getValue())) {
+                    for (Map.Entry<Long, Series> byStatus : sorted(byEndpoint.getValue())) {
+                        Series target = byStatus.getValue();
+                        target.total.add(target.nextInterval());
+                        Histogram total = target.total;
+                        String labels = "service=\"" + byService.getKey() + "\",endpoint=\""
+                                + prometheusLabel(byEndpoint.getKey()) + "\",status=\"" + statusName(byStatus.getKey()) + "\"";
+                        for (double quantile : QUANTILES) {
+                            out.write("opcua_request_latency_seconds{" + labels + ",quantile=\"" + quantile + "\"} "
+                                    + seconds(total.getValueAtPercentile(quantile * 100.0)) + "\n");
+                        }
+                        out.write("opcua_request_latency_seconds_sum{" + labels + "} "
+                                + seconds(total.getMean() * total.getTotalCount()) + "\n");
+                        out.write("opcua_request_latency_seconds_count{" + labels + "} " + total.getTotalCount() + "\n");
+                        max.append("opcua_request_latency_max_seconds{").append(labels).append("} ")
+                                .append(seconds(total.getMaxValue())).append('\n');
+                    }
+                }
+            }
+            out.write("# HELP opcua_request_latency_max_seconds Highest latency of OPC UA service calls since the test started\n");
+            out.write("# TYPE opcua_request_latency_max_seconds gauge\n");
+            out.write(max.toString());
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private String statusName(long status) {
+        return statusNames.computeIfAbsent(status, k -> StatusCodes.lookup(k).map(names -> names[0])
+                .orElse(String.format("0x%08X", k)));
+    }
+
+    private static <K, V> V lookup(ConcurrentMap<K, V> map, K key, Function<K, V> factory) {
+        // A plain get first; computeIfAbsent can lock the bin even when the key is present
+        V value = map.get(key);
+        return value != null ? value : map.computeIfAbsent(key, factory);
+    }
+
+    private static <K extends Comparable<K>, V> Iterable<Map.Entry<K, V>> sorted(Map<K, V> map) {
+        return new TreeMap<>(map).entrySet();
+    }
+
+    private static String seconds(double micros) {
+        return String.format(Locale.ROOT, "%.6f", micros / 1_000_000.0);
+    }
+
+    private static String csvField(String value) {
+        return value.indexOf(',') < 0 && value.indexOf('"') < 0 ? value : "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String prometheusLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static OPCUAMetrics create() {
+        String fileName = JMeterUtils.getPropDefault(FILE, "").trim();
+        if (fileName.isEmpty()) {
+            return null;
+        }
+        String format = JMeterUtils.getPropDefault(FORMAT, FORMAT_PROMETHEUS).trim().toLowerCase(Locale.ROOT);
+        if (!FORMAT_PROMETHEUS.equals(format) && !FORMAT_CSV.equals(format)) {
+            log.warn("Unknown OPC UA metrics format {}; writing {}", format, FORMAT_PROMETHEUS);
+            format = FORMAT_PROMETHEUS;
+        }
+        long interval = Math.max(100, JMeterUtils.getPropDefault(INTERVAL, 10_000L));
+
+        OPCUAMetrics metrics = new OPCUAMetrics(Paths.get(fileName).toAbsolutePath(), FORMAT_CSV.equals(format));
+        metrics.writes = WRITER.scheduleAtFixedRate(metrics::export, interval, interval, TimeUnit.MILLISECONDS);
+
+        log.info("OPC UA metrics: writing {} to {} every {} ms", format, metrics.file, interval);
+        return metrics;
+    }
+
+    /**
+     * Histograms of one service, endpoint and status code, in microseconds.
+     */
+    private static final class Series {
+        // Auto-resizing, three significant digits
+        private final Recorder recorder = new Recorder(3);
+        // Used by the writer only, under the lock of export
+        private final Histogram total = new Histogram(3);
+        private Histogram interval;
+
+        private Histogram nextInterval() {
+            interval = recorder.getIntervalHistogram(interval);
+            return interval;
+        }
+    }
+}
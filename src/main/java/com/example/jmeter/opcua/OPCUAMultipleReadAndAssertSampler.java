@@ -27,6 +27,7 @@ package com.example.jmeter.opcua;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.ThreadListener;
 import org.apache.jmeter.assertions.AssertionResult;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -35,20 +36,37 @@ import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
 import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-public class OPCUAMultipleReadAndAssertSampler extends AbstractSampler {
+public class OPCUAMultipleReadAndAssertSampler extends AbstractSampler implements ThreadListener {
     private static final Logger log = LogManager.getLogger(OPCUAMultipleReadAndAssertSampler.class);
 
-    private static final int MAX_FIELDS = 10;
+    // Number of indexed node properties written by test plans saved before the node table existed
+    private static final int LEGACY_FIELDS = 10;
 
     public static final String NODE_ID_NAMESPACE_INDEX = "OPCUAMultipleReadAndAssertSampler.nodeIdNamespaceIndex";
     public static final String NODE_ID_IDENTIFIER = "OPCUAMultipleReadAndAssertSampler.nodeIdIdentifier";
     public static final String EXPECTED_VALUE = "OPCUAMultipleReadAndAssertSampler.expectedValue";
     public static final String TIMEOUT = "OPCUAMultipleReadAndAssertSampler.timeout";
     public static final String IGNORE_ASSERTIONS = "OPCUAMultipleReadAndAssertSampler.ignoreAssertions";
+    public static final String BATCH_READ = "OPCUAMultipleReadAndAssertSampler.batchRead";
+    public static final String NODES = "OPCUAMultipleReadAndAssertSampler.nodes";
+    public static final String NODE_FILE = "OPCUAMultipleReadAndAssertSampler.nodeFile";
+    public static final String MAX_NODES_PER_REQUEST = "OPCUAMultipleReadAndAssertSampler.maxNodesPerRequest";
+    public static final String MAX_IN_FLIGHT = "OPCUAMultipleReadAndAssertSampler.maxInFlight";
+
+    private transient OPCUACompiledProperty<CompiledNodes> compiledNodes;
+    private transient OPCUACompiledProperty<Integer> compiledTimeout;
+    private transient OPCUACompiledProperty<Integer> compiledMaxNodesPerRequest;
+    private transient OPCUACompiledProperty<Integer> compiledMaxInFlight;
 
     public String getNodeIdNamespaceIndex(int index) {
         return getPropertyAsString(NODE_ID_NAMESPACE_INDEX + index);
@@ -70,122 +88,349 @@ public class OPCUAMultipleReadAndAssertSampler extends AbstractSampler {
         return getPropertyAsBoolean(IGNORE_ASSERTIONS);
     }
 
+    public boolean isBatchRead() {
+        return getPropertyAsBoolean(BATCH_READ);
+    }
+
+    public List<List<String>> getNodes() {
+        List<List<String>> rows = OPCUANodeTable.getRows(this, NODES);
+        if (!rows.isEmpty() || getPropertyAsString(NODE_ID_NAMESPACE_INDEX + 1).isEmpty()) {
+            return rows;
+        }
+
+        // Fall back to the fixed fields of older test plans
+        rows = new ArrayList<>();
+        for (int i = 1; i <= LEGACY_FIELDS; i++) {
+            rows.add(Arrays.asList(getNodeIdNamespaceIndex(i), getNodeIdIdentifier(i), getExpectedValue(i)));
+        }
+        return rows;
+    }
+
+    public void setNodes(List<List<String>> nodes) {
+        setProperty(OPCUANodeTable.toProperty(NODES, nodes));
+        for (int i = 1; i <= LEGACY_FIELDS; i++) {
+            removeProperty(NODE_ID_NAMESPACE_INDEX + i);
+            removeProperty(NODE_ID_IDENTIFIER + i);
+            removeProperty(EXPECTED_VALUE + i);
+        }
+    }
+
+    public String getNodeFile() {
+        return getPropertyAsString(NODE_FILE);
+    }
+
+    public String getMaxNodesPerRequest() {
+        return getPropertyAsString(MAX_NODES_PER_REQUEST);
+    }
+
+    public String getMaxInFlight() {
+        return getPropertyAsString(MAX_IN_FLIGHT);
+    }
+
     @Override
     public SampleResult sample(Entry e) {
         SampleResult result = new SampleResult();
         result.setSampleLabel(getName());
         result.sampleStart();
 
-        OpcUaClient opcUaClient = (OpcUaClient) getThreadContext().getVariables().getObject("opcUaClient");
-        if (opcUaClient == null) {
+        OPCUASessions.Lease lease;
+        try {
+            lease = OPCUASessions.acquire(getThreadContext().getVariables());
+        } catch (Exception ex) {
+            log.error("Error acquiring OPC UA session", ex);
+            result.setResponseMessage("Error acquiring OPC UA session: " + ex.getMessage());
+            result.setSuccessful(false);
+            result.sampleEnd();
+            return result;
+        }
+        if (lease == null) {
             result.setResponseMessage("OPC UA client connection is not available.");
             result.setSuccessful(false);
             result.sampleEnd();
             return result;
         }
+        // Time spent waiting for a pooled session is reported as connect time
+        result.connectEnd();
+        OpcUaClient opcUaClient = lease.getClient();
 
-        List<NodeId> nodeIds = new ArrayList<>();
-        List<String> expectedValues = new ArrayList<>();
-
-        for (int i = 1; i <= MAX_FIELDS; i++) {
-            addNodeIdAndExpectedValue(nodeIds, expectedValues, getNodeIdNamespaceIndex(i), getNodeIdIdentifier(i), getExpectedValue(i));
-        }
-
-        String timeoutStr = getTimeout();
-        int timeout = 2000; // default timeout 2 seconds
-        if (timeoutStr != null && !timeoutStr.isEmpty()) {
-            try {
-                timeout = Integer.parseInt(timeoutStr);
-            } catch (NumberFormatException nfe) {
-                log.warn("Invalid timeout value provided. Using default value of 2000 ms.");
-            }
+        if (compiledNodes == null) {
+            compile();
         }
 
         boolean ignoreAssertions = getIgnoreAssertions();
+        OPCUAResultVerbosity verbosity = OPCUAResultVerbosity.get();
         StringBuilder responseMessage = new StringBuilder();
         responseMessage.append("Results:\n");
 
         try {
-            boolean allSuccessful = true;
+            int failedNodes = 0;
 
-            for (int i = 0; i < nodeIds.size(); i++) {
-                NodeId nodeId = nodeIds.get(i);
-                String expectedValue = expectedValues.get(i);
+            CompiledNodes nodes = compiledNodes.get();
+            List<NodeId> nodeIds = nodes.nodeIds;
+            List<OPCUAAssertion> assertions = nodes.assertions;
+            int timeout = compiledTimeout.get();
 
-                try {
-                    DataValue dataValue = opcUaClient.readValue(0.0, TimestampsToReturn.Both, nodeId)
-                            .get(timeout, TimeUnit.MILLISECONDS);
-                    Object actualValue = dataValue.getValue().getValue();
+            if (isBatchRead()) {
+                // Read the nodes with as few Read service calls as the server's operation limits allow
+                DataValue[] dataValues = new DataValue[nodeIds.size()];
+                String[] failures = new String[nodeIds.size()];
+                readChunked(opcUaClient, nodeIds, timeout, dataValues, failures, verbosity);
 
-                    log.info("NodeId: " + nodeId + ", Actual Value: " + actualValue);
+                for (int i = 0; i < nodeIds.size(); i++) {
+                    NodeId nodeId = nodeIds.get(i);
+                    if (dataValues[i] == null) {
+                        if (verbosity.describes(false)) {
+                            responseMessage.append("Failed to read value from NodeId ").append(nodeId).append(": ").append(failures[i]).append("\n");
+                        }
+                        failedNodes++;
+                        continue;
+                    }
+                    if (!evaluateNode(result, responseMessage, nodeId, assertions.get(i), dataValues[i], ignoreAssertions, verbosity)) {
+                        failedNodes++;
+                    }
+                }
+            } else {
+                Exception firstFailure = null;
+                for (int i = 0; i < nodeIds.size(); i++) {
+                    NodeId nodeId = nodeIds.get(i);
 
-                    if (ignoreAssertions) {
-                        if (actualValue == null) {
-                            responseMessage.append("Failed to read value from NodeId ").append(nodeId).append(": Node not found or value is null\n");
-                            continue;
+                    try {
+                        DataValue dataValue = OPCUAMetrics.track(OPCUAMetrics.READ, opcUaClient, System.nanoTime(),
+                                opcUaClient.readValue(0.0, TimestampsToReturn.Both, nodeId), DataValue::getStatusCode)
+                                .get(timeout, TimeUnit.MILLISECONDS);
+                        if (!evaluateNode(result, responseMessage, nodeId, assertions.get(i), dataValue, ignoreAssertions, verbosity)) {
+                            failedNodes++;
                         }
-                        responseMessage.append("NodeId=").append(nodeId)
-                                .append(", Actual=").append(actualValue)
-                                .append("\n");
-                    } else {
-                        if (actualValue == null) {
-                            responseMessage.append("Failed to read value from NodeId ").append(nodeId).append(": Node not found or value is null\n");
-                            allSuccessful = false;
-                            continue;
+                    } catch (Exception ex) {
+                        if (verbosity.describes(false)) {
+                            responseMessage.append("Failed to read value from NodeId ").append(nodeId).append(": ").append(ex.getMessage()).append("\n");
                         }
-
-                        responseMessage.append("NodeId=").append(nodeId)
-                                .append(", Expected=").append(expectedValue)
-                                .append(", Actual=").append(actualValue)
-                                .append("\n");
-
-                        AssertionResult assertionResult = new AssertionResult("Assertion for NodeId " + nodeId);
-                        if (expectedValue != null && !expectedValue.isEmpty()) {
-                            if (!actualValue.toString().equals(expectedValue)) {
-                                assertionResult.setFailure(true);
-                                assertionResult.setFailureMessage("Assertion failed for NodeId " + nodeId + ". Expected: " + expectedValue + ", Actual: " + actualValue);
-                                result.addAssertionResult(assertionResult);
-                                allSuccessful = false;
-                            }
-                        } else {
-                            assertionResult.setFailure(true);
-                            assertionResult.setFailureMessage("Expected value for NodeId " + nodeId + " is empty.");
-                            result.addAssertionResult(assertionResult);
-                            allSuccessful = false;
+                        if (firstFailure == null) {
+                            firstFailure = ex;
                         }
+                        failedNodes++;
                     }
-                } catch (Exception ex) {
-                    responseMessage.append("Failed to read value from NodeId ").append(nodeId).append(": ").append(ex.getMessage()).append("\n");
-                    log.error("Error reading values from nodes", ex);
-                    allSuccessful = false;
+                }
+                if (firstFailure != null && verbosity.logs()) {
+                    log.error("Error reading values from nodes (" + failedNodes + " of " + nodeIds.size() + " failed)", firstFailure);
                 }
             }
 
+            boolean allSuccessful = failedNodes == 0;
             result.setSuccessful(allSuccessful);
-            result.setResponseMessage(responseMessage.toString());
-            result.setResponseData(responseMessage.toString(), "UTF-8");
+            if (verbosity.describes(allSuccessful)) {
+                result.setResponseMessage(responseMessage.toString());
+                result.setResponseData(responseMessage.toString(), "UTF-8");
+            } else if (!allSuccessful) {
+                result.setResponseMessage(failedNodes + " of " + nodeIds.size() + " nodes failed");
+            }
         } catch (Exception ex) {
             log.error("Error reading values from nodes", ex);
             result.setResponseMessage("Error reading values from nodes: " + ex.getMessage());
-            result.setResponseData("Exception: " + ex.getMessage(), "UTF-8");
+            if (verbosity.describes(false)) {
+                result.setResponseData("Exception: " + ex.getMessage(), "UTF-8");
+            }
             result.setSuccessful(false);
         } finally {
+            lease.close();
             result.sampleEnd();
+            OPCUAReconnectMonitor.sampleCompleted(getThreadContext().getVariables(), result);
         }
 
         return result;
     }
 
-    private void addNodeIdAndExpectedValue(List<NodeId> nodeIds, List<String> expectedValues, String namespaceIndexStr, String identifierStr, String expectedValue) {
+    private void readChunked(OpcUaClient opcUaClient, List<NodeId> nodeIds, long timeout,
+                             DataValue[] dataValues, String[] failures, OPCUAResultVerbosity verbosity) throws Exception {
+        if (nodeIds.isEmpty()) {
+            return;
+        }
+
+        OPCUAServerLimits limits = OPCUAServerLimits.get(opcUaClient, timeout);
+        int chunkSize = OPCUAServerLimits.chunkSize(limits.getMaxNodesPerRead(), compiledMaxNodesPerRequest.get(), nodeIds.size());
+        int maxInFlight = compiledMaxInFlight.get();
+
+        // Keep at most maxInFlight Read requests outstanding on the session
+        Semaphore window = new Semaphore(maxInFlight);
+        List<CompletableFuture<List<DataValue>>> requests = new ArrayList<>();
+        for (int from = 0; from < nodeIds.size(); from += chunkSize) {
+            int to = Math.min(nodeIds.size(), from + chunkSize);
+            if (!window.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException("Timed out waiting for outstanding Read requests.");
+            }
+            CompletableFuture<List<DataValue>> request = OPCUAMetrics.track(OPCUAMetrics.READ, opcUaClient, System.nanoTime(),
+                    opcUaClient.readValues(0.0, TimestampsToReturn.Both, nodeIds.subList(from, to)));
+            request.whenComplete((values, ex) -> window.release());
+            requests.add(request);
+        }
+
+        // The values are copied on this thread from the completed requests; one deadline covers all of them
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        Exception firstFailure = null;
+        int failedChunks = 0;
+        for (int chunk = 0; chunk < requests.size(); chunk++) {
+            try {
+                List<DataValue> values = requests.get(chunk).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                int offset = chunk * chunkSize;
+                for (int i = 0; i < values.size() && offset + i < dataValues.length; i++) {
+                    dataValues[offset + i] = values.get(i);
+                }
+            } catch (Exception ex) {
+                if (firstFailure == null) {
+                    firstFailure = ex;
+                }
+                failedChunks++;
+                Throwable cause = ex instanceof ExecutionException && ex.getCause() != null ? ex.getCause() : ex;
+                int from = chunk * chunkSize;
+                Arrays.fill(failures, from, Math.min(nodeIds.size(), from + chunkSize), cause.getMessage());
+            }
+        }
+        // One stack trace per sample is enough; the failed nodes are listed in the response message
+        if (firstFailure != null && verbosity.logs()) {
+            log.error("Error reading values from nodes (" + failedChunks + " of " + requests.size() + " requests failed)", firstFailure);
+        }
+    }
+
+    @Override
+    public void threadStarted() {
+        compile();
+    }
+
+    @Override
+    public void threadFinished() {
+        // Nothing to release; the compiled settings are dropped with the sampler clone
+    }
+
+    private void compile() {
+        // Resolve the node list and constant settings once per thread; settings using variables or functions
+        // stay per sample
+        List<String> nodeProperties = new ArrayList<>(Arrays.asList(NODES, NODE_FILE));
+        for (int i = 1; i <= LEGACY_FIELDS; i++) {
+            nodeProperties.add(NODE_ID_NAMESPACE_INDEX + i);
+            nodeProperties.add(NODE_ID_IDENTIFIER + i);
+            nodeProperties.add(EXPECTED_VALUE + i);
+        }
+        compiledNodes = OPCUACompiledProperty.of(this, this::collectNodes, nodeProperties.toArray(new String[0]));
+        compiledTimeout = OPCUACompiledProperty.of(this, this::parseTimeout, TIMEOUT);
+        compiledMaxNodesPerRequest = OPCUACompiledProperty.of(this, () -> parseInt(getMaxNodesPerRequest(), 0), MAX_NODES_PER_REQUEST);
+        compiledMaxInFlight = OPCUACompiledProperty.of(this, () -> Math.max(1, parseInt(getMaxInFlight(), 1)), MAX_IN_FLIGHT);
+    }
+
+    private int parseTimeout() {
+        String timeoutStr = getTimeout();
+        int timeout = 2000; // default timeout 2 seconds
+        if (timeoutStr != null && !timeoutStr.isEmpty()) {
+            try {
+                timeout = Integer.parseInt(timeoutStr);
+            } catch (NumberFormatException nfe) {
+                log.warn("Invalid timeout value provided. Using default value of 2000 ms.");
+            }
+        }
+        return timeout;
+    }
+
+    private CompiledNodes collectNodes() throws IOException {
+        List<NodeId> nodeIds = new ArrayList<>();
+        List<OPCUAAssertion> assertions = new ArrayList<>();
+
+        for (List<String> row : getNodes()) {
+            addNodeIdAndExpectedValue(nodeIds, assertions, row);
+        }
+
+        String nodeFile = getNodeFile();
+        if (nodeFile != null && !nodeFile.isEmpty()) {
+            // The file is loaded once per JVM; its NodeIds and assertions are shared by all threads
+            OPCUANodeList nodeList = OPCUANodeList.get(nodeFile);
+            return new CompiledNodes(OPCUANodeList.concat(nodeIds, nodeList.getNodeIds()),
+                    OPCUANodeList.concat(assertions, nodeList.getAssertions()));
+        }
+        return new CompiledNodes(nodeIds, assertions);
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException | NullPointerException ex) {
+            return defaultValue;
+        }
+    }
+
+    private boolean evaluateNode(SampleResult result, StringBuilder responseMessage, NodeId nodeId, OPCUAAssertion assertion,
+                                 DataValue dataValue, boolean ignoreAssertions, OPCUAResultVerbosity verbosity) {
+        Object actualValue = dataValue.getValue().getValue();
+
+        if (verbosity.logs()) {
+            log.info("NodeId: {}, Actual Value: {}", nodeId, actualValue);
+        }
+
+        if (actualValue == null) {
+            // A missing value only fails the node when assertions are checked
+            if (verbosity.describes(ignoreAssertions)) {
+                responseMessage.append("Failed to read value from NodeId ").append(nodeId).append(": Node not found or value is null\n");
+            }
+            return ignoreAssertions;
+        }
+
+        if (ignoreAssertions) {
+            if (verbosity.describes(true)) {
+                responseMessage.append("NodeId=").append(nodeId)
+                        .append(", Actual=").append(actualValue)
+                        .append("\n");
+            }
+            return true;
+        }
+
+        // The compiled assertion tests the value directly; an AssertionResult is only created for a failure
+        boolean passed = assertion != null && assertion.test(dataValue);
+        if (verbosity.describes(passed)) {
+            responseMessage.append("NodeId=").append(nodeId)
+                    .append(", Expected=").append(assertion)
+                    .append(", Actual=").append(actualValue)
+                    .append("\n");
+            if (assertion == null) {
+                addFailure(result, nodeId, "Expected value for NodeId " + nodeId + " is empty.");
+            } else if (!passed) {
+                addFailure(result, nodeId, "Assertion failed for NodeId " + nodeId + ". Expected: " + assertion + ", Actual: " + actualValue);
+            }
+        }
+        return passed;
+    }
+
+    private static void addFailure(SampleResult result, NodeId nodeId, String message) {
+        AssertionResult assertionResult = new AssertionResult("Assertion for NodeId " + nodeId);
+        assertionResult.setFailure(true);
+        assertionResult.setFailureMessage(message);
+        result.addAssertionResult(assertionResult);
+    }
+
+    private void addNodeIdAndExpectedValue(List<NodeId> nodeIds, List<OPCUAAssertion> assertions, List<String> row) {
+        addNodeIdAndExpectedValue(nodeIds, assertions,
+                row.size() > 0 ? row.get(0) : null, row.size() > 1 ? row.get(1) : null, row.size() > 2 ? row.get(2) : null);
+    }
+
+    private void addNodeIdAndExpectedValue(List<NodeId> nodeIds, List<OPCUAAssertion> assertions, String namespaceIndexStr, String identifierStr, String expectedValue) {
         if (namespaceIndexStr != null && !namespaceIndexStr.isEmpty() && identifierStr != null && !identifierStr.isEmpty()) {
             try {
                 int namespaceIndex = Integer.parseInt(namespaceIndexStr);
                 int identifier = Integer.parseInt(identifierStr);
+                // Expected values are compiled once; an empty one fails the node's assertion
+                OPCUAAssertion assertion = expectedValue != null && !expectedValue.isEmpty()
+                        ? OPCUAAssertion.compile(expectedValue) : null;
                 nodeIds.add(new NodeId(namespaceIndex, identifier));
-                expectedValues.add(expectedValue);
+                assertions.add(assertion);
             } catch (NumberFormatException nfe) {
                 log.warn("Invalid NodeId format: ns=" + namespaceIndexStr + ", id=" + identifierStr);
             }
         }
     }
+
+    private static final class CompiledNodes {
+        private final List<NodeId> nodeIds;
+        private final List<OPCUAAssertion> assertions;
+
+        private CompiledNodes(List<NodeId> nodeIds, List<OPCUAAssertion> assertions) {
+            this.nodeIds = nodeIds;
+            this.assertions = assertions;
+        }
+    }
 }
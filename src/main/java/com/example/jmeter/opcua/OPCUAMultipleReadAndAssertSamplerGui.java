@@ -39,12 +39,13 @@ import java.net.URI;
 public class OPCUAMultipleReadAndAssertSamplerGui extends AbstractSamplerGui {
     private static final Logger log = LogManager.getLogger(OPCUAMultipleReadAndAssertSamplerGui.class);
 
-    private static final int MAX_FIELDS = 10;
-    private JTextField[] nodeIdNamespaceIndices;
-    private JTextField[] nodeIdIdentifiers;
-    private JTextField[] expectedValues;
+    private OPCUANodeTablePanel nodeTablePanel;
+    private JTextField nodeFileField;
+    private JTextField maxNodesPerRequestField;
+    private JTextField maxInFlightField;
     private JTextField timeoutField;
     private JCheckBox ignoreAssertionsCheckBox;
+    private JCheckBox batchReadCheckBox;
 
     public OPCUAMultipleReadAndAssertSamplerGui() {
         init();
@@ -57,51 +58,29 @@ public class OPCUAMultipleReadAndAssertSamplerGui extends AbstractSamplerGui {
         JPanel mainPanel = new VerticalPanel();
         mainPanel.add(makeTitlePanel());
 
-        nodeIdNamespaceIndices = new JTextField[MAX_FIELDS];
-        nodeIdIdentifiers = new JTextField[MAX_FIELDS];
-        expectedValues = new JTextField[MAX_FIELDS];
+        nodeTablePanel = new OPCUANodeTablePanel("Node IDs",
+                "Namespace Index (ns=)", "Identifier (i=)", "Expected Value (true/false)");
+        nodeFileField = new JTextField(30);
+        maxNodesPerRequestField = new JTextField(5);
+        maxInFlightField = new JTextField(5);
         timeoutField = new JTextField(5);
         ignoreAssertionsCheckBox = new JCheckBox("Ignore Assertions");
-
-        // Add action listener to ignoreAssertionsCheckBox
-        ignoreAssertionsCheckBox.addActionListener(e -> {
-            boolean ignore = ignoreAssertionsCheckBox.isSelected();
-            for (JTextField expectedValueField : expectedValues) {
-                expectedValueField.setEnabled(!ignore);
-            }
-        });
-
-        JPanel nodeIdsPanel = new JPanel(new GridBagLayout());
-        nodeIdsPanel.setBorder(BorderFactory.createTitledBorder("Node IDs"));
+        batchReadCheckBox = new JCheckBox("Batch Read (single request)");
 
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.insets = new Insets(2, 2, 2, 2);
 
-        for (int i = 0; i < MAX_FIELDS; i++) {
-            nodeIdNamespaceIndices[i] = new JTextField(3);
-            nodeIdIdentifiers[i] = new JTextField(3);
-            expectedValues[i] = new JTextField(3);
-
-            gbc.gridx = 0;
-            gbc.gridy = i;
-            nodeIdsPanel.add(new JLabel("Namespace Index (ns=) " + ":"), gbc);
-
-            gbc.gridx = 1;
-            nodeIdsPanel.add(nodeIdNamespaceIndices[i], gbc);
-
-            gbc.gridx = 2;
-            nodeIdsPanel.add(new JLabel("Identifier (i=)" + ":"), gbc);
-
-            gbc.gridx = 3;
-            nodeIdsPanel.add(nodeIdIdentifiers[i], gbc);
-
-            gbc.gridx = 4;
-            nodeIdsPanel.add(new JLabel("Expected Value (true/false) " + ":"), gbc);
+        JPanel nodeFilePanel = new JPanel(new GridBagLayout());
+        nodeFilePanel.setBorder(BorderFactory.createTitledBorder("Node List File"));
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        nodeFilePanel.add(new JLabel("CSV File (ns,i,expected per line) or Catalogue:"), gbc);
 
-            gbc.gridx = 5;
-            nodeIdsPanel.add(expectedValues[i], gbc);
-        }
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        nodeFilePanel.add(nodeFileField, gbc);
+        gbc.weightx = 0.0;
 
         JPanel settingsPanel = new JPanel(new GridBagLayout());
         settingsPanel.setBorder(BorderFactory.createTitledBorder("Settings"));
@@ -116,7 +95,24 @@ public class OPCUAMultipleReadAndAssertSamplerGui extends AbstractSamplerGui {
         gbc.gridx = 2;
         settingsPanel.add(ignoreAssertionsCheckBox, gbc);
 
-        mainPanel.add(nodeIdsPanel);
+        gbc.gridx = 3;
+        settingsPanel.add(batchReadCheckBox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        settingsPanel.add(new JLabel("Max Nodes per Request (0 = server limit):"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(maxNodesPerRequestField, gbc);
+
+        gbc.gridx = 2;
+        settingsPanel.add(new JLabel("Max Requests in Flight:"), gbc);
+
+        gbc.gridx = 3;
+        settingsPanel.add(maxInFlightField, gbc);
+
+        mainPanel.add(nodeTablePanel);
+        mainPanel.add(nodeFilePanel);
         mainPanel.add(settingsPanel);
         add(mainPanel, BorderLayout.CENTER);
 
@@ -164,13 +160,15 @@ public class OPCUAMultipleReadAndAssertSamplerGui extends AbstractSamplerGui {
     @Override
     public void modifyTestElement(TestElement element) {
         super.configureTestElement(element);
-        for (int i = 0; i < MAX_FIELDS; i++) {
-            element.setProperty(OPCUAMultipleReadAndAssertSampler.NODE_ID_NAMESPACE_INDEX + (i + 1), nodeIdNamespaceIndices[i].getText());
-            element.setProperty(OPCUAMultipleReadAndAssertSampler.NODE_ID_IDENTIFIER + (i + 1), nodeIdIdentifiers[i].getText());
-            element.setProperty(OPCUAMultipleReadAndAssertSampler.EXPECTED_VALUE + (i + 1), expectedValues[i].getText());
+        if (element instanceof OPCUAMultipleReadAndAssertSampler) {
+            ((OPCUAMultipleReadAndAssertSampler) element).setNodes(nodeTablePanel.getRows());
         }
+        element.setProperty(OPCUAMultipleReadAndAssertSampler.NODE_FILE, nodeFileField.getText());
+        element.setProperty(OPCUAMultipleReadAndAssertSampler.MAX_NODES_PER_REQUEST, maxNodesPerRequestField.getText());
+        element.setProperty(OPCUAMultipleReadAndAssertSampler.MAX_IN_FLIGHT, maxInFlightField.getText());
         element.setProperty(OPCUAMultipleReadAndAssertSampler.TIMEOUT, timeoutField.getText());
         element.setProperty(OPCUAMultipleReadAndAssertSampler.IGNORE_ASSERTIONS, ignoreAssertionsCheckBox.isSelected());
+        element.setProperty(OPCUAMultipleReadAndAssertSampler.BATCH_READ, batchReadCheckBox.isSelected());
     }
 
     @Override
@@ -178,36 +176,25 @@ public class OPCUAMultipleReadAndAssertSamplerGui extends AbstractSamplerGui {
         super.configure(element);
         if (element instanceof OPCUAMultipleReadAndAssertSampler) {
             OPCUAMultipleReadAndAssertSampler sampler = (OPCUAMultipleReadAndAssertSampler) element;
-            for (int i = 0; i < MAX_FIELDS; i++) {
-                nodeIdNamespaceIndices[i].setText(sampler.getNodeIdNamespaceIndex(i + 1));
-                nodeIdIdentifiers[i].setText(sampler.getNodeIdIdentifier(i + 1));
-                expectedValues[i].setText(sampler.getExpectedValue(i + 1));
-            }
+            nodeTablePanel.setRows(sampler.getNodes());
+            nodeFileField.setText(sampler.getNodeFile());
+            maxNodesPerRequestField.setText(sampler.getMaxNodesPerRequest());
+            maxInFlightField.setText(sampler.getMaxInFlight());
             timeoutField.setText(sampler.getTimeout());
             ignoreAssertionsCheckBox.setSelected(sampler.getIgnoreAssertions());
-
-            // Set the state of the expected values fields based on the checkbox
-            boolean ignore = ignoreAssertionsCheckBox.isSelected();
-            for (JTextField expectedValueField : expectedValues) {
-                expectedValueField.setEnabled(!ignore);
-            }
+            batchReadCheckBox.setSelected(sampler.isBatchRead());
         }
     }
 
     @Override
     public void clearGui() {
         super.clearGui();
-        for (int i = 0; i < MAX_FIELDS; i++) {
-            nodeIdNamespaceIndices[i].setText("");
-            nodeIdIdentifiers[i].setText("");
-            expectedValues[i].setText("");
-        }
+        nodeTablePanel.clear();
+        nodeFileField.setText("");
+        maxNodesPerRequestField.setText("");
+        maxInFlightField.setText("");
         timeoutField.setText("");
         ignoreAssertionsCheckBox.setSelected(false);
-
-        // Enable expected value fields by default
-        for (JTextField expectedValueField : expectedValues) {
-            expectedValueField.setEnabled(true);
-        }
+        batchReadCheckBox.setSelected(false);
     }
 }
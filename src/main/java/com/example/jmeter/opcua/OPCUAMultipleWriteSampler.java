@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class OPCUAMultipleWriteSampler extends AbstractSampler implements ThreadListener {
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LogManager.getLogger(OPCUAMultipleWriteSampler.class);
+
+    // Number of failed nodes listed in the response message
+    private static final int MAX_REPORTED_FAILURES = 20;
+
+    public static final String NODES = "OPCUAMultipleWriteSampler.nodes";
+    public static final String NODE_FILE = "OPCUAMultipleWriteSampler.nodeFile";
+    public static final String TIMEOUT = "OPCUAMultipleWriteSampler.timeout";
+    public static final String MAX_NODES_PER_REQUEST = "OPCUAMultipleWriteSampler.maxNodesPerRequest";
+
+    private transient OPCUACompiledProperty<CompiledNodes> compiledNodes;
+    private transient OPCUACompiledProperty<Long> compiledTimeout;
+    private transient OPCUACompiledProperty<Integer> compiledMaxNodesPerRequest;
+
+    // Types of the nodes per session, kept in the sampler clone so that pooled sessions don't evict each other
+    private transient Map<OpcUaClient, List<OPCUAValueCodec.ValueType>> resolvedTypes;
+    private transient CompiledNodes resolvedNodes;
+
+    // Values encoded for the nodes' DataTypes, reused while neither the nodes nor the types change
+    private transient CompiledNodes encodedNodes;
+    private transient List<OPCUAValueCodec.ValueType> encodedTypes;
+    private transient List<DataValue> encodedValues;
+
+    public List<List<String>> getNodes() {
+        return OPCUANodeTable.getRows(this, NODES);
+    }
+
+    public void setNodes(List<List<String>> nodes) {
+        setProperty(OPCUANodeTable.toProperty(NODES, nodes));
+    }
+
+    public void setNodeFile(String nodeFile) {
+        setProperty(NODE_FILE, nodeFile);
+    }
+
+    public String getNodeFile() {
+        return getPropertyAsString(NODE_FILE);
+    }
+
+    public void setTimeout(String timeout) {
+        setProperty(TIMEOUT, timeout);
+    }
+
+    public String getTimeout() {
+        return getPropertyAsString(TIMEOUT);
+    }
+
+    public void setMaxNodesPerRequest(String maxNodesPerRequest) {
+        setProperty(MAX_NODES_PER_REQUEST, maxNodesPerRequest);
+    }
+
+    public String getMaxNodesPerRequest() {
+        return getPropertyAsString(MAX_NODES_PER_REQUEST);
+    }
+
+    @Override
+    public SampleResult sample(Entry e) {
+        SampleResult result = new SampleResult();
+        result.setSampleLabel(getName());
+
+        if (compiledNodes == null) {
+            compile();
+        }
+
+        result.sampleStart(); // Start timing
+
+        try (OPCUASessions.Lease lease = OPCUASessions.acquire(getThreadContext().getVariables())) {
+            if (lease == null) {
+                log.error("OPC UA client connection is not available.");
+                result.setResponseMessage("OPC UA client connection is not available.");
+                result.setSuccessful(false);
+                return result;
+            }
+            // Time spent waiting for a pooled session is reported as connect time
+            result.connectEnd();
+            OpcUaClient opcUaClient = lease.getClient();
+
+            CompiledNodes nodes = compiledNodes.get();
+            List<NodeId> nodeIds = nodes.nodeIds;
+            long timeout = compiledTimeout.get();
+            int maxNodesPerRequest = compiledMaxNodesPerRequest.get();
+            if (nodeIds.isEmpty()) {
+                throw new IllegalStateException("No nodes configured.");
+            }
+            List<DataValue> dataValues = encode(opcUaClient, nodes, timeout);
+
+            OPCUAServerLimits limits = OPCUAServerLimits.get(opcUaClient, timeout);
+            int chunkSize = OPCUAServerLimits.chunkSize(limits.getMaxNodesPerWrite(), maxNodesPerRequest, nodeIds.size());
+
+            int goodCount = 0;
+            int requestCount = 0;
+            StringBuilder failures = new StringBuilder();
+            int failureCount = 0;
+
+            // Send the values in as few Write requests as the server's operation limits allow
+            for (int from = 0; from < nodeIds.size(); from += chunkSize) {
+                int to = Math.min(nodeIds.size(), from + chunkSize);
+                List<StatusCode> statusCodes = OPCUAMetrics.track(OPCUAMetrics.WRITE, opcUaClient, System.nanoTime(),
+                                opcUaClient.writeValues(nodeIds.subList(from, to), dataValues.subList(from, to)))
+                        .get(timeout, TimeUnit.MILLISECONDS);
+                requestCount++;
+
+                for (int i = 0; i < statusCodes.size(); i++) {
+                    StatusCode statusCode = statusCodes.get(i);
+                    if (statusCode.isGood()) {
+                        goodCount++;
+                    } else {
+                        if (failureCount < MAX_REPORTED_FAILURES) {
+                            failures.append("NodeId=").append(nodeIds.get(from + i))
+                                    .append(", Status=").append(statusCode).append("\n");
+                        }
+                        failureCount++;
+                    }
+                }
+            }
+
+            OPCUAResultVerbosity verbosity = OPCUAResultVerbosity.get();
+            if (verbosity.describes(failureCount == 0)) {
+                String responseMessage = String.format("Wrote %d of %d values in %d Write request(s) of up to %d nodes.",
+                        goodCount, nodeIds.size(), requestCount, chunkSize);
+                if (verbosity.logs()) {
+                    log.info(responseMessage);
+                }
+                if (failureCount > 0) {
+                    responseMessage += "\nFailed nodes (" + failureCount + "):\n" + failures;
+                }
+                result.setResponseMessage(responseMessage);
+                result.setResponseData(responseMessage, "UTF-8");
+            } else if (failureCount > 0) {
+                result.setResponseMessage(failureCount + " of " + nodeIds.size() + " values failed to write");
+            }
+            result.setSuccessful(failureCount == 0);
+        } catch (Exception ex) {
+            log.error("Error writing values to nodes: " + ex.getMessage(), ex);
+            result.setResponseMessage("Error writing values to nodes: " + ex.getMessage());
+            if (OPCUAResultVerbosity.get().describes(false)) {
+                result.setResponseData("Exception: " + ex.getMessage(), "UTF-8");
+            }
+            result.setSuccessful(false);
+        } finally {
+            result.sampleEnd(); // End timing
+            OPCUAReconnectMonitor.sampleCompleted(getThreadContext().getVariables(), result);
+        }
+
+        return result;
+    }
+
+    @Override
+    public void threadStarted() {
+        compile();
+    }
+
+    @Override
+    public void threadFinished() {
+        // Nothing to release; the compiled settings are dropped with the sampler clone
+    }
+
+    private void compile() {
+        compiledNodes = OPCUACompiledProperty.of(this, this::collectNodes, NODES, NODE_FILE);
+        compiledTimeout = OPCUACompiledProperty.of(this, () -> {
+            try {
+                return Long.parseLong(getTimeout());
+            } catch (NumberFormatException ex) {
+                return 3000L; // Default timeout of 3000 ms
+            }
+        }, TIMEOUT);
+        compiledMaxNodesPerRequest = OPCUACompiledProperty.of(this, () -> {
+            try {
+                return Integer.parseInt(getMaxNodesPerRequest());
+            } catch (NumberFormatException ex) {
+                return 0; // Default of 0 (server limit only)
+            }
+        }, MAX_NODES_PER_REQUEST);
+    }
+
+    private List<DataValue> encode(OpcUaClient opcUaClient, CompiledNodes nodes, long timeout) throws Exception {
+        // DataTypes are read once per session; the values are only parsed again when the nodes or types change
+        if (nodes != resolvedNodes) {
+            resolvedTypes = new WeakHashMap<>();
+            resolvedNodes = nodes;
+        }
+        List<OPCUAValueCodec.ValueType> types = resolvedTypes.get(opcUaClient);
+        if (types == null) {
+            types = OPCUAValueCodec.resolve(opcUaClient, nodes.nodeIds, timeout);
+            resolvedTypes.put(opcUaClient, types);
+        }
+        if (nodes.nodeList != null) {
+            // Nodes only from a file share one encoding across all threads
+            return nodes.nodeList.encode(types);
+        }
+        // Other sessions usually resolve equal types, so switching pooled sessions keeps the encoded values
+        if (nodes != encodedNodes || (types != encodedTypes && !types.equals(encodedTypes))) {
+            List<DataValue> dataValues = new ArrayList<>(types.size());
+            for (int i = 0; i < types.size(); i++) {
+                OPCUAValueCodec.ValueType type = types.get(i);
+                String text = nodes.values.get(i);
+                try {
+                    dataValues.add(new DataValue(type.encode(text)));
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException(String.format("Cannot write [%s] to node %s of type %s",
+                            text, nodes.nodeIds.get(i), type), ex);
+                }
+            }
+            encodedValues = dataValues;
+            encodedTypes = types;
+            encodedNodes = nodes;
+        }
+        return encodedValues;
+    }
+
+    private CompiledNodes collectNodes() throws IOException {
+        List<NodeId> nodeIds = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+
+        for (List<String> row : getNodes()) {
+            try {
+                NodeId nodeId = new NodeId(Integer.parseInt(row.get(0)), Integer.parseInt(row.get(1)));
+                // Values are converted to the node's DataType once the session is known
+                nodeIds.add(nodeId);
+                values.add(row.size() > 2 ? row.get(2) : "");
+            } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+                log.warn("Invalid NodeId format: " + row);
+            }
+        }
+
+        String nodeFile = getNodeFile();
+        if (nodeFile != null && !nodeFile.isEmpty()) {
+            // The file is loaded once per JVM and shared by all threads
+            OPCUANodeList nodeList = OPCUANodeList.get(nodeFile);
+            if (nodeIds.isEmpty()) {
+                return new CompiledNodes(nodeList.getNodeIds(), nodeList.getValues(), nodeList);
+            }
+            return new CompiledNodes(OPCUANodeList.concat(nodeIds, nodeList.getNodeIds()),
+                    OPCUANodeList.concat(values, nodeList.getValues()), null);
+        }
+        return new CompiledNodes(nodeIds, values, null);
+    }
+
+    private static final class CompiledNodes {
+        private final List<NodeId> nodeIds;
+        private final List<String> values;
+        // Set when all nodes come from a node list file
+        private final OPCUANodeList nodeList;
+
+        private CompiledNodes(List<NodeId> nodeIds, List<String> values, OPCUANodeList nodeList) {
+            this.nodeIds = nodeIds;
+            this.values = values;
+            this.nodeList = nodeList;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.samplers.gui.AbstractSamplerGui;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.net.URI;
+
+public class OPCUAMultipleWriteSamplerGui extends AbstractSamplerGui {
+    private static final Logger log = LogManager.getLogger(OPCUAMultipleWriteSamplerGui.class);
+
+    private OPCUANodeTablePanel nodeTablePanel;
+    private JTextField nodeFileField;
+    private JTextField timeoutField;
+    private JTextField maxNodesPerRequestField;
+
+    public OPCUAMultipleWriteSamplerGui() {
+        init();
+    }
+
+    private void init() {
+        setLayout(new BorderLayout(0, 5));
+        setBorder(makeBorder());
+
+        JPanel mainPanel = new VerticalPanel();
+        mainPanel.add(makeTitlePanel());
+
+        nodeTablePanel = new OPCUANodeTablePanel("Values to Write",
+                "Namespace Index (ns=)", "Identifier (i=)", "Value to Write (true/false)");
+        nodeFileField = new JTextField(30);
+        timeoutField = new JTextField(10);
+        maxNodesPerRequestField = new JTextField(10);
+
+        JPanel fieldsPanel = new JPanel(new GridLayout(3, 2));
+        fieldsPanel.setBorder(BorderFactory.createTitledBorder("Settings"));
+        fieldsPanel.add(new JLabel("Node List File (CSV, ns,i,value per line):"));
+        fieldsPanel.add(nodeFileField);
+        fieldsPanel.add(new JLabel("Timeout (ms):"));
+        fieldsPanel.add(timeoutField);
+        fieldsPanel.add(new JLabel("Max Nodes per Request (0 = server limit):"));
+        fieldsPanel.add(maxNodesPerRequestField);
+
+        mainPanel.add(nodeTablePanel);
+        mainPanel.add(fieldsPanel);
+        add(mainPanel, BorderLayout.CENTER);
+
+        // Add developer information and hyperlink
+        JLabel developerLabel = new JLabel("<html><i>Developed by Mohammed Hlayel;</i></html>");
+        JLabel githubLink = new JLabel("<html><a href='https://github.com/Sahermatter2024'>Help and Update</a></html>");
+        githubLink.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        githubLink.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                try {
+                    Desktop.getDesktop().browse(new URI("https://github.com/Sahermatter2024"));
+                } catch (Exception ex) {
+                    log.error("Error opening link", ex);
+                }
+            }
+        });
+
+        JPanel footerPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        footerPanel.add(developerLabel);
+        footerPanel.add(githubLink);
+
+        add(footerPanel, BorderLayout.SOUTH);
+    }
+
+    @Override
+    public String getLabelResource() {
+        return "opcuaMultipleWriteSampler_title";
+    }
+
+    @Override
+    public String getStaticLabel() {
+        return "OPC UA Write Multiple";
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        OPCUAMultipleWriteSampler sampler = new OPCUAMultipleWriteSampler();
+        modifyTestElement(sampler);
+        return sampler;
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        super.configureTestElement(element);
+        if (element instanceof OPCUAMultipleWriteSampler) {
+            ((OPCUAMultipleWriteSampler) element).setNodes(nodeTablePanel.getRows());
+        }
+        element.setProperty(OPCUAMultipleWriteSampler.NODE_FILE, nodeFileField.getText());
+        element.setProperty(OPCUAMultipleWriteSampler.TIMEOUT, timeoutField.getText().isEmpty() ? "3000" : timeoutField.getText());
+        element.setProperty(OPCUAMultipleWriteSampler.MAX_NODES_PER_REQUEST, maxNodesPerRequestField.getText().isEmpty() ? "0" : maxNodesPerRequestField.getText());
+    }
+
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+        if (element instanceof OPCUAMultipleWriteSampler) {
+            OPCUAMultipleWriteSampler sampler = (OPCUAMultipleWriteSampler) element;
+            nodeTablePanel.setRows(sampler.getNodes());
+            nodeFileField.setText(sampler.getNodeFile());
+            timeoutField.setText(sampler.getTimeout());
+            maxNodesPerRequestField.setText(sampler.getMaxNodesPerRequest().equals("0") ? "" : sampler.getMaxNodesPerRequest());
+        }
+    }
+
+    @Override
+    public void clearGui() {
+        super.clearGui();
+        nodeTablePanel.clear();
+        nodeFileField.setText("");
+        timeoutField.setText("3000");
+        maxNodesPerRequestField.setText("");
+    }
+}
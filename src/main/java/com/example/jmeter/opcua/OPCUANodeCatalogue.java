@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * A node catalogue written by the Browse sampler: the numeric NodeIds of the variables found in the address
+ * space. The binary format is a 12 byte header (magic {@code OPNC}, version, node count) followed by the
+ * namespace indexes as unsigned 16 bit values and the identifiers as unsigned 32 bit values, so a file of 200,000
+ * nodes is 1.2 MB and is read into an {@link OPCUANodeList} without parsing. A catalogue whose name ends in
+ * {@code .csv} is written as a node list file instead, with one {@code ns,i} line per node.
+ */
+public final class OPCUANodeCatalogue {
+    private static final int MAGIC = 0x4F504E43;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+
+    private OPCUANodeCatalogue() {
+    }
+
+    /**
+     * Writes the catalogue to a temporary file next to it and then moves it into place, so samplers loading the
+     * catalogue at the same time never see a partly written file.
+     */
+    public static void write(String path, List<NodeId> nodeIds) throws IOException {
+        Path file = Paths.get(path);
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (path.toLowerCase().endsWith(".csv")) {
+                writeCsv(temp, nodeIds);
+            } else {
+                writeBinary(temp, nodeIds);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeCsv(Path file, List<NodeId> nodeIds) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# ns,i");
+            writer.newLine();
+            for (NodeId nodeId : nodeIds) {
+                writer.write(nodeId.getNamespaceIndex() + "," + nodeId.getIdentifier());
+                writer.newLine();
+            }
+        }
+    }
+
+    private static void writeBinary(Path file, List<NodeId> nodeIds) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nodeIds.size());
+            for (NodeId nodeId : nodeIds) {
+                out.writeShort(nodeId.getNamespaceIndex().intValue());
+            }
+            for (NodeId nodeId : nodeIds) {
+                out.writeInt(((UInteger) nodeId.getIdentifier()).intValue());
+            }
+        }
+    }
+
+    /**
+     * Returns whether the file starts like a binary catalogue, so it can be told apart from a CSV node list.
+     */
+    public static boolean isCatalogue(String path) throws IOException {
+        try (InputStream in = Files.newInputStream(Paths.get(path))) {
+            byte[] magic = new byte[4];
+            return new DataInputStream(in).read(magic) == 4 && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Reads a binary catalogue into a node list, copying the columns straight into its arrays.
+     */
+    static OPCUANodeList load(String path, long lastModified, long fileSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the header is complete or the file ends
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Not an OPC UA node catalogue: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported node catalogue version " + version + ": " + path);
+            }
+            int count = header.getInt();
+            if (count < 0 || channel.size() != HEADER_SIZE + 6L * count) {
+                throw new IOException("Truncated node catalogue: " + path);
+            }
+
+            ByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, 6L * count);
+            short[] namespaces = new short[count];
+            int[] identifiers = new int[count];
+            body.asShortBuffer().get(namespaces);
+            body.position(2 * count);
+            body.slice().asIntBuffer().get(identifiers);
+            return new OPCUANodeList(namespaces, identifiers, null, lastModified, fileSize);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * The nodes of a node list file (CSV or a catalogue written by the Browse sampler), loaded once per JVM and
+ * shared read-only by all sampler clones that name the same file. Namespace indexes and identifiers are held in
+ * parallel primitive arrays, and equal value texts are stored once. The NodeIds, compiled assertions and encoded
+ * values derived from the list are built on first use and shared as well, so the per-thread cost of a node list
+ * is a reference to it.
+ * <p>
+ * A list is loaded again if its file changes size or modification time.
+ */
+public final class OPCUANodeList {
+    private static final Logger log = LogManager.getLogger(OPCUANodeList.class);
+
+    private static final ConcurrentMap<Path, OPCUANodeList> CACHE = new ConcurrentHashMap<>();
+
+    private final short[] namespaces;
+    private final int[] identifiers;
+    // Third column of a CSV file, null if no row has one
+    private final String[] values;
+    private final long lastModified;
+    private final long fileSize;
+
+    // Derived on first use; each is replaced as a whole, so no locking is needed
+    private volatile List<NodeId> nodeIds;
+    private volatile List<OPCUAAssertion> assertions;
+    private volatile Encoded encoded;
+
+    OPCUANodeList(short[] namespaces, int[] identifiers, String[] values, long lastModified, long fileSize) {
+        this.namespaces = namespaces;
+        this.identifiers = identifiers;
+        this.values = values;
+        this.lastModified = lastModified;
+        this.fileSize = fileSize;
+    }
+
+    /**
+     * Returns the shared node list of a file, loading it if no thread has done so yet or if the file changed.
+     */
+    public static OPCUANodeList get(String path) throws IOException {
+        Path file = Paths.get(path).toAbsolutePath().normalize();
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        long fileSize = Files.size(file);
+        OPCUANodeList loaded = CACHE.get(file);
+        if (loaded != null && loaded.lastModified == lastModified && loaded.fileSize == fileSize) {
+            // Skip the lock of compute() when the list is already loaded and unchanged
+            return loaded;
+        }
+        try {
+            // Threads asking for the same file while it loads wait for that load instead of starting their own
+            return CACHE.compute(file, (key, current) -> {
+                if (current != null && current.lastModified == lastModified && current.fileSize == fileSize) {
+                    return current;
+                }
+                try {
+                    OPCUANodeList list = load(key, lastModified, fileSize);
+                    log.info("Loaded {} nodes from {}", list.size(), key);
+                    return list;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static OPCUANodeList load(Path file, long lastModified, long fileSize) throws IOException {
+        String path = file.toString();
+        if (OPCUANodeCatalogue.isCatalogue(path)) {
+            return OPCUANodeCatalogue.load(path, lastModified, fileSize);
+        }
+
+        List<List<String>> rows = OPCUANodeTable.loadCsv(path, 3);
+        short[] namespaces = new short[rows.size()];
+        int[] identifiers = new int[rows.size()];
+        String[] values = new String[rows.size()];
+        Map<String, String> distinctValues = new HashMap<>();
+        int count = 0;
+        for (List<String> row : rows) {
+            try {
+                int namespace = Integer.parseInt(row.get(0));
+                long identifier = Long.parseLong(row.get(1));
+                if (namespace < 0 || namespace > 0xFFFF || identifier < 0 || identifier > 0xFFFFFFFFL) {
+                    throw new NumberFormatException("out of range");
+                }
+                namespaces[count] = (short) namespace;
+                identifiers[count] = (int) identifier;
+                if (row.size() > 2) {
+                    // Most lists repeat a few values, such as true and false, many times
+                    values[count] = distinctValues.computeIfAbsent(row.get(2), value -> value);
+                }
+                count++;
+            } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+                log.warn("Invalid NodeId format in {}: {}", path, row);
+            }
+        }
+        return new OPCUANodeList(Arrays.copyOf(namespaces, count), Arrays.copyOf(identifiers, count),
+                distinctValues.isEmpty() ? null : Arrays.copyOf(values, count), lastModified, fileSize);
+    }
+
+    public int size() {
+        return identifiers.length;
+    }
+
+    public int getNamespaceIndex(int index) {
+        return Short.toUnsignedInt(namespaces[index]);
+    }
+
+    public long getIdentifier(int index) {
+        return Integer.toUnsignedLong(identifiers[index]);
+    }
+
+    /**
+     * Returns the value column of a row, or {@code null} if it has none.
+     */
+    public String getValue(int index) {
+        return values == null ? null : values[index];
+    }
+
+    public List<NodeId> getNodeIds() {
+        List<NodeId> list = nodeIds;
+        if (list == null) {
+            NodeId[] array = new NodeId[size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = new NodeId(getNamespaceIndex(i), uint(getIdentifier(i)));
+            }
+            list = Collections.unmodifiableList(Arrays.asList(array));
+            nodeIds = list;
+        }
+        return list;
+    }
+
+    /**
+     * Returns the value column as text, with an empty text for rows without a value.
+     */
+    public List<String> getValues() {
+        return new Values();
+    }
+
+    /**
+     * Returns the value column compiled to assertions, with {@code null} for rows without a value. Each distinct
+     * expression is compiled once.
+     *
+     * @throws IllegalArgumentException if a value is not a valid expression
+     */
+    public List<OPCUAAssertion> getAssertions() {
+        List<OPCUAAssertion> list = assertions;
+        if (list == null) {
+            OPCUAAssertion[] array = new OPCUAAssertion[size()];
+            Map<String, OPCUAAssertion> compiled = new HashMap<>();
+            for (int i = 0; i < array.length; i++) {
+                String value = getValue(i);
+                if (value != null && !value.isEmpty()) {
+                    array[i] = compiled.computeIfAbsent(value, OPCUAAssertion::compile);
+                }
+            }
+            list = Collections.unmodifiableList(Arrays.asList(array));
+            assertions = list;
+        }
+        return list;
+    }
+
+    /**
+     * Returns the value column encoded for the given types of the nodes, reusing the previous encoding while the
+     * types are the same.
+     *
+     * @throws IllegalArgumentException if a value is not valid for the type of its node
+     */
+    public List<DataValue> encode(List<OPCUAValueCodec.ValueType> types) {
+        Encoded current = encoded;
+        // Threads on the same session pass the same list; other sessions usually resolve equal types
+        if (current == null || (current.types != types && !current.types.equals(types))) {
+            List<String> texts = getValues();
+            DataValue[] dataValues = new DataValue[types.size()];
+            for (int i = 0; i < dataValues.length; i++) {
+                OPCUAValueCodec.ValueType type = types.get(i);
+                try {
+                    dataValues[i] = new DataValue(type.encode(texts.get(i)));
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException(String.format("Cannot write [%s] to node %s of type %s",
+                            texts.get(i), getNodeIds().get(i), type), ex);
+                }
+            }
+            current = new Encoded(types, Collections.unmodifiableList(Arrays.asList(dataValues)));
+            encoded = current;
+        }
+        return current.values;
+    }
+
+    /**
+     * Returns a read-only view of two lists one after the other, so that a few nodes from a sampler's table can
+     * be put before a shared node list without copying it.
+     */
+    static <T> List<T> concat(List<T> head, List<T> tail) {
+        if (head.isEmpty()) {
+            return tail;
+        }
+        return new Concatenation<>(head, tail);
+    }
+
+    private final class Values extends AbstractList<String> implements RandomAccess {
+        @Override
+        public String get(int index) {
+            String value = getValue(index);
+            return value == null ? "" : value;
+        }
+
+        @Override
+        public int size() {
+            return OPCUANodeList.this.size();
+        }
+    }
+
+    private static final class Concatenation<T> extends AbstractList<T> implements RandomAccess {
+        private final List<T> head;
+        private final List<T> tail;
+
+        private Concatenation(List<T> head, List<T> tail) {
+            this.head = head;
+            this.tail = tail;
+        }
+
+        @Override
+        public T get(int index) {
+            return index < head.size() ? head.get(index) : tail.get(index - head.size());
+        }
+
+        @Override
+        public int size() {
+            return head.size() + tail.size();
+        }
+    }
+
+    private static final class Encoded {
+        private final List<OPCUAValueCodec.ValueType> types;
+        private final List<DataValue> values;
+
+        private Encoded(List<OPCUAValueCodec.ValueType> types, List<DataValue> values) {
+            this.types = types;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.property.CollectionProperty;
+import org.apache.jmeter.testelement.property.JMeterProperty;
+import org.apache.jmeter.testelement.property.PropertyIterator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stores tables of node rows (for example namespace index, identifier and expected value) as a nested
+ * {@link CollectionProperty}, and loads the same rows from CSV files.
+ */
+public final class OPCUANodeTable {
+
+    private OPCUANodeTable() {
+    }
+
+    public static CollectionProperty toProperty(String name, List<List<String>> rows) {
+        return new CollectionProperty(name, rows);
+    }
+
+    public static List<List<String>> getRows(TestElement element, String name) {
+        JMeterProperty property = element.getProperty(name);
+        if (!(property instanceof CollectionProperty)) {
+            return Collections.emptyList();
+        }
+
+        List<List<String>> rows = new ArrayList<>();
+        PropertyIterator rowIterator = ((CollectionProperty) property).iterator();
+        while (rowIterator.hasNext()) {
+            JMeterProperty row = rowIterator.next();
+            List<String> values = new ArrayList<>();
+            if (row instanceof CollectionProperty) {
+                PropertyIterator valueIterator = ((CollectionProperty) row).iterator();
+                while (valueIterator.hasNext()) {
+                    values.add(valueIterator.next().getStringValue());
+                }
+            } else {
+                values.add(row.getStringValue());
+            }
+            rows.add(values);
+        }
+        return rows;
+    }
+
+    /**
+     * Loads rows from a CSV file with one node per line, for example {@code 4,17,true}. Blank lines and lines
+     * starting with {@code #} are skipped. The last column may contain commas.
+     */
+    public static List<List<String>> loadCsv(String path, int columns) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] values = line.split(",", columns);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = values[i].trim();
+                }
+                rows.add(Arrays.asList(values));
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.gui.util.PowerTableModel;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.gui.GuiUtils;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Editable table of node rows with Add/Delete buttons, shared by the samplers that work on node lists.
+ */
+public class OPCUANodeTablePanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    private final String[] columnNames;
+    private final PowerTableModel tableModel;
+    private final JTable table;
+
+    public OPCUANodeTablePanel(String title, String... columnNames) {
+        super(new BorderLayout());
+        this.columnNames = columnNames;
+
+        Class<?>[] columnClasses = new Class<?>[columnNames.length];
+        Arrays.fill(columnClasses, String.class);
+        tableModel = new PowerTableModel(columnNames, columnClasses);
+
+        table = new JTable(tableModel);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        JMeterUtils.applyHiDPI(table);
+
+        JButton addButton = new JButton("Add");
+        addButton.addActionListener(e -> {
+            GuiUtils.stopTableEditing(table);
+            tableModel.addNewRow();
+            tableModel.fireTableDataChanged();
+        });
+
+        JButton deleteButton = new JButton("Delete");
+        deleteButton.addActionListener(e -> {
+            GuiUtils.cancelEditing(table);
+            int[] selectedRows = table.getSelectedRows();
+            for (int i = selectedRows.length - 1; i >= 0; i--) {
+                tableModel.removeRow(selectedRows[i]);
+            }
+            tableModel.fireTableDataChanged();
+        });
+
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(addButton);
+        buttonPanel.add(deleteButton);
+
+        setBorder(BorderFactory.createTitledBorder(title));
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(scrollPane.getPreferredSize().width, 200));
+        add(scrollPane, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+    }
+
+    public List<List<String>> getRows() {
+        GuiUtils.stopTableEditing(table);
+        List<List<String>> rows = new ArrayList<>();
+        for (int i = 0; i < tableModel.getRowCount(); i++) {
+            Object[] rowData = tableModel.getRowData(i);
+            List<String> row = new ArrayList<>(columnNames.length);
+            boolean empty = true;
+            for (Object value : rowData) {
+                String text = value == null ? "" : value.toString().trim();
+                empty &= text.isEmpty();
+                row.add(text);
+            }
+            if (!empty) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    public void setRows(List<List<String>> rows) {
+        tableModel.clearData();
+        for (List<String> row : rows) {
+            Object[] rowData = new Object[columnNames.length];
+            for (int i = 0; i < rowData.length; i++) {
+                rowData[i] = i < row.size() ? row.get(i) : "";
+            }
+            tableModel.addRow(rowData);
+        }
+        tableModel.fireTableDataChanged();
+    }
+
+    public void clear() {
+        GuiUtils.cancelEditing(table);
+        tableModel.clearData();
+        tableModel.fireTableDataChanged();
+    }
+}
@@ -27,14 +27,15 @@ package com.example.jmeter.opcua;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.ThreadListener;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
-import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
 
-public class OPCUAPublishSampler extends AbstractSampler {
+public class OPCUAPublishSampler extends AbstractSampler implements ThreadListener {
     private static final long serialVersionUID = 1L;
     private static final Logger log = LoggingManager.getLoggerForClass();
 
@@ -42,6 +43,14 @@ public class OPCUAPublishSampler extends AbstractSampler {
     public static final String IDENTIFIER = "OPCUAPublishSampler.identifier";
     public static final String VALUE_TO_WRITE = "OPCUAPublishSampler.valueToWrite";
 
+    private transient OPCUACompiledProperty<NodeId> compiledNodeId;
+    private transient OPCUACompiledProperty<String> compiledValueToWrite;
+
+    // Last value encoded for the node's DataType, reused while neither changes
+    private transient String encodedText;
+    private transient OPCUAValueCodec.ValueType encodedType;
+    private transient DataValue encodedValue;
+
     public void setNamespaceIndex(String namespaceIndex) {
         setProperty(NAMESPACE_INDEX, namespaceIndex);
     }
@@ -71,48 +80,90 @@ public class OPCUAPublishSampler extends AbstractSampler {
         SampleResult result = new SampleResult();
         result.setSampleLabel(getName());
 
-        OpcUaClient opcUaClient = null;
-        String namespaceIndex = getNamespaceIndex();
-        String identifier = getIdentifier();
-        String valueToWrite = getValueToWrite();
-
-        // Retrieve the opcUaClient object from the JMeter variable
-        opcUaClient = (OpcUaClient) getThreadContext().getVariables().getObject("opcUaClient");
-
-        if (opcUaClient != null) {
-            try {
-                result.sampleStart(); // Start timing
-
-                // Define the NodeId
-                int nsIndex = Integer.parseInt(namespaceIndex);
-                int id = Integer.parseInt(identifier);
-                NodeId nodeId = new NodeId(nsIndex, id);
-
-                // Define the value to write
-                boolean value = Boolean.parseBoolean(valueToWrite);
-
-                // Create a DataValue object with the value to write
-                DataValue dataValue = new DataValue(new Variant(value));
+        if (compiledNodeId == null) {
+            compile();
+        }
 
-                // Write the value to the node
-                opcUaClient.writeValue(nodeId, dataValue).get();
+        result.sampleStart(); // Start timing
 
-                log.info("Successfully wrote value " + value + " to node " + nodeId);
-                result.setResponseMessage("Successfully wrote value " + value + " to node " + nodeId);
+        // Retrieve the opcUaClient object from the JMeter variable, or borrow one from the session pool
+        try (OPCUASessions.Lease lease = OPCUASessions.acquire(getThreadContext().getVariables())) {
+            if (lease == null) {
+                log.error("OPC UA client connection is not available.");
+                result.setResponseMessage("OPC UA client connection is not available.");
+                result.setSuccessful(false);
+                return result;
+            }
+            // Time spent waiting for a pooled session is reported as connect time
+            result.connectEnd();
+            OpcUaClient opcUaClient = lease.getClient();
+
+            // NodeId and value are built once per thread unless they use variables or functions
+            NodeId nodeId = compiledNodeId.get();
+            DataValue dataValue = encode(opcUaClient, nodeId, compiledValueToWrite.get());
+            Object value = dataValue.getValue().getValue();
+
+            // Write the value to the node
+            StatusCode statusCode = OPCUAMetrics.track(OPCUAMetrics.WRITE, opcUaClient, System.nanoTime(),
+                    opcUaClient.writeValue(nodeId, dataValue), written -> written).get();
+
+            if (statusCode.isGood()) {
+                OPCUAResultVerbosity verbosity = OPCUAResultVerbosity.get();
+                if (verbosity.logs()) {
+                    log.info("Successfully wrote value " + value + " to node " + nodeId);
+                }
+                if (verbosity.describes(true)) {
+                    result.setResponseMessage("Successfully wrote value " + value + " to node " + nodeId);
+                }
                 result.setSuccessful(true);
-            } catch (Exception ex) {
-                log.error("Error writing value to node: " + ex.getMessage(), ex);
-                result.setResponseMessage("Error writing value to node: " + ex.getMessage());
+            } else {
+                log.error("Failed to write value " + value + " to node " + nodeId + ": " + statusCode);
+                result.setResponseMessage("Failed to write value " + value + " to node " + nodeId + ": " + statusCode);
                 result.setSuccessful(false);
-            } finally {
-                result.sampleEnd(); // End timing
             }
-        } else {
-            log.error("OPC UA client connection is not available.");
-            result.setResponseMessage("OPC UA client connection is not available.");
+        } catch (Exception ex) {
+            log.error("Error writing value to node: " + ex.getMessage(), ex);
+            result.setResponseMessage("Error writing value to node: " + ex.getMessage());
             result.setSuccessful(false);
+        } finally {
+            result.sampleEnd(); // End timing
+            OPCUAReconnectMonitor.sampleCompleted(getThreadContext().getVariables(), result);
         }
 
         return result;
     }
+
+    @Override
+    public void threadStarted() {
+        compile();
+    }
+
+    @Override
+    public void threadFinished() {
+        // Nothing to release; the compiled settings are dropped with the sampler clone
+    }
+
+    private void compile() {
+        compiledNodeId = OPCUACompiledProperty.of(this,
+                () -> new NodeId(Integer.parseInt(getNamespaceIndex()), Integer.parseInt(getIdentifier())),
+                NAMESPACE_INDEX, IDENTIFIER);
+        compiledValueToWrite = OPCUACompiledProperty.of(this, this::getValueToWrite, VALUE_TO_WRITE);
+    }
+
+    private DataValue encode(OpcUaClient opcUaClient, NodeId nodeId, String text) throws Exception {
+        // The node's DataType is read once per session; the text is only parsed again when it or the type changes
+        long timeout = opcUaClient.getConfig().getRequestTimeout().longValue();
+        OPCUAValueCodec.ValueType type = OPCUAValueCodec.resolve(opcUaClient, nodeId, timeout);
+        if (type != encodedType || !text.equals(encodedText)) {
+            try {
+                encodedValue = new DataValue(type.encode(text));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException(String.format("Cannot write [%s] to node %s of type %s",
+                        text, nodeId, type), ex);
+            }
+            encodedType = type;
+            encodedText = text;
+        }
+        return encodedValue;
+    }
 }
@@ -27,6 +27,7 @@ package com.example.jmeter.opcua;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.ThreadListener;
 import org.apache.jmeter.threads.JMeterContextService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -35,11 +36,13 @@ import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
 import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
 
-import java.util.concurrent.ExecutionException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class OPCUAReadSingleSampler extends AbstractSampler {
+public class OPCUAReadSingleSampler extends AbstractSampler implements ThreadListener {
     private static final Logger log = LogManager.getLogger(OPCUAReadSingleSampler.class);
 
     public static final String NODE_ID_NAMESPACE_INDEX = "OPCUAReadSingleSampler.nodeIdNamespaceIndex";
@@ -47,6 +50,14 @@ public class OPCUAReadSingleSampler extends AbstractSampler {
     public static final String TIMEOUT = "OPCUAReadSingleSampler.timeout";
     public static final String EXPECTED_VALUE = "OPCUAReadSingleSampler.expectedValue";
     public static final String IGNORE_ASSERTION = "OPCUAReadSingleSampler.ignoreAssertion";
+    public static final String PIPELINED_REQUESTS = "OPCUAReadSingleSampler.pipelinedRequests";
+    public static final String PIPELINE_WINDOW = "OPCUAReadSingleSampler.pipelineWindow";
+
+    private transient OPCUACompiledProperty<NodeId> compiledNodeId;
+    private transient OPCUACompiledProperty<Long> compiledTimeout;
+    private transient OPCUACompiledProperty<OPCUAAssertion> compiledAssertion;
+    private transient OPCUACompiledProperty<Integer> compiledPipelinedRequests;
+    private transient OPCUACompiledProperty<Integer> compiledPipelineWindow;
 
     public void setNodeIdNamespaceIndex(String namespaceIndex) {
         setProperty(NODE_ID_NAMESPACE_INDEX, namespaceIndex);
@@ -89,60 +100,205 @@ public class OPCUAReadSingleSampler extends AbstractSampler {
         return getPropertyAsBoolean(IGNORE_ASSERTION);
     }
 
+    public void setPipelinedRequests(String pipelinedRequests) {
+        setProperty(PIPELINED_REQUESTS, pipelinedRequests);
+    }
+
+    public String getPipelinedRequests() {
+        return getPropertyAsString(PIPELINED_REQUESTS);
+    }
+
+    public void setPipelineWindow(String pipelineWindow) {
+        setProperty(PIPELINE_WINDOW, pipelineWindow);
+    }
+
+    public String getPipelineWindow() {
+        return getPropertyAsString(PIPELINE_WINDOW);
+    }
+
     @Override
     public SampleResult sample(Entry e) {
         SampleResult result = new SampleResult();
         result.setSampleLabel(getName());
         result.sampleStart();
 
-        OpcUaClient opcUaClient = (OpcUaClient) JMeterContextService.getContext().getVariables().getObject("opcUaClient");
-        if (opcUaClient == null) {
-            result.setResponseMessage("OPC UA client connection is not available.");
-            result.setSuccessful(false);
-            result.sampleEnd();
-            return result;
+        if (compiledNodeId == null) {
+            compile();
         }
+        OPCUAResultVerbosity verbosity = OPCUAResultVerbosity.get();
 
-        int namespaceIndex = Integer.parseInt(getNodeIdNamespaceIndex());
-        int identifier = Integer.parseInt(getNodeIdIdentifier());
-        NodeId nodeId = new NodeId(namespaceIndex, identifier);
-        long timeout = Long.parseLong(getTimeout());
-        String expectedValue = getExpectedValue();
-        boolean ignoreAssertion = isIgnoreAssertion();
+        try (OPCUASessions.Lease lease = OPCUASessions.acquire(JMeterContextService.getContext().getVariables())) {
+            if (lease == null) {
+                result.setResponseMessage("OPC UA client connection is not available.");
+                result.setSuccessful(false);
+                return result;
+            }
+            // Time spent waiting for a pooled session is reported as connect time
+            result.connectEnd();
 
-        try {
-            DataValue dataValue = opcUaClient.readValue(0.0, TimestampsToReturn.Both, nodeId).get(timeout, TimeUnit.MILLISECONDS);
+            OpcUaClient opcUaClient = lease.getClient();
+
+            NodeId nodeId = compiledNodeId.get();
+            long timeout = compiledTimeout.get();
+            boolean ignoreAssertion = isIgnoreAssertion();
+            OPCUAAssertion assertion = ignoreAssertion ? null : compiledAssertion.get();
+
+            int pipelinedRequests = compiledPipelinedRequests.get();
+            if (pipelinedRequests > 1) {
+                samplePipelined(result, opcUaClient, nodeId, timeout, assertion,
+                        pipelinedRequests, compiledPipelineWindow.get(), verbosity);
+                return result;
+            }
+
+            DataValue dataValue = OPCUAMetrics.track(OPCUAMetrics.READ, opcUaClient, System.nanoTime(),
+                    opcUaClient.readValue(0.0, TimestampsToReturn.Both, nodeId), DataValue::getStatusCode)
+                    .get(timeout, TimeUnit.MILLISECONDS);
             Object actualValue = dataValue.getValue().getValue();
 
-            log.info("Read value from NodeId {}: {}", nodeId, actualValue);
+            if (verbosity.logs()) {
+                log.info("Read value from NodeId {}: {}", nodeId, actualValue);
+            }
 
-            String responseMessage;
-            if (actualValue == null) {
-                responseMessage = String.format("Failed to read value from NodeId %s: Node not found or value is null", nodeId);
-                result.setSuccessful(false);
-            } else {
-                responseMessage = String.format("Successfully read value from NodeId %s: %s", nodeId, actualValue);
-                if (ignoreAssertion) {
-                    result.setSuccessful(true);
+            // The expected value was compiled once into a typed predicate
+            boolean successful = actualValue != null && (ignoreAssertion || assertion.test(dataValue));
+            result.setSuccessful(successful);
+
+            if (verbosity.describes(successful)) {
+                String responseMessage;
+                if (actualValue == null) {
+                    responseMessage = String.format("Failed to read value from NodeId %s: Node not found or value is null", nodeId);
                 } else {
-                    result.setSuccessful(actualValue.toString().equals(expectedValue));
-                    if (!actualValue.toString().equals(expectedValue)) {
-                        responseMessage += String.format("\nAssertion failed: expected [%s] but found [%s]", expectedValue, actualValue);
+                    responseMessage = String.format("Successfully read value from NodeId %s: %s", nodeId, actualValue);
+                    if (!successful) {
+                        responseMessage += String.format("\nAssertion failed: expected [%s] but found [%s]", assertion, actualValue);
                     }
                 }
+                result.setResponseMessage(responseMessage);
+                result.setResponseData(responseMessage, "UTF-8");
+            } else if (!successful) {
+                result.setResponseMessage(actualValue == null ? "Node not found or value is null" : "Assertion failed");
             }
-
-            result.setResponseMessage(responseMessage);
-            result.setResponseData(responseMessage, "UTF-8");
-        } catch (ExecutionException | InterruptedException | TimeoutException ex) {
+        } catch (Exception ex) {
             log.error("Error reading value from node", ex);
             result.setResponseMessage("Error reading value from node: " + ex.getMessage());
-            result.setResponseData("Exception: " + ex.getMessage(), "UTF-8");
+            if (verbosity.describes(false)) {
+                result.setResponseData("Exception: " + ex.getMessage(), "UTF-8");
+            }
             result.setSuccessful(false);
         } finally {
             result.sampleEnd();
+            OPCUAReconnectMonitor.sampleCompleted(JMeterContextService.getContext().getVariables(), result);
         }
 
         return result;
     }
+
+    @Override
+    public void threadStarted() {
+        compile();
+    }
+
+    @Override
+    public void threadFinished() {
+        // Nothing to release; the compiled settings are dropped with the sampler clone
+    }
+
+    private void compile() {
+        // Resolve constant settings once per thread; settings using variables or functions stay per sample
+        compiledNodeId = OPCUACompiledProperty.of(this,
+                () -> new NodeId(Integer.parseInt(getNodeIdNamespaceIndex()), Integer.parseInt(getNodeIdIdentifier())),
+                NODE_ID_NAMESPACE_INDEX, NODE_ID_IDENTIFIER);
+        compiledTimeout = OPCUACompiledProperty.of(this, () -> Long.parseLong(getTimeout()), TIMEOUT);
+        compiledAssertion = OPCUACompiledProperty.of(this, () -> OPCUAAssertion.compile(getExpectedValue()), EXPECTED_VALUE);
+        compiledPipelinedRequests = OPCUACompiledProperty.of(this, () -> parseInt(getPipelinedRequests(), 1), PIPELINED_REQUESTS);
+        compiledPipelineWindow = OPCUACompiledProperty.of(this, () -> Math.max(1, parseInt(getPipelineWindow(), 1)), PIPELINE_WINDOW);
+    }
+
+    private void samplePipelined(SampleResult result, OpcUaClient opcUaClient, NodeId nodeId, long timeout,
+                                 OPCUAAssertion assertion, int requests, int window, OPCUAResultVerbosity verbosity)
+            throws InterruptedException {
+        long[] latencies = new long[requests];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger mismatched = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(window);
+
+        // Keep up to 'window' Read requests outstanding on the session and complete them asynchronously
+        long start = System.nanoTime();
+        int sent = 0;
+        while (sent < requests && inFlight.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            int index = sent++;
+            long requestStart = System.nanoTime();
+            CompletableFuture<DataValue> read = OPCUAMetrics.track(OPCUAMetrics.READ, opcUaClient, requestStart,
+                    opcUaClient.readValue(0.0, TimestampsToReturn.Both, nodeId), DataValue::getStatusCode);
+            read.whenComplete((dataValue, ex) -> {
+                latencies[index] = System.nanoTime() - requestStart;
+                Object actualValue = ex == null ? dataValue.getValue().getValue() : null;
+                if (actualValue == null) {
+                    failed.incrementAndGet();
+                } else if (assertion != null && !assertion.test(dataValue)) {
+                    mismatched.incrementAndGet();
+                }
+                completed.incrementAndGet();
+                inFlight.release();
+            });
+        }
+
+        // Acquiring every permit means all outstanding requests have completed
+        inFlight.tryAcquire(window, timeout, TimeUnit.MILLISECONDS);
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        int completedCount = completed.get();
+        int errorCount = (requests - completedCount) + failed.get() + mismatched.get();
+        long[] completedLatencies = new long[completedCount];
+        int count = 0;
+        for (int i = 0; i < sent && count < completedCount; i++) {
+            if (latencies[i] > 0) {
+                completedLatencies[count++] = latencies[i];
+            }
+        }
+        Arrays.sort(completedLatencies, 0, count);
+
+        result.setSampleCount(requests);
+        result.setErrorCount(errorCount);
+        result.setSuccessful(errorCount == 0);
+        if (!verbosity.describes(errorCount == 0)) {
+            if (errorCount > 0) {
+                result.setResponseMessage(errorCount + " of " + requests + " Read requests failed");
+            }
+            return;
+        }
+
+        String responseMessage = String.format("Pipelined %d Read requests to NodeId %s with %d in flight%n"
+                        + "Completed: %d, failed: %d, assertion mismatches: %d, timed out: %d%n"
+                        + "Throughput: %.1f requests/s%n"
+                        + "Latency (ms): p50 %.3f, p90 %.3f, p99 %.3f, max %.3f",
+                requests, nodeId, window,
+                completedCount, failed.get(), mismatched.get(), requests - completedCount,
+                completedCount / Math.max(seconds, 1e-9),
+                percentile(completedLatencies, count, 0.50), percentile(completedLatencies, count, 0.90),
+                percentile(completedLatencies, count, 0.99), percentile(completedLatencies, count, 1.0));
+
+        if (verbosity.logs()) {
+            log.info(responseMessage);
+        }
+        result.setResponseMessage(responseMessage);
+        result.setResponseData(responseMessage, "UTF-8");
+    }
+
+    private static double percentile(long[] sortedNanos, int count, double quantile) {
+        if (count == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(quantile * count) - 1;
+        return sortedNanos[Math.max(0, Math.min(count - 1, index))] / 1_000_000.0;
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException | NullPointerException ex) {
+            return defaultValue;
+        }
+    }
 }
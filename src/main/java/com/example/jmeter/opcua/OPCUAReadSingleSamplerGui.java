@@ -45,6 +45,8 @@ public class OPCUAReadSingleSamplerGui extends AbstractSamplerGui {
     private JTextField timeoutField;
     private JTextField expectedValueField;
     private JCheckBox ignoreAssertionCheckBox;
+    private JTextField pipelinedRequestsField;
+    private JTextField pipelineWindowField;
 
     public OPCUAReadSingleSamplerGui() {
         init();
@@ -62,11 +64,13 @@ public class OPCUAReadSingleSamplerGui extends AbstractSamplerGui {
         timeoutField = new JTextField(5);
         expectedValueField = new JTextField(5);
         ignoreAssertionCheckBox = new JCheckBox("Ignore Assertion");
+        pipelinedRequestsField = new JTextField(5);
+        pipelineWindowField = new JTextField(5);
 
         // Add action listener to ignoreAssertionCheckBox
         ignoreAssertionCheckBox.addActionListener(e -> expectedValueField.setEnabled(!ignoreAssertionCheckBox.isSelected()));
 
-        JPanel fieldsPanel = new JPanel(new GridLayout(5, 2));
+        JPanel fieldsPanel = new JPanel(new GridLayout(7, 2));
         fieldsPanel.add(new JLabel("NodeId Namespace Index (ns=):"));
         fieldsPanel.add(namespaceIndexField);
         fieldsPanel.add(new JLabel("NodeId Identifier (i=):"));
@@ -76,6 +80,11 @@ public class OPCUAReadSingleSamplerGui extends AbstractSamplerGui {
         fieldsPanel.add(new JLabel("Expected Value (true/false):"));
         fieldsPanel.add(expectedValueField);
         fieldsPanel.add(ignoreAssertionCheckBox);
+        fieldsPanel.add(new JLabel());
+        fieldsPanel.add(new JLabel("Pipelined Requests per Sample (1 = off):"));
+        fieldsPanel.add(pipelinedRequestsField);
+        fieldsPanel.add(new JLabel("Requests in Flight:"));
+        fieldsPanel.add(pipelineWindowField);
 
         mainPanel.add(fieldsPanel);
         add(mainPanel, BorderLayout.CENTER);
@@ -135,6 +144,8 @@ public class OPCUAReadSingleSamplerGui extends AbstractSamplerGui {
         element.setProperty(OPCUAReadSingleSampler.TIMEOUT, timeoutField.getText().isEmpty() ? "3000" : timeoutField.getText());
         element.setProperty(OPCUAReadSingleSampler.EXPECTED_VALUE, expectedValueField.getText());
         element.setProperty(OPCUAReadSingleSampler.IGNORE_ASSERTION, ignoreAssertionCheckBox.isSelected());
+        element.setProperty(OPCUAReadSingleSampler.PIPELINED_REQUESTS, pipelinedRequestsField.getText().isEmpty() ? "1" : pipelinedRequestsField.getText());
+        element.setProperty(OPCUAReadSingleSampler.PIPELINE_WINDOW, pipelineWindowField.getText().isEmpty() ? "1" : pipelineWindowField.getText());
     }
 
     @Override
@@ -148,6 +159,8 @@ public class OPCUAReadSingleSamplerGui extends AbstractSamplerGui {
             expectedValueField.setText(sampler.getExpectedValue());
             ignoreAssertionCheckBox.setSelected(sampler.isIgnoreAssertion());
             expectedValueField.setEnabled(!ignoreAssertionCheckBox.isSelected());
+            pipelinedRequestsField.setText(sampler.getPipelinedRequests());
+            pipelineWindowField.setText(sampler.getPipelineWindow());
         }
     }
 
@@ -160,5 +173,7 @@ public class OPCUAReadSingleSamplerGui extends AbstractSamplerGui {
         expectedValueField.setText("");
         ignoreAssertionCheckBox.setSelected(false);
         expectedValueField.setEnabled(true);
+        pipelinedRequestsField.setText("1");
+        pipelineWindowField.setText("1");
     }
 }
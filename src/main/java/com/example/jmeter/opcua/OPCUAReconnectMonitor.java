@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.SessionActivityListener;
+import org.eclipse.milo.opcua.sdk.client.api.UaSession;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Measures how a per-thread session recovers from a lost connection. Milo re-opens the secure channel to the
+ * endpoint the client was created with, without discovery, opens a session on it and transfers the subscriptions
+ * of the lost session to it. A recovery that keeps the session id is reported as re-activated, any other as
+ * re-created.
+ * <p>
+ * Each recovery is reported as a sub-result of the next sample of the owning thread, together with the number
+ * of that thread's samples that failed during the outage. Totals across all threads are logged at test end.
+ */
+public final class OPCUAReconnectMonitor implements SessionActivityListener {
+    private static final Logger log = LogManager.getLogger(OPCUAReconnectMonitor.class);
+
+    public static final String MONITOR_VARIABLE = "opcUaReconnectMonitor";
+
+    private static final AtomicInteger DISCONNECTED = new AtomicInteger();
+    private static final AtomicLong RECONNECTS = new AtomicLong();
+    private static final AtomicLong REACTIVATED = new AtomicLong();
+    private static final AtomicLong FAILED_REQUESTS = new AtomicLong();
+    private static final AtomicLong TOTAL_RECONNECT_NANOS = new AtomicLong();
+    private static final LongAccumulator MAX_RECONNECT_NANOS = new LongAccumulator(Math::max, 0);
+
+    private final OpcUaClient client;
+    private final String label;
+
+    // Written by Milo's executor, read by the sampler thread
+    private volatile Outage outage;
+    private final Queue<Outage> recovered = new ConcurrentLinkedQueue<>();
+
+    // Only touched by the sampler thread
+    private int failedRequests;
+
+    private OPCUAReconnectMonitor(OpcUaClient client, String label) {
+        this.client = client;
+        this.label = label;
+    }
+
+    /**
+     * Starts monitoring the current thread's session and stores the monitor in the thread's variables.
+     */
+    public static void attach(JMeterVariables variables, OpcUaClient client, String label) {
+        detach(variables);
+        OPCUAReconnectMonitor monitor = new OPCUAReconnectMonitor(client, label);
+        client.addSessionActivityListener(monitor);
+        variables.putObject(MONITOR_VARIABLE, monitor);
+    }
+
+    /**
+     * Stops monitoring before the session is closed on purpose, so that the disconnect is not taken for an outage.
+     */
+    public static void detach(JMeterVariables variables) {
+        Object monitor = variables.getObject(MONITOR_VARIABLE);
+        if (monitor instanceof OPCUAReconnectMonitor) {
+            ((OPCUAReconnectMonitor) monitor).close();
+            variables.remove(MONITOR_VARIABLE);
+        }
+    }
+
+    /**
+     * Called by samplers once a sample has ended: counts it if it failed during an outage, and adds a sub-result
+     * for every recovery completed since the previous sample.
+     */
+    public static void sampleCompleted(JMeterVariables variables, SampleResult result) {
+        Object monitor = variables.getObject(MONITOR_VARIABLE);
+        if (monitor instanceof OPCUAReconnectMonitor) {
+            ((OPCUAReconnectMonitor) monitor).record(result);
+        }
+    }
+
+    /**
+     * Returns the totals across all monitored sessions since the test started.
+     */
+    public static String summary() {
+        long reconnects = RECONNECTS.get();
+        long reactivated = REACTIVATED.get();
+        return String.format("Reconnects: %d (%d sessions re-activated, %d re-created), average %d ms, max %d ms, "
+                        + "%d requests failed during outages, %d sessions still disconnected",
+                reconnects, reactivated, reconnects - reactivated,
+                reconnects == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(TOTAL_RECONNECT_NANOS.get() / reconnects),
+                TimeUnit.NANOSECONDS.toMillis(MAX_RECONNECT_NANOS.get()), FAILED_REQUESTS.get(), DISCONNECTED.get());
+    }
+
+    /**
+     * Clears the totals before a test starts.
+     */
+    public static void reset() {
+        DISCONNECTED.set(0);
+        RECONNECTS.set(0);
+        REACTIVATED.set(0);
+        FAILED_REQUESTS.set(0);
+        TOTAL_RECONNECT_NANOS.set(0);
+        MAX_RECONNECT_NANOS.reset();
+    }
+
+    @Override
+    public void onSessionInactive(UaSession session) {
+        if (outage == null) {
+            outage = new Outage(session.getSessionId());
+            DISCONNECTED.incrementAndGet();
+            log.warn("OPC UA session {} lost its connection, reconnecting", session.getSessionId());
+        }
+    }
+
+    @Override
+    public void onSessionActive(UaSession session) {
+        Outage current = outage;
+        if (current == null) {
+            // Initial activation, nothing was lost
+            return;
+        }
+        current.end(session.getSessionId());
+        recovered.add(current);
+        outage = null;
+
+        DISCONNECTED.decrementAndGet();
+        RECONNECTS.incrementAndGet();
+        if (current.reactivated) {
+            REACTIVATED.incrementAndGet();
+        }
+        TOTAL_RECONNECT_NANOS.addAndGet(current.elapsedNanos);
+        MAX_RECONNECT_NANOS.accumulate(current.elapsedNanos);
+        log.info("OPC UA session {} {} after {} ms", session.getSessionId(),
+                current.reactivated ? "re-activated" : "re-created", TimeUnit.NANOSECONDS.toMillis(current.elapsedNanos));
+    }
+
+    private void record(SampleResult result) {
+        // A sample belongs to the outage if it started after the connection was lost
+        Outage window = outage != null ? outage : recovered.peek();
+        if (!result.isSuccessful() && window != null && result.getStartTime() >= window.startMillis) {
+            failedRequests++;
+            FAILED_REQUESTS.incrementAndGet();
+        }
+
+        Outage done;
+        while ((done = recovered.poll()) != null) {
+            // Keep the label stable so that recoveries of all threads aggregate under one name
+            result.storeSubResult(done.toSampleResult(label, failedRequests), false);
+            failedRequests = 0;
+        }
+    }
+
+    private void close() {
+        client.removeSessionActivityListener(this);
+        if (outage != null) {
+            outage = null;
+            DISCONNECTED.decrementAndGet();
+        }
+    }
+
+    private static final class Outage {
+        private final long startMillis = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        private final NodeId lostSessionId;
+        private long elapsedNanos;
+        private NodeId sessionId;
+        private boolean reactivated;
+
+        private Outage(NodeId lostSessionId) {
+            this.lostSessionId = lostSessionId;
+        }
+
+        private void end(NodeId sessionId) {
+            this.elapsedNanos = System.nanoTime() - startNanos;
+            this.sessionId = sessionId;
+            this.reactivated = lostSessionId.equals(sessionId);
+        }
+
+        private SampleResult toSampleResult(String label, int failedRequests) {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            String message = String.format("Session %s after %d ms on a new secure channel; %d requests failed during the outage",
+                    reactivated ? "re-activated" : "re-created", elapsedMillis, failedRequests);
+
+            SampleResult result = new SampleResult();
+            result.setSampleLabel(label + " - Reconnect");
+            result.setStampAndTime(startMillis, elapsedMillis);
+            result.setSuccessful(true);
+            result.setResponseMessage(message);
+            result.setResponseData(String.format("%s%nLost session: %s%nActive session: %s%nFailed requests: %d",
+                    message, lostSessionId, sessionId, failedRequests), "UTF-8");
+            return result;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * How much text the samplers put into their results and logs, set for all samplers by the JMeter property
+ * {@value #PROPERTY}. Response messages, response data, per-node assertion results and INFO logs of every
+ * sample are only built at {@link #FULL}.
+ */
+public enum OPCUAResultVerbosity {
+    /**
+     * Response text and INFO logs for every sample; the default.
+     */
+    FULL,
+    /**
+     * Response text for failed samples only, listing only the failed nodes; no INFO logs per sample.
+     */
+    ERRORS,
+    /**
+     * Timing, success and counts only. A failed sample gets a one-line response message.
+     */
+    METRICS;
+
+    public static final String PROPERTY = "opcua.result.verbosity";
+
+    // Read on first use and again at the start of each test, not on every sample
+    private static volatile OPCUAResultVerbosity current;
+
+    public static OPCUAResultVerbosity get() {
+        OPCUAResultVerbosity verbosity = current;
+        if (verbosity == null) {
+            verbosity = read();
+            current = verbosity;
+        }
+        return verbosity;
+    }
+
+    /**
+     * Reads the property again, so that a new test run picks up a changed setting.
+     */
+    public static void reset() {
+        current = read();
+    }
+
+    private static OPCUAResultVerbosity read() {
+        String value = JMeterUtils.getPropDefault(PROPERTY, "full").trim();
+        if (value.equalsIgnoreCase("errors")) {
+            return ERRORS;
+        }
+        if (value.equalsIgnoreCase("metrics")) {
+            return METRICS;
+        }
+        return FULL;
+    }
+
+    /**
+     * Whether a sample, or a node within it, with the given outcome gets its descriptive text.
+     */
+    public boolean describes(boolean successful) {
+        return this == FULL || (this == ERRORS && !successful);
+    }
+
+    /**
+     * Whether samples are logged at INFO.
+     */
+    public boolean logs() {
+        return this == FULL;
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.testelement.TestElement;
+import org.eclipse.milo.opcua.sdk.client.api.config.OpcUaClientConfigBuilder;
+import org.eclipse.milo.opcua.sdk.client.api.identity.AnonymousProvider;
+import org.eclipse.milo.opcua.sdk.client.api.identity.IdentityProvider;
+import org.eclipse.milo.opcua.sdk.client.api.identity.UsernameProvider;
+import org.eclipse.milo.opcua.sdk.client.api.identity.X509IdentityProvider;
+import org.eclipse.milo.opcua.stack.client.security.ClientCertificateValidator;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MessageSecurityMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.UserTokenType;
+import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.UserTokenPolicy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Security settings of a connection: the security policy and message mode of the endpoint to pick, and the
+ * user token to activate the session with. Shared by the samplers that open sessions, which store the settings
+ * under their own property prefix.
+ */
+public final class OPCUASecurity {
+    // Property names, appended to the prefix of the sampler
+    public static final String POLICY = "securityPolicy";
+    public static final String MODE = "securityMode";
+    public static final String USER_TOKEN = "userToken";
+    public static final String USERNAME = "username";
+    public static final String PASSWORD = "password";
+    public static final String KEYSTORE = "keystore";
+    public static final String KEYSTORE_PASSWORD = "keystorePassword";
+    public static final String KEY_ALIAS = "keyAlias";
+    public static final String TRUST_DIR = "trustDir";
+    public static final String ACCEPT_ANY_SERVER = "acceptAnyServer";
+
+    public static final String[] POLICIES = {
+            SecurityPolicy.None.name(), SecurityPolicy.Basic128Rsa15.name(), SecurityPolicy.Basic256.name(),
+            SecurityPolicy.Basic256Sha256.name(), SecurityPolicy.Aes128_Sha256_RsaOaep.name(),
+            SecurityPolicy.Aes256_Sha256_RsaPss.name()};
+    public static final String[] MODES = {
+            MessageSecurityMode.None.name(), MessageSecurityMode.Sign.name(), MessageSecurityMode.SignAndEncrypt.name()};
+    public static final String TOKEN_ANONYMOUS = "Anonymous";
+    public static final String TOKEN_USERNAME = "UserName";
+    public static final String TOKEN_CERTIFICATE = "Certificate";
+    public static final String[] USER_TOKENS = {TOKEN_ANONYMOUS, TOKEN_USERNAME, TOKEN_CERTIFICATE};
+
+    public static final OPCUASecurity NONE = new OPCUASecurity(SecurityPolicy.None, MessageSecurityMode.None,
+            UserTokenType.Anonymous, "", "", "", "", "", "", false);
+
+    private final SecurityPolicy policy;
+    private final MessageSecurityMode mode;
+    private final UserTokenType userToken;
+    private final String username;
+    private final String password;
+    private final String keystore;
+    private final String keystorePassword;
+    private final String keyAlias;
+    private final String trustDir;
+    private final boolean acceptAnyServer;
+
+    private OPCUASecurity(SecurityPolicy policy, MessageSecurityMode mode, UserTokenType userToken, String username,
+                          String password, String keystore, String keystorePassword, String keyAlias, String trustDir,
+                          boolean acceptAnyServer) {
+        this.policy = policy;
+        this.mode = mode;
+        this.userToken = userToken;
+        this.username = username;
+        this.password = password;
+        this.keystore = keystore;
+        this.keystorePassword = keystorePassword;
+        this.keyAlias = keyAlias;
+        this.trustDir = trustDir;
+        this.acceptAnyServer = acceptAnyServer;
+    }
+
+    /**
+     * Reads the settings stored under a property prefix, for example {@code "OPCUAConnectionSampler."}. Missing
+     * settings mean no security and an anonymous user, as before the settings existed.
+     */
+    public static OPCUASecurity fromElement(TestElement element, String prefix) {
+        String policyName = element.getPropertyAsString(prefix + POLICY).trim();
+        String modeName = element.getPropertyAsString(prefix + MODE).trim();
+        String tokenName = element.getPropertyAsString(prefix + USER_TOKEN).trim();
+
+        SecurityPolicy policy = policyName.isEmpty() ? SecurityPolicy.None : valueOf(SecurityPolicy.class, policyName, "security policy");
+        MessageSecurityMode mode = modeName.isEmpty() ? MessageSecurityMode.None : valueOf(MessageSecurityMode.class, modeName, "security mode");
+        if ((policy == SecurityPolicy.None) != (mode == MessageSecurityMode.None)) {
+            throw new IllegalArgumentException("Security policy " + policy.name() + " cannot be used with security mode "
+                    + mode.name() + "; None goes with None, other policies with Sign or SignAndEncrypt");
+        }
+
+        UserTokenType userToken;
+        if (tokenName.isEmpty() || TOKEN_ANONYMOUS.equals(tokenName)) {
+            userToken = UserTokenType.Anonymous;
+        } else if (TOKEN_USERNAME.equals(tokenName)) {
+            userToken = UserTokenType.UserName;
+        } else if (TOKEN_CERTIFICATE.equals(tokenName)) {
+            userToken = UserTokenType.Certificate;
+        } else {
+            throw new IllegalArgumentException("Unknown user token " + tokenName + "; expected one of "
+                    + String.join(", ", USER_TOKENS));
+        }
+
+        // A secure channel to a server whose certificate is not checked only hides who is listening, so accepting
+        // any server has to be chosen explicitly
+        String trustDir = element.getPropertyAsString(prefix + TRUST_DIR).trim();
+        boolean acceptAnyServer = element.getPropertyAsBoolean(prefix + ACCEPT_ANY_SERVER);
+        if (policy != SecurityPolicy.None && trustDir.isEmpty() && !acceptAnyServer) {
+            throw new IllegalArgumentException("Security policy " + policy.name() + " needs a trust list directory, "
+                    + "or accepting any server certificate");
+        }
+
+        return new OPCUASecurity(policy, mode, userToken,
+                element.getPropertyAsString(prefix + USERNAME),
+                element.getPropertyAsString(prefix + PASSWORD),
+                element.getPropertyAsString(prefix + KEYSTORE).trim(),
+                element.getPropertyAsString(prefix + KEYSTORE_PASSWORD),
+                element.getPropertyAsString(prefix + KEY_ALIAS).trim(),
+                trustDir, acceptAnyServer);
+    }
+
+    public SecurityPolicy getPolicy() {
+        return policy;
+    }
+
+    public MessageSecurityMode getMode() {
+        return mode;
+    }
+
+    public UserTokenType getUserToken() {
+        return userToken;
+    }
+
+    /**
+     * True when sessions need the client certificate: for a signed channel or a certificate user token.
+     */
+    public boolean needsKeyMaterial() {
+        return policy != SecurityPolicy.None || userToken == UserTokenType.Certificate;
+    }
+
+    /**
+     * Picks the endpoint with the configured policy and mode that accepts the configured user token.
+     *
+     * @throws IllegalStateException listing what the server offers when no endpoint matches
+     */
+    public EndpointDescription select(List<EndpointDescription> endpoints) {
+        for (EndpointDescription endpoint : endpoints) {
+            if (policy.getUri().equals(endpoint.getSecurityPolicyUri()) && mode == endpoint.getSecurityMode()
+                    && acceptsUserToken(endpoint)) {
+                return endpoint;
+            }
+        }
+
+        List<String> offered = new ArrayList<>(endpoints.size());
+        for (EndpointDescription endpoint : endpoints) {
+            List<String> tokens = new ArrayList<>();
+            UserTokenPolicy[] tokenPolicies = endpoint.getUserIdentityTokens();
+            if (tokenPolicies != null) {
+                for (UserTokenPolicy tokenPolicy : tokenPolicies) {
+                    tokens.add(tokenPolicy.getTokenType().name());
+                }
+            }
+            offered.add(SecurityPolicy.fromUriSafe(endpoint.getSecurityPolicyUri()).map(SecurityPolicy::name)
+                    .orElse(endpoint.getSecurityPolicyUri()) + "/" + endpoint.getSecurityMode() + " " + tokens);
+        }
+        throw new IllegalStateException("No endpoint with " + this + "; the server offers " + offered);
+    }
+
+    /**
+     * Sets the client certificate, key pair, server trust list and user identity on a client configuration.
+     */
+    public void configure(OpcUaClientConfigBuilder builder) throws IOException {
+        // Validates the server certificate of the channel and of an encrypted user name token
+        ClientCertificateValidator validator = OPCUAKeyMaterial.getValidator(trustDir, acceptAnyServer);
+        builder.setCertificateValidator(validator);
+
+        OPCUAKeyMaterial keyMaterial = null;
+        if (needsKeyMaterial()) {
+            keyMaterial = OPCUAKeyMaterial.get(keystore, keystorePassword, keyAlias);
+            builder.setKeyPair(keyMaterial.getKeyPair())
+                    .setCertificate(keyMaterial.getCertificate())
+                    .setCertificateChain(keyMaterial.getCertificateChain())
+                    .setApplicationUri(keyMaterial.getApplicationUri());
+        }
+
+        IdentityProvider identityProvider;
+        if (userToken == UserTokenType.UserName) {
+            identityProvider = new UsernameProvider(username, password, validator);
+        } else if (userToken == UserTokenType.Certificate) {
+            identityProvider = new X509IdentityProvider(keyMaterial.getCertificate(), keyMaterial.getKeyPair().getPrivate());
+        } else {
+            identityProvider = new AnonymousProvider();
+        }
+        builder.setIdentityProvider(identityProvider);
+    }
+
+    @Override
+    public String toString() {
+        return policy.name() + "/" + mode.name() + " and user token " + userToken.name();
+    }
+
+    private boolean acceptsUserToken(EndpointDescription endpoint) {
+        UserTokenPolicy[] tokenPolicies = endpoint.getUserIdentityTokens();
+        if (tokenPolicies != null) {
+            for (UserTokenPolicy tokenPolicy : tokenPolicies) {
+                if (tokenPolicy.getTokenType() == userToken) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static <E extends Enum<E>> E valueOf(Class<E> type, String name, String setting) {
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown " + setting + " " + name);
+        }
+    }
+}
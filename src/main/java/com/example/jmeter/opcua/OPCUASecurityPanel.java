@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.testelement.TestElement;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Security policy, message mode and user token fields, shared by the samplers that open sessions. The settings
+ * are stored under the property prefix of the sampler, see {@link OPCUASecurity}.
+ */
+public class OPCUASecurityPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    private final JComboBox<String> policyDropdown = new JComboBox<>(OPCUASecurity.POLICIES);
+    private final JComboBox<String> modeDropdown = new JComboBox<>(OPCUASecurity.MODES);
+    private final JComboBox<String> userTokenDropdown = new JComboBox<>(OPCUASecurity.USER_TOKENS);
+    private final JTextField usernameField = new JTextField(20);
+    private final JPasswordField passwordField = new JPasswordField(20);
+    private final JTextField keystoreField = new JTextField(30);
+    private final JPasswordField keystorePasswordField = new JPasswordField(20);
+    private final JTextField keyAliasField = new JTextField(20);
+    private final JTextField trustDirField = new JTextField(30);
+    private final JCheckBox acceptAnyServerCheckbox = new JCheckBox();
+
+    public OPCUASecurityPanel() {
+        super(new GridLayout(10, 2));
+        setBorder(BorderFactory.createTitledBorder("Security"));
+        add(new JLabel("Security Policy:"));
+        add(policyDropdown);
+        add(new JLabel("Message Security Mode:"));
+        add(modeDropdown);
+        add(new JLabel("User Token:"));
+        add(userTokenDropdown);
+        add(new JLabel("User Name:"));
+        add(usernameField);
+        add(new JLabel("Password:"));
+        add(passwordField);
+        add(new JLabel("Client Keystore (PKCS12, empty = generated):"));
+        add(keystoreField);
+        add(new JLabel("Keystore Password:"));
+        add(keystorePasswordField);
+        add(new JLabel("Key Alias (empty = first key):"));
+        add(keyAliasField);
+        add(new JLabel("Trust List Directory:"));
+        add(trustDirField);
+        add(new JLabel("Accept Any Server Certificate (no trust list):"));
+        add(acceptAnyServerCheckbox);
+    }
+
+    public void modifyTestElement(TestElement element, String prefix) {
+        element.setProperty(prefix + OPCUASecurity.POLICY, (String) policyDropdown.getSelectedItem());
+        element.setProperty(prefix + OPCUASecurity.MODE, (String) modeDropdown.getSelectedItem());
+        element.setProperty(prefix + OPCUASecurity.USER_TOKEN, (String) userTokenDropdown.getSelectedItem());
+        element.setProperty(prefix + OPCUASecurity.USERNAME, usernameField.getText());
+        element.setProperty(prefix + OPCUASecurity.PASSWORD, new String(passwordField.getPassword()));
+        element.setProperty(prefix + OPCUASecurity.KEYSTORE, keystoreField.getText());
+        element.setProperty(prefix + OPCUASecurity.KEYSTORE_PASSWORD, new String(keystorePasswordField.getPassword()));
+        element.setProperty(prefix + OPCUASecurity.KEY_ALIAS, keyAliasField.getText());
+        element.setProperty(prefix + OPCUASecurity.TRUST_DIR, trustDirField.getText());
+        element.setProperty(prefix + OPCUASecurity.ACCEPT_ANY_SERVER, acceptAnyServerCheckbox.isSelected());
+    }
+
+    public void configure(TestElement element, String prefix) {
+        select(policyDropdown, element.getPropertyAsString(prefix + OPCUASecurity.POLICY));
+        select(modeDropdown, element.getPropertyAsString(prefix + OPCUASecurity.MODE));
+        select(userTokenDropdown, element.getPropertyAsString(prefix + OPCUASecurity.USER_TOKEN));
+        usernameField.setText(element.getPropertyAsString(prefix + OPCUASecurity.USERNAME));
+        passwordField.setText(element.getPropertyAsString(prefix + OPCUASecurity.PASSWORD));
+        keystoreField.setText(element.getPropertyAsString(prefix + OPCUASecurity.KEYSTORE));
+        keystorePasswordField.setText(element.getPropertyAsString(prefix + OPCUASecurity.KEYSTORE_PASSWORD));
+        keyAliasField.setText(element.getPropertyAsString(prefix + OPCUASecurity.KEY_ALIAS));
+        trustDirField.setText(element.getPropertyAsString(prefix + OPCUASecurity.TRUST_DIR));
+        acceptAnyServerCheckbox.setSelected(element.getPropertyAsBoolean(prefix + OPCUASecurity.ACCEPT_ANY_SERVER));
+    }
+
+    public void clear() {
+        policyDropdown.setSelectedIndex(0);
+        modeDropdown.setSelectedIndex(0);
+        userTokenDropdown.setSelectedIndex(0);
+        usernameField.setText("");
+        passwordField.setText("");
+        keystoreField.setText("");
+        keystorePasswordField.setText("");
+        keyAliasField.setText("");
+        trustDirField.setText("");
+        acceptAnyServerCheckbox.setSelected(false);
+    }
+
+    private static void select(JComboBox<String> dropdown, String value) {
+        // Test plans saved before the setting existed have no value, which means the first choice
+        if (value.isEmpty()) {
+            dropdown.setSelectedIndex(0);
+        } else {
+            dropdown.setSelectedItem(value);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operation limits of the server (Server.ServerCapabilities.OperationLimits), read once per session and cached
+ * for as long as the client is reachable. A limit of 0 means the server does not restrict the operation.
+ */
+public final class OPCUAServerLimits {
+    private static final Map<OpcUaClient, OPCUAServerLimits> CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final List<NodeId> LIMIT_NODES = Arrays.asList(
+            Identifiers.Server_ServerCapabilities_OperationLimits_MaxNodesPerRead,
+            Identifiers.Server_ServerCapabilities_OperationLimits_MaxNodesPerWrite,
+            Identifiers.Server_ServerCapabilities_OperationLimits_MaxNodesPerMethodCall,
+            Identifiers.Server_ServerCapabilities_OperationLimits_MaxMonitoredItemsPerCall,
+            Identifiers.Server_ServerCapabilities_OperationLimits_MaxNodesPerBrowse,
+            Identifiers.Server_ServerCapabilities_OperationLimits_MaxNodesPerHistoryReadData
+    );
+
+    private final int maxNodesPerRead;
+    private final int maxNodesPerWrite;
+    private final int maxNodesPerMethodCall;
+    private final int maxMonitoredItemsPerCall;
+    private final int maxNodesPerBrowse;
+    private final int maxNodesPerHistoryReadData;
+
+    private OPCUAServerLimits(int maxNodesPerRead, int maxNodesPerWrite, int maxNodesPerMethodCall,
+                              int maxMonitoredItemsPerCall, int maxNodesPerBrowse, int maxNodesPerHistoryReadData) {
+        this.maxNodesPerRead = maxNodesPerRead;
+        this.maxNodesPerWrite = maxNodesPerWrite;
+        this.maxNodesPerMethodCall = maxNodesPerMethodCall;
+        this.maxMonitoredItemsPerCall = maxMonitoredItemsPerCall;
+        this.maxNodesPerBrowse = maxNodesPerBrowse;
+        this.maxNodesPerHistoryReadData = maxNodesPerHistoryReadData;
+    }
+
+    public static OPCUAServerLimits get(OpcUaClient client, long timeout) throws Exception {
+        OPCUAServerLimits limits = CACHE.get(client);
+        if (limits == null) {
+            List<DataValue> values = client.readValues(0.0, TimestampsToReturn.Neither, LIMIT_NODES)
+                    .get(timeout, TimeUnit.MILLISECONDS);
+            limits = new OPCUAServerLimits(toInt(values.get(0)), toInt(values.get(1)), toInt(values.get(2)),
+                    toInt(values.get(3)), toInt(values.get(4)), toInt(values.get(5)));
+            CACHE.put(client, limits);
+        }
+        return limits;
+    }
+
+    /**
+     * Returns the number of nodes to send per request: the smaller of the server limit and the configured
+     * client limit, ignoring limits that are 0.
+     */
+    public static int chunkSize(int serverLimit, int clientLimit, int nodeCount) {
+        int size = nodeCount;
+        if (serverLimit > 0) {
+            size = Math.min(size, serverLimit);
+        }
+        if (clientLimit > 0) {
+            size = Math.min(size, clientLimit);
+        }
+        return Math.max(size, 1);
+    }
+
+    public int getMaxNodesPerRead() {
+        return maxNodesPerRead;
+    }
+
+    public int getMaxNodesPerWrite() {
+        return maxNodesPerWrite;
+    }
+
+    public int getMaxNodesPerMethodCall() {
+        return maxNodesPerMethodCall;
+    }
+
+    public int getMaxMonitoredItemsPerCall() {
+        return maxMonitoredItemsPerCall;
+    }
+
+    public int getMaxNodesPerBrowse() {
+        return maxNodesPerBrowse;
+    }
+
+    public int getMaxNodesPerHistoryReadData() {
+        return maxNodesPerHistoryReadData;
+    }
+
+    private static int toInt(DataValue dataValue) {
+        // Servers that do not expose a limit return a bad status, which means no limit
+        Object value = dataValue.getValue().getValue();
+        if (dataValue.getStatusCode() != null && dataValue.getStatusCode().isGood() && value instanceof Number) {
+            long limit = ((Number) value).longValue();
+            return limit > Integer.MAX_VALUE ? 0 : (int) limit;
+        }
+        return 0;
+    }
+}
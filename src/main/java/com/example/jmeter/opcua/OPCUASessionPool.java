@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JVM-wide pool of OPC UA sessions per endpoint URL. JMeter threads borrow a session for the duration of a
+ * sample and return it afterwards, so many threads share a bounded number of sessions.
+ */
+public final class OPCUASessionPool {
+    private static final Logger log = LogManager.getLogger(OPCUASessionPool.class);
+
+    private static final ConcurrentMap<String, OPCUASessionPool> POOLS = new ConcurrentHashMap<>();
+
+    private final String endpointUrl;
+    private final int maxSessions;
+    private final long idleTimeout;
+    private final long borrowTimeout;
+    private final Callable<OpcUaClient> factory;
+
+    private final Semaphore permits;
+    private final Deque<IdleSession> idleSessions = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger openSessions = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private volatile boolean closed;
+
+    private OPCUASessionPool(String endpointUrl, int maxSessions, long idleTimeout, long borrowTimeout,
+                             Callable<OpcUaClient> factory) {
+        this.endpointUrl = endpointUrl;
+        this.maxSessions = maxSessions;
+        this.idleTimeout = idleTimeout;
+        this.borrowTimeout = borrowTimeout;
+        this.factory = factory;
+        this.permits = new Semaphore(maxSessions, true);
+    }
+
+    /**
+     * Returns the pool for the endpoint, creating it on first use. The settings of the first caller win;
+     * later callers with different settings share the existing pool.
+     */
+    public static OPCUASessionPool getOrCreate(String endpointUrl, int maxSessions, long idleTimeout, long borrowTimeout,
+                                               Callable<OpcUaClient> factory) {
+        return POOLS.computeIfAbsent(endpointUrl, url -> {
+            log.info("Creating OPC UA session pool for {} with {} sessions", url, maxSessions);
+            return new OPCUASessionPool(url, maxSessions, idleTimeout, borrowTimeout, factory);
+        });
+    }
+
+    public static void closeAll() {
+        for (OPCUASessionPool pool : POOLS.values()) {
+            pool.close();
+        }
+        POOLS.clear();
+    }
+
+    public OpcUaClient borrow() throws Exception {
+        if (closed) {
+            throw new IllegalStateException("OPC UA session pool for " + endpointUrl + " is closed.");
+        }
+
+        long waitStart = System.nanoTime();
+        if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+            throw new TimeoutException("Timed out after " + borrowTimeout + " ms waiting for a pooled OPC UA session.");
+        }
+        totalWaitNanos.add(System.nanoTime() - waitStart);
+        borrowCount.increment();
+
+        evictIdleSessions();
+
+        IdleSession idleSession = idleSessions.pollFirst();
+        if (idleSession != null) {
+            return idleSession.client;
+        }
+
+        try {
+            OpcUaClient client = factory.call();
+            openSessions.incrementAndGet();
+            return client;
+        } catch (Exception ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    public void release(OpcUaClient client) {
+        if (closed) {
+            disconnect(client);
+        } else if (!isConnected(client)) {
+            // Don't hand a session that lost its connection to the next borrower; a new one opens on demand
+            log.info("Dropping disconnected OPC UA session for {}", endpointUrl);
+            disconnect(client);
+        } else {
+            idleSessions.offerFirst(new IdleSession(client, System.currentTimeMillis()));
+        }
+        permits.release();
+    }
+
+    public String getEndpointUrl() {
+        return endpointUrl;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public int getOpenSessions() {
+        return openSessions.get();
+    }
+
+    public int getIdleSessions() {
+        return idleSessions.size();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.sum();
+        return borrows == 0 ? 0.0 : totalWaitNanos.sum() / (double) borrows / 1_000_000.0;
+    }
+
+    private void evictIdleSessions() {
+        if (idleTimeout <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - idleTimeout;
+        // The deque is ordered from most to least recently used, so expired sessions sit at the tail
+        Iterator<IdleSession> iterator = idleSessions.descendingIterator();
+        while (iterator.hasNext()) {
+            IdleSession idleSession = iterator.next();
+            if (idleSession.lastUsed >= cutoff) {
+                break;
+            }
+            if (idleSessions.removeLastOccurrence(idleSession)) {
+                log.info("Evicting idle OPC UA session for {}", endpointUrl);
+                disconnect(idleSession.client);
+            }
+        }
+    }
+
+    private static boolean isConnected(OpcUaClient client) {
+        // The session future is only complete while the client holds an active session
+        CompletableFuture<?> session = client.getSession();
+        return session.isDone() && !session.isCompletedExceptionally();
+    }
+
+    private void close() {
+        closed = true;
+        IdleSession idleSession;
+        while ((idleSession = idleSessions.pollFirst()) != null) {
+            disconnect(idleSession.client);
+        }
+        log.info("Closed OPC UA session pool for {} after {} borrows (average wait {} ms)",
+                endpointUrl, getBorrowCount(), String.format("%.3f", getAverageWaitMillis()));
+    }
+
+    private void disconnect(OpcUaClient client) {
+        openSessions.decrementAndGet();
+        client.disconnect().whenComplete((c, ex) -> {
+            if (ex != null) {
+                log.error("Error disconnecting pooled OPC UA session: " + ex.getMessage(), ex);
+            }
+        });
+    }
+
+    private static final class IdleSession {
+        private final OpcUaClient client;
+        private final long lastUsed;
+
+        private IdleSession(OpcUaClient client, long lastUsed) {
+            this.client = client;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.threads.JMeterVariables;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+
+/**
+ * Resolves the OPC UA session a sampler should use: either the thread's own client stored by the connection
+ * sampler, or a session borrowed from the shared pool.
+ */
+public final class OPCUASessions {
+    public static final String CLIENT_VARIABLE = "opcUaClient";
+    public static final String POOL_VARIABLE = "opcUaSessionPool";
+
+    private OPCUASessions() {
+    }
+
+    /**
+     * Returns a lease for the current thread's session, or {@code null} if no connection sampler ran before.
+     */
+    public static Lease acquire(JMeterVariables variables) throws Exception {
+        Object pool = variables.getObject(POOL_VARIABLE);
+        if (pool instanceof OPCUASessionPool) {
+            OPCUASessionPool sessionPool = (OPCUASessionPool) pool;
+            return new Lease(sessionPool.borrow(), sessionPool);
+        }
+
+        Object client = variables.getObject(CLIENT_VARIABLE);
+        if (client instanceof OpcUaClient) {
+            return new Lease((OpcUaClient) client, null);
+        }
+        return null;
+    }
+
+    public static final class Lease implements AutoCloseable {
+        private final OpcUaClient client;
+        private final OPCUASessionPool pool;
+
+        private Lease(OpcUaClient client, OPCUASessionPool pool) {
+            this.client = client;
+            this.pool = pool;
+        }
+
+        public OpcUaClient getClient() {
+            return client;
+        }
+
+        public boolean isPooled() {
+            return pool != null;
+        }
+
+        @Override
+        public void close() {
+            if (pool != null) {
+                pool.release(client);
+            }
+        }
+    }
+}
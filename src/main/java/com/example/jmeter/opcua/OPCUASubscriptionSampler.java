@@ -0,0 +1,408 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscriptionManager;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MonitoringMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+public class OPCUASubscriptionSampler extends AbstractSampler implements ThreadListener {
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LogManager.getLogger(OPCUASubscriptionSampler.class);
+
+    public static final String NODES = "OPCUASubscriptionSampler.nodes";
+    public static final String NODE_FILE = "OPCUASubscriptionSampler.nodeFile";
+    public static final String PUBLISHING_INTERVAL = "OPCUASubscriptionSampler.publishingInterval";
+    public static final String SAMPLING_INTERVAL = "OPCUASubscriptionSampler.samplingInterval";
+    public static final String QUEUE_SIZE = "OPCUASubscriptionSampler.queueSize";
+    public static final String DURATION = "OPCUASubscriptionSampler.duration";
+    public static final String TIMEOUT = "OPCUASubscriptionSampler.timeout";
+
+    private transient OPCUACompiledProperty<List<NodeId>> compiledNodeIds;
+    private transient OPCUACompiledProperty<Double> compiledPublishingInterval;
+    private transient OPCUACompiledProperty<Double> compiledSamplingInterval;
+    private transient OPCUACompiledProperty<Long> compiledQueueSize;
+    private transient OPCUACompiledProperty<Long> compiledDuration;
+    private transient OPCUACompiledProperty<Long> compiledTimeout;
+
+    public List<List<String>> getNodes() {
+        return OPCUANodeTable.getRows(this, NODES);
+    }
+
+    public void setNodes(List<List<String>> nodes) {
+        setProperty(OPCUANodeTable.toProperty(NODES, nodes));
+    }
+
+    public void setNodeFile(String nodeFile) {
+        setProperty(NODE_FILE, nodeFile);
+    }
+
+    public String getNodeFile() {
+        return getPropertyAsString(NODE_FILE);
+    }
+
+    public void setPublishingInterval(String publishingInterval) {
+        setProperty(PUBLISHING_INTERVAL, publishingInterval);
+    }
+
+    public String getPublishingInterval() {
+        return getPropertyAsString(PUBLISHING_INTERVAL);
+    }
+
+    public void setSamplingInterval(String samplingInterval) {
+        setProperty(SAMPLING_INTERVAL, samplingInterval);
+    }
+
+    public String getSamplingInterval() {
+        return getPropertyAsString(SAMPLING_INTERVAL);
+    }
+
+    public void setQueueSize(String queueSize) {
+        setProperty(QUEUE_SIZE, queueSize);
+    }
+
+    public String getQueueSize() {
+        return getPropertyAsString(QUEUE_SIZE);
+    }
+
+    public void setDuration(String duration) {
+        setProperty(DURATION, duration);
+    }
+
+    public String getDuration() {
+        return getPropertyAsString(DURATION);
+    }
+
+    public void setTimeout(String timeout) {
+        setProperty(TIMEOUT, timeout);
+    }
+
+    public String getTimeout() {
+        return getPropertyAsString(TIMEOUT);
+    }
+
+    @Override
+    public SampleResult sample(Entry e) {
+        SampleResult result = new SampleResult();
+        result.setSampleLabel(getName());
+
+        if (compiledTimeout == null) {
+            compile();
+        }
+
+        result.sampleStart(); // Start timing
+
+        try (OPCUASessions.Lease lease = OPCUASessions.acquire(JMeterContextService.getContext().getVariables())) {
+            if (lease == null) {
+                log.error("OPC UA client connection is not available.");
+                result.setResponseMessage("OPC UA client connection is not available.");
+                result.setSuccessful(false);
+                return result;
+            }
+            // Time spent waiting for a pooled session is reported as connect time
+            result.connectEnd();
+            OpcUaClient opcUaClient = lease.getClient();
+
+            double publishingInterval = compiledPublishingInterval.get();
+            double samplingInterval = compiledSamplingInterval.get();
+            long queueSize = compiledQueueSize.get();
+            long duration = compiledDuration.get();
+            long timeout = compiledTimeout.get();
+
+            List<NodeId> nodeIds = compiledNodeIds.get();
+            if (nodeIds.isEmpty()) {
+                throw new IllegalStateException("No nodes configured.");
+            }
+
+            SubscriptionStatistics statistics = new SubscriptionStatistics();
+            UaSubscription subscription = opcUaClient.getSubscriptionManager()
+                    .createSubscription(publishingInterval)
+                    .get(timeout, TimeUnit.MILLISECONDS);
+            try {
+                opcUaClient.getSubscriptionManager().addSubscriptionListener(statistics.publishFailureListener);
+                subscription.addNotificationListener(statistics);
+
+                int createdItems = createMonitoredItems(opcUaClient, subscription, nodeIds, samplingInterval, queueSize, timeout);
+
+                // Observe notifications for the configured duration
+                statistics.start();
+                Thread.sleep(duration);
+                statistics.stop();
+
+                boolean successful = createdItems == nodeIds.size() && statistics.publishFailures.sum() == 0;
+                OPCUAResultVerbosity verbosity = OPCUAResultVerbosity.get();
+                if (verbosity.describes(successful)) {
+                    String responseMessage = statistics.format(nodeIds.size(), createdItems, subscription.getRevisedPublishingInterval());
+                    if (verbosity.logs()) {
+                        log.info(responseMessage);
+                    }
+                    result.setResponseMessage(responseMessage);
+                    result.setResponseData(responseMessage, "UTF-8");
+                } else if (!successful) {
+                    result.setResponseMessage(String.format("Monitored items: %d of %d created, publish failures: %d",
+                            createdItems, nodeIds.size(), statistics.publishFailures.sum()));
+                }
+                result.setSuccessful(successful);
+            } finally {
+                opcUaClient.getSubscriptionManager().removeSubscriptionListener(statistics.publishFailureListener);
+                opcUaClient.getSubscriptionManager()
+                        .deleteSubscription(subscription.getSubscriptionId())
+                        .get(timeout, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.setResponseMessage("Subscription sampling interrupted.");
+            result.setSuccessful(false);
+        } catch (Exception ex) {
+            log.error("Error sampling OPC UA subscription: " + ex.getMessage(), ex);
+            result.setResponseMessage("Error sampling OPC UA subscription: " + ex.getMessage());
+            if (OPCUAResultVerbosity.get().describes(false)) {
+                result.setResponseData("Exception: " + ex.getMessage(), "UTF-8");
+            }
+            result.setSuccessful(false);
+        } finally {
+            result.sampleEnd(); // End timing
+            OPCUAReconnectMonitor.sampleCompleted(JMeterContextService.getContext().getVariables(), result);
+        }
+
+        return result;
+    }
+
+    @Override
+    public void threadStarted() {
+        compile();
+    }
+
+    @Override
+    public void threadFinished() {
+        // Nothing to release; the compiled settings are dropped with the sampler clone
+    }
+
+    private void compile() {
+        compiledNodeIds = OPCUACompiledProperty.of(this, this::collectNodeIds, NODES, NODE_FILE);
+        compiledPublishingInterval = OPCUACompiledProperty.of(this, () -> parseDouble(getPublishingInterval(), 1000.0), PUBLISHING_INTERVAL);
+        compiledSamplingInterval = OPCUACompiledProperty.of(this, () -> parseDouble(getSamplingInterval(), 500.0), SAMPLING_INTERVAL);
+        compiledQueueSize = OPCUACompiledProperty.of(this, () -> parseLong(getQueueSize(), 10), QUEUE_SIZE);
+        compiledDuration = OPCUACompiledProperty.of(this, () -> parseLong(getDuration(), 10000), DURATION);
+        compiledTimeout = OPCUACompiledProperty.of(this, () -> parseLong(getTimeout(), 3000), TIMEOUT);
+    }
+
+    private int createMonitoredItems(OpcUaClient opcUaClient, UaSubscription subscription, List<NodeId> nodeIds,
+                                     double samplingInterval, long queueSize, long timeout) throws Exception {
+        OPCUAServerLimits limits = OPCUAServerLimits.get(opcUaClient, timeout);
+        int chunkSize = OPCUAServerLimits.chunkSize(limits.getMaxMonitoredItemsPerCall(), 0, nodeIds.size());
+
+        int createdItems = 0;
+        for (int from = 0; from < nodeIds.size(); from += chunkSize) {
+            List<MonitoredItemCreateRequest> requests = new ArrayList<>();
+            for (NodeId nodeId : nodeIds.subList(from, Math.min(nodeIds.size(), from + chunkSize))) {
+                ReadValueId readValueId = new ReadValueId(nodeId, AttributeId.Value.uid(), null, QualifiedName.NULL_VALUE);
+                MonitoringParameters parameters = new MonitoringParameters(
+                        subscription.nextClientHandle(), samplingInterval, null, uint(queueSize), true);
+                requests.add(new MonitoredItemCreateRequest(readValueId, MonitoringMode.Reporting, parameters));
+            }
+
+            List<UaMonitoredItem> items = subscription.createMonitoredItems(TimestampsToReturn.Both, requests)
+                    .get(timeout, TimeUnit.MILLISECONDS);
+            for (UaMonitoredItem item : items) {
+                if (item.getStatusCode().isGood()) {
+                    createdItems++;
+                } else {
+                    log.warn("Failed to create monitored item for NodeId {}: {}", item.getReadValueId().getNodeId(), item.getStatusCode());
+                }
+            }
+        }
+        return createdItems;
+    }
+
+    private List<NodeId> collectNodeIds() throws IOException {
+        List<List<String>> rows = getNodes();
+        List<NodeId> nodeIds = new ArrayList<>(rows.size());
+        for (List<String> row : rows) {
+            try {
+                nodeIds.add(new NodeId(Integer.parseInt(row.get(0)), Integer.parseInt(row.get(1))));
+            } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+                log.warn("Invalid NodeId format: " + row);
+            }
+        }
+
+        String nodeFile = getNodeFile();
+        if (nodeFile != null && !nodeFile.isEmpty()) {
+            // The file is loaded once per JVM and its NodeIds are shared by all threads
+            return OPCUANodeList.concat(nodeIds, OPCUANodeList.get(nodeFile).getNodeIds());
+        }
+        return nodeIds;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException | NullPointerException ex) {
+            return defaultValue;
+        }
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException | NullPointerException ex) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Counts notifications delivered by Milo's publish loop while the sampler observes the subscription.
+     */
+    private static final class SubscriptionStatistics implements UaSubscription.NotificationListener {
+        private final LongAdder publishResponses = new LongAdder();
+        private final LongAdder notifications = new LongAdder();
+        private final LongAdder keepAlives = new LongAdder();
+        private final LongAdder sequenceGaps = new LongAdder();
+        private final LongAdder queueOverflows = new LongAdder();
+        private final LongAdder publishFailures = new LongAdder();
+        private final LongAdder latencySamples = new LongAdder();
+        private final LongAdder negativeLatencies = new LongAdder();
+        private final LongAdder totalLatencyMillis = new LongAdder();
+        private final AtomicLong maxLatencyMillis = new AtomicLong();
+        private volatile boolean observing;
+
+        // Publish failures are reported per client rather than per subscription
+        private final UaSubscriptionManager.SubscriptionListener publishFailureListener =
+                new UaSubscriptionManager.SubscriptionListener() {
+                    @Override
+                    public void onPublishFailure(UaException exception) {
+                        if (observing) {
+                            publishFailures.increment();
+                        }
+                    }
+                };
+        private long startNanos;
+        private long stopNanos;
+
+        private void start() {
+            startNanos = System.nanoTime();
+            observing = true;
+        }
+
+        private void stop() {
+            observing = false;
+            stopNanos = System.nanoTime();
+        }
+
+        @Override
+        public void onDataChangeNotification(UaSubscription subscription, List<UaMonitoredItem> items,
+                                             List<DataValue> values, DateTime publishTime) {
+            if (!observing) {
+                return;
+            }
+            publishResponses.increment();
+            notifications.add(values.size());
+            for (DataValue value : values) {
+                StatusCode statusCode = value.getStatusCode();
+                if (statusCode != null && statusCode.isOverflowSet()) {
+                    queueOverflows.increment();
+                }
+            }
+            // Latency between the server's publish time and delivery, across two clocks. A negative difference
+            // means the server clock is ahead; it is counted instead of being folded into the average
+            long latency = System.currentTimeMillis() - publishTime.getJavaTime();
+            if (latency < 0) {
+                negativeLatencies.increment();
+                return;
+            }
+            latencySamples.increment();
+            totalLatencyMillis.add(latency);
+            maxLatencyMillis.accumulateAndGet(latency, Math::max);
+        }
+
+        @Override
+        public void onKeepAliveNotification(UaSubscription subscription, DateTime publishTime) {
+            if (observing) {
+                keepAlives.increment();
+            }
+        }
+
+        @Override
+        public void onNotificationDataLost(UaSubscription subscription) {
+            // Milo reports a gap in the notification sequence numbers
+            if (observing) {
+                sequenceGaps.increment();
+            }
+        }
+
+        private String format(int requestedItems, int createdItems, double revisedPublishingInterval) {
+            double seconds = Math.max(1, stopNanos - startNanos) / 1_000_000_000.0;
+            long responses = publishResponses.sum();
+            long latencies = latencySamples.sum();
+            return String.format("Monitored items: %d of %d created%n"
+                            + "Revised publishing interval: %.1f ms%n"
+                            + "Notifications: %d (%.1f/s)%n"
+                            + "Publish responses: %d, keep-alives: %d%n"
+                            + "Publish latency (client clock minus server publish time, cross-host): avg %.1f ms, max %d ms, "
+                            + "negative: %d%n"
+                            + "Sequence number gaps: %d%n"
+                            + "Queue overflows: %d%n"
+                            + "Publish failures: %d",
+                    createdItems, requestedItems,
+                    revisedPublishingInterval,
+                    notifications.sum(), notifications.sum() / seconds,
+                    responses, keepAlives.sum(),
+                    latencies == 0 ? 0.0 : totalLatencyMillis.sum() / (double) latencies, maxLatencyMillis.get(),
+                    negativeLatencies.sum(),
+                    sequenceGaps.sum(),
+                    queueOverflows.sum(),
+                    publishFailures.sum());
+        }
+    }
+}
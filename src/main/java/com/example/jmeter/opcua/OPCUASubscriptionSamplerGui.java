@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.samplers.gui.AbstractSamplerGui;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.net.URI;
+
+public class OPCUASubscriptionSamplerGui extends AbstractSamplerGui {
+    private static final Logger log = LogManager.getLogger(OPCUASubscriptionSamplerGui.class);
+
+    private OPCUANodeTablePanel nodeTablePanel;
+    private JTextField nodeFileField;
+    private JTextField publishingIntervalField;
+    private JTextField samplingIntervalField;
+    private JTextField queueSizeField;
+    private JTextField durationField;
+    private JTextField timeoutField;
+
+    public OPCUASubscriptionSamplerGui() {
+        init();
+    }
+
+    private void init() {
+        setLayout(new BorderLayout(0, 5));
+        setBorder(makeBorder());
+
+        JPanel mainPanel = new VerticalPanel();
+        mainPanel.add(makeTitlePanel());
+
+        nodeTablePanel = new OPCUANodeTablePanel("Monitored Items", "Namespace Index (ns=)", "Identifier (i=)");
+        nodeFileField = new JTextField(30);
+        publishingIntervalField = new JTextField(10);
+        samplingIntervalField = new JTextField(10);
+        queueSizeField = new JTextField(10);
+        durationField = new JTextField(10);
+        timeoutField = new JTextField(10);
+
+        JPanel fieldsPanel = new JPanel(new GridLayout(6, 2));
+        fieldsPanel.setBorder(BorderFactory.createTitledBorder("Settings"));
+        fieldsPanel.add(new JLabel("Node List File (CSV ns,i per line, or catalogue):"));
+        fieldsPanel.add(nodeFileField);
+        fieldsPanel.add(new JLabel("Publishing Interval (ms):"));
+        fieldsPanel.add(publishingIntervalField);
+        fieldsPanel.add(new JLabel("Sampling Interval (ms):"));
+        fieldsPanel.add(samplingIntervalField);
+        fieldsPanel.add(new JLabel("Queue Size:"));
+        fieldsPanel.add(queueSizeField);
+        fieldsPanel.add(new JLabel("Observation Duration (ms):"));
+        fieldsPanel.add(durationField);
+        fieldsPanel.add(new JLabel("Timeout (ms):"));
+        fieldsPanel.add(timeoutField);
+
+        mainPanel.add(nodeTablePanel);
+        mainPanel.add(fieldsPanel);
+        add(mainPanel, BorderLayout.CENTER);
+
+        // Add developer information and hyperlink
+        JLabel developerLabel = new JLabel("<html><i>Developed by Mohammed Hlayel;</i></html>");
+        JLabel githubLink = new JLabel("<html><a href='https://github.com/Sahermatter2024'>Help and Update</a></html>");
+        githubLink.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        githubLink.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                try {
+                    Desktop.getDesktop().browse(new URI("https://github.com/Sahermatter2024"));
+                } catch (Exception ex) {
+                    log.error("Error opening link", ex);
+                }
+            }
+        });
+
+        JPanel footerPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        footerPanel.add(developerLabel);
+        footerPanel.add(githubLink);
+
+        add(footerPanel, BorderLayout.SOUTH);
+    }
+
+    @Override
+    public String getLabelResource() {
+        return "opcuaSubscriptionSampler_title";
+    }
+
+    @Override
+    public String getStaticLabel() {
+        return "OPC UA Subscription Sampler";
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        OPCUASubscriptionSampler sampler = new OPCUASubscriptionSampler();
+        modifyTestElement(sampler);
+        return sampler;
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        super.configureTestElement(element);
+        if (element instanceof OPCUASubscriptionSampler) {
+            ((OPCUASubscriptionSampler) element).setNodes(nodeTablePanel.getRows());
+        }
+        element.setProperty(OPCUASubscriptionSampler.NODE_FILE, nodeFileField.getText());
+        element.setProperty(OPCUASubscriptionSampler.PUBLISHING_INTERVAL, publishingIntervalField.getText().isEmpty() ? "1000" : publishingIntervalField.getText());
+        element.setProperty(OPCUASubscriptionSampler.SAMPLING_INTERVAL, samplingIntervalField.getText().isEmpty() ? "500" : samplingIntervalField.getText());
+        element.setProperty(OPCUASubscriptionSampler.QUEUE_SIZE, queueSizeField.getText().isEmpty() ? "10" : queueSizeField.getText());
+        element.setProperty(OPCUASubscriptionSampler.DURATION, durationField.getText().isEmpty() ? "10000" : durationField.getText());
+        element.setProperty(OPCUASubscriptionSampler.TIMEOUT, timeoutField.getText().isEmpty() ? "3000" : timeoutField.getText());
+    }
+
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+        if (element instanceof OPCUASubscriptionSampler) {
+            OPCUASubscriptionSampler sampler = (OPCUASubscriptionSampler) element;
+            nodeTablePanel.setRows(sampler.getNodes());
+            nodeFileField.setText(sampler.getNodeFile());
+            publishingIntervalField.setText(sampler.getPublishingInterval());
+            samplingIntervalField.setText(sampler.getSamplingInterval());
+            queueSizeField.setText(sampler.getQueueSize());
+            durationField.setText(sampler.getDuration());
+            timeoutField.setText(sampler.getTimeout());
+        }
+    }
+
+    @Override
+    public void clearGui() {
+        super.clearGui();
+        nodeTablePanel.clear();
+        nodeFileField.setText("");
+        publishingIntervalField.setText("1000");
+        samplingIntervalField.setText("500");
+        queueSizeField.setText("10");
+        durationField.setText("10000");
+        timeoutField.setText("3000");
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.milo.opcua.stack.client.UaStackClientConfigBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Netty event loop, executor and wheel timer shared by every {@code OpcUaClient} the plugin creates, sized by
+ * JMeter properties. A setting left at 0 keeps Milo's own shared default for that resource.
+ *
+ * <p>The resources are created on first use and live as long as the JVM, like Milo's defaults; changed
+ * properties take effect after a JMeter restart.
+ */
+public final class OPCUATransportResources {
+    private static final Logger log = LogManager.getLogger(OPCUATransportResources.class);
+
+    // Number of Netty event loop threads serving all secure channels; Milo defaults to twice the CPU count
+    public static final String EVENT_LOOP_THREADS = "opcua.eventloop.threads";
+    // Number of threads completing client futures; Milo defaults to an unbounded cached pool
+    public static final String EXECUTOR_THREADS = "opcua.executor.threads";
+    // Tick of the wheel timer used for request timeouts; Milo defaults to a shared timer with a 100 ms tick
+    public static final String WHEEL_TIMER_TICK = "opcua.wheeltimer.tick";
+
+    private static NioEventLoopGroup eventLoop;
+    private static ExecutorService executor;
+    private static HashedWheelTimer wheelTimer;
+    private static boolean initialized;
+
+    private OPCUATransportResources() {
+    }
+
+    /**
+     * Applies the configured shared resources to a client or discovery client configuration.
+     */
+    public static void configure(UaStackClientConfigBuilder builder) {
+        initialize();
+        if (eventLoop != null) {
+            builder.setEventLoop(eventLoop);
+        }
+        if (executor != null) {
+            builder.setExecutor(executor);
+        }
+        if (wheelTimer != null) {
+            builder.setWheelTimer(wheelTimer);
+        }
+    }
+
+    private static synchronized void initialize() {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+
+        int eventLoopThreads = JMeterUtils.getPropDefault(EVENT_LOOP_THREADS, 0);
+        int executorThreads = JMeterUtils.getPropDefault(EXECUTOR_THREADS, 0);
+        long wheelTimerTick = JMeterUtils.getPropDefault(WHEEL_TIMER_TICK, 0L);
+
+        if (eventLoopThreads > 0) {
+            eventLoop = new NioEventLoopGroup(eventLoopThreads, threadFactory("opcua-event-loop"));
+        }
+        if (executorThreads > 0) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(executorThreads, executorThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), threadFactory("opcua-executor"));
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        if (wheelTimerTick > 0) {
+            wheelTimer = new HashedWheelTimer(threadFactory("opcua-wheel-timer"), wheelTimerTick, TimeUnit.MILLISECONDS);
+        }
+
+        log.info("OPC UA transport: event loop threads={}, executor threads={}, wheel timer tick={} ms (0 = Milo default)",
+                eventLoopThreads, executorThreads, wheelTimerTick);
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExtensionObject;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UByte;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.ULong;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UShort;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.Argument;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowsePath;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowsePathResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.RelativePath;
+import org.eclipse.milo.opcua.stack.core.types.structured.RelativePathElement;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Converts between the text entered in the samplers and typed OPC UA values. The DataType attribute of a node
+ * and the input arguments of a method are read once per session and cached, so writes and calls send a
+ * {@link Variant} of the type the server expects.
+ */
+public final class OPCUAValueCodec {
+    private static final Map<OpcUaClient, ConcurrentMap<NodeId, ValueType>> CACHE =
+            Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Map<OpcUaClient, ConcurrentMap<NodeId, List<ValueType>>> ARGUMENT_CACHE =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final Map<NodeId, ValueType> BY_DATA_TYPE = new HashMap<>();
+    private static final Map<Class<?>, ValueType> BY_CLASS = new HashMap<>();
+
+    /**
+     * The built-in types that can be written from text.
+     */
+    public enum ValueType {
+        BOOLEAN(Identifiers.Boolean, Boolean.class, Boolean::parseBoolean),
+        SBYTE(Identifiers.SByte, Byte.class, Byte::parseByte),
+        BYTE(Identifiers.Byte, UByte.class, UByte::valueOf),
+        INT16(Identifiers.Int16, Short.class, Short::parseShort),
+        UINT16(Identifiers.UInt16, UShort.class, UShort::valueOf),
+        INT32(Identifiers.Int32, Integer.class, Integer::parseInt),
+        UINT32(Identifiers.UInt32, UInteger.class, UInteger::valueOf),
+        INT64(Identifiers.Int64, Long.class, Long::parseLong),
+        UINT64(Identifiers.UInt64, ULong.class, ULong::valueOf),
+        FLOAT(Identifiers.Float, Float.class, Float::parseFloat),
+        DOUBLE(Identifiers.Double, Double.class, Double::parseDouble),
+        STRING(Identifiers.String, String.class, text -> text),
+        DATE_TIME(Identifiers.DateTime, DateTime.class, text -> new DateTime(Instant.parse(text))),
+        LOCALIZED_TEXT(Identifiers.LocalizedText, LocalizedText.class, LocalizedText::english) {
+            @Override
+            public boolean matches(Object actual, Object expected) {
+                // Only the text is compared; the server may return any locale
+                return actual instanceof LocalizedText
+                        && ((LocalizedText) expected).getText().equals(((LocalizedText) actual).getText());
+            }
+        };
+
+        private final NodeId dataType;
+        private final Class<?> valueClass;
+        private final Function<String, Object> parser;
+
+        ValueType(NodeId dataType, Class<?> valueClass, Function<String, Object> parser) {
+            this.dataType = dataType;
+            this.valueClass = valueClass;
+            this.parser = parser;
+        }
+
+        /**
+         * Parses text to a value of this type.
+         *
+         * @throws IllegalArgumentException if the text is not a valid value of this type
+         */
+        public Object parse(String text) {
+            // Text is trimmed for every type except String, where spaces may be meaningful
+            try {
+                return parser.apply(this == STRING ? text : text.trim());
+            } catch (DateTimeException ex) {
+                throw new IllegalArgumentException(ex.getMessage(), ex);
+            }
+        }
+
+        public Variant encode(String text) {
+            return new Variant(parse(text));
+        }
+
+        public boolean matches(Object actual, Object expected) {
+            return expected.equals(actual);
+        }
+    }
+
+    static {
+        for (ValueType type : ValueType.values()) {
+            BY_DATA_TYPE.put(type.dataType, type);
+            BY_CLASS.put(type.valueClass, type);
+        }
+        // Common subtypes written like their base type
+        BY_DATA_TYPE.put(Identifiers.Duration, ValueType.DOUBLE);
+        BY_DATA_TYPE.put(Identifiers.UtcTime, ValueType.DATE_TIME);
+    }
+
+    private OPCUAValueCodec() {
+    }
+
+    /**
+     * Returns the value type of each node, reading the DataType attribute of nodes not seen before on this
+     * session. Nodes of a type that is not built-in, such as an enumeration, take the type of their current value.
+     * The types of a node never change on a session, so callers resolving the same nodes on every sample keep
+     * the result per session.
+     */
+    public static List<ValueType> resolve(OpcUaClient client, List<NodeId> nodeIds, long timeout) throws Exception {
+        ConcurrentMap<NodeId, ValueType> types = resolveTypes(client, nodeIds, timeout);
+        List<ValueType> list = new ArrayList<>(nodeIds.size());
+        for (NodeId nodeId : nodeIds) {
+            list.add(types.get(nodeId));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    public static ValueType resolve(OpcUaClient client, NodeId nodeId, long timeout) throws Exception {
+        ConcurrentMap<NodeId, ValueType> types;
+        synchronized (CACHE) {
+            types = CACHE.computeIfAbsent(client, c -> new ConcurrentHashMap<>());
+        }
+        ValueType type = types.get(nodeId);
+        return type != null ? type : resolveTypes(client, Collections.singletonList(nodeId), timeout).get(nodeId);
+    }
+
+    private static ConcurrentMap<NodeId, ValueType> resolveTypes(OpcUaClient client, List<NodeId> nodeIds,
+                                                                 long timeout) throws Exception {
+        ConcurrentMap<NodeId, ValueType> types;
+        synchronized (CACHE) {
+            types = CACHE.computeIfAbsent(client, c -> new ConcurrentHashMap<>());
+        }
+
+        Set<NodeId> missing = new LinkedHashSet<>();
+        for (NodeId nodeId : nodeIds) {
+            if (!types.containsKey(nodeId)) {
+                missing.add(nodeId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<NodeId> unknown = new ArrayList<>(missing);
+            List<DataValue> dataTypes = read(client, unknown, AttributeId.DataType, timeout);
+            List<NodeId> derived = new ArrayList<>();
+            for (int i = 0; i < unknown.size(); i++) {
+                Object dataType = dataTypes.get(i).getValue().getValue();
+                ValueType type = dataType instanceof NodeId ? BY_DATA_TYPE.get(dataType) : null;
+                if (type != null) {
+                    types.put(unknown.get(i), type);
+                } else if (dataType instanceof NodeId) {
+                    derived.add(unknown.get(i));
+                } else {
+                    throw new IllegalStateException(String.format("Cannot read the DataType of node %s: %s",
+                            unknown.get(i), dataTypes.get(i).getStatusCode()));
+                }
+            }
+            if (!derived.isEmpty()) {
+                List<DataValue> values = read(client, derived, AttributeId.Value, timeout);
+                for (int i = 0; i < derived.size(); i++) {
+                    ValueType type = forValue(values.get(i).getValue().getValue());
+                    if (type == null) {
+                        throw new IllegalStateException(String.format(
+                                "Unsupported DataType of node %s; only built-in scalar types can be written",
+                                derived.get(i)));
+                    }
+                    types.put(derived.get(i), type);
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Returns the input argument types of each method, reading the InputArguments property of methods not seen
+     * before on this session. A method without the property takes no arguments.
+     *
+     * @throws IllegalStateException if an argument is not of a built-in scalar type
+     */
+    public static List<List<ValueType>> resolveInputArguments(OpcUaClient client, List<NodeId> methodIds,
+                                                              long timeout) throws Exception {
+        ConcurrentMap<NodeId, List<ValueType>> arguments;
+        synchronized (ARGUMENT_CACHE) {
+            arguments = ARGUMENT_CACHE.computeIfAbsent(client, c -> new ConcurrentHashMap<>());
+        }
+
+        Set<NodeId> missing = new LinkedHashSet<>();
+        for (NodeId methodId : methodIds) {
+            if (!arguments.containsKey(methodId)) {
+                missing.add(methodId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<NodeId> unknown = new ArrayList<>(missing);
+            List<BrowsePath> browsePaths = new ArrayList<>(unknown.size());
+            for (NodeId methodId : unknown) {
+                browsePaths.add(new BrowsePath(methodId, new RelativePath(new RelativePathElement[]{
+                        new RelativePathElement(Identifiers.HasProperty, false, false,
+                                new QualifiedName(0, "InputArguments"))})));
+            }
+            BrowsePathResult[] paths = client.translateBrowsePaths(browsePaths)
+                    .get(timeout, TimeUnit.MILLISECONDS).getResults();
+
+            List<NodeId> methods = new ArrayList<>();
+            List<NodeId> properties = new ArrayList<>();
+            for (int i = 0; i < unknown.size(); i++) {
+                BrowsePathResult path = paths[i];
+                NodeId property = path.getStatusCode().isGood() && path.getTargets() != null && path.getTargets().length > 0
+                        ? path.getTargets()[0].getTargetId().toNodeId(client.getNamespaceTable()).orElse(null) : null;
+                if (property != null) {
+                    methods.add(unknown.get(i));
+                    properties.add(property);
+                } else if (path.getStatusCode().getValue() == StatusCodes.Bad_NoMatch) {
+                    arguments.put(unknown.get(i), Collections.emptyList());
+                } else {
+                    throw new IllegalStateException(String.format("Cannot find the input arguments of method %s: %s",
+                            unknown.get(i), path.getStatusCode()));
+                }
+            }
+
+            List<DataValue> values = read(client, properties, AttributeId.Value, timeout);
+            for (int i = 0; i < methods.size(); i++) {
+                Object value = values.get(i).getValue().getValue();
+                if (!(value instanceof ExtensionObject[])) {
+                    throw new IllegalStateException(String.format("Cannot read the input arguments of method %s: %s",
+                            methods.get(i), values.get(i).getStatusCode()));
+                }
+                List<ValueType> types = new ArrayList<>();
+                for (ExtensionObject encoded : (ExtensionObject[]) value) {
+                    Argument argument = (Argument) encoded.decode(client.getStaticSerializationContext());
+                    ValueType type = BY_DATA_TYPE.get(argument.getDataType());
+                    if (type == null || argument.getValueRank() == null || argument.getValueRank() >= 0) {
+                        throw new IllegalStateException(String.format(
+                                "Unsupported type of argument %s of method %s; only built-in scalar types can be passed",
+                                argument.getName(), methods.get(i)));
+                    }
+                    types.add(type);
+                }
+                arguments.put(methods.get(i), Collections.unmodifiableList(types));
+            }
+        }
+
+        List<List<ValueType>> resolved = new ArrayList<>(methodIds.size());
+        for (NodeId methodId : methodIds) {
+            resolved.add(arguments.get(methodId));
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns the type of a value read from a server, or {@code null} if it is not one of the supported types.
+     */
+    public static ValueType forValue(Object value) {
+        return value == null ? null : BY_CLASS.get(value.getClass());
+    }
+
+    private static List<DataValue> read(OpcUaClient client, List<NodeId> nodeIds, AttributeId attributeId,
+                                        long timeout) throws Exception {
+        OPCUAServerLimits limits = OPCUAServerLimits.get(client, timeout);
+        int chunkSize = OPCUAServerLimits.chunkSize(limits.getMaxNodesPerRead(), 0, nodeIds.size());
+
+        List<DataValue> values = new ArrayList<>(nodeIds.size());
+        for (int from = 0; from < nodeIds.size(); from += chunkSize) {
+            List<ReadValueId> readValueIds = new ArrayList<>();
+            for (NodeId nodeId : nodeIds.subList(from, Math.min(nodeIds.size(), from + chunkSize))) {
+                readValueIds.add(new ReadValueId(nodeId, attributeId.uid(), null, QualifiedName.NULL_VALUE));
+            }
+            DataValue[] results = client.read(0.0, TimestampsToReturn.Neither, readValueIds)
+                    .get(timeout, TimeUnit.MILLISECONDS).getResults();
+            Collections.addAll(values, results);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OPCUAAssertionTest {
+
+    @Test
+    void operatorsTestNumbers() {
+        assertTrue(test("< 20", 10));
+        assertFalse(test("< 20", 20));
+        assertTrue(test("[10, 20]", 20.0));
+        assertTrue(test("12.5 +- 0.1", 12.55));
+        assertTrue(test("&0x0C=0x04", 0x05));
+        assertTrue(test("42", 42));
+    }
+
+    @Test
+    void expectedValuesThatLookLikeOperatorsStayLiteralForText() {
+        // Test plans written before the operators existed compared these as plain strings
+        assertTrue(test("<5", "<5"));
+        assertTrue(test(">= 10", ">= 10"));
+        assertTrue(test("[1, 2]", "[1, 2]"));
+        assertTrue(test("&0x0C", "&0x0C"));
+        assertTrue(test("1 +- 2", "1 +- 2"));
+        assertFalse(test("<5", "4"));
+    }
+
+    @Test
+    void operatorsWithoutValidNumbersAreLiteral() {
+        assertTrue(test("<none>", "<none>"));
+        assertTrue(test("[a, b]", "[a, b]"));
+        assertTrue(test("&flag", "&flag"));
+        assertTrue(test("x+-y", "x+-y"));
+        assertFalse(test("<none>", 5));
+    }
+
+    private static boolean test(String expression, Object value) {
+        return OPCUAAssertion.compile(expression).test(new DataValue(new Variant(value)));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OPCUAConnectAdmissionTest {
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long START = TimeUnit.SECONDS.toNanos(1_000);
+
+    @Test
+    void connectsAreEvenlySpacedWithoutBurst() {
+        OPCUAConnectAdmission.Limits limits = new OPCUAConnectAdmission.Limits(10, 1, 0);
+
+        assertEquals(0, limits.reserve(START));
+        assertEquals(INTERVAL, limits.reserve(START));
+        assertEquals(2 * INTERVAL, limits.reserve(START));
+        // A caller arriving later waits only for the rest of its slot
+        assertEquals(2 * INTERVAL, limits.reserve(START + INTERVAL));
+    }
+
+    @Test
+    void burstIsAdmittedAtOnceAfterIdle() {
+        OPCUAConnectAdmission.Limits limits = new OPCUAConnectAdmission.Limits(10, 3, 0);
+
+        assertTrue(limits.reserve(START) <= 0);
+        assertTrue(limits.reserve(START) <= 0);
+        assertTrue(limits.reserve(START) <= 0);
+        assertEquals(INTERVAL, limits.reserve(START));
+        assertEquals(2 * INTERVAL, limits.reserve(START));
+
+        // After an idle period the bucket is full again, but holds no more than the burst
+        long later = START + TimeUnit.SECONDS.toNanos(10);
+        assertTrue(limits.reserve(later) <= 0);
+        assertTrue(limits.reserve(later) <= 0);
+        assertTrue(limits.reserve(later) <= 0);
+        assertEquals(INTERVAL, limits.reserve(later));
+    }
+
+    @Test
+    void callersAtTheRateNeverWait() {
+        OPCUAConnectAdmission.Limits limits = new OPCUAConnectAdmission.Limits(10, 1, 0);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limits.reserve(START + i * INTERVAL));
+        }
+    }
+
+    @Test
+    void limitsAtZeroAreDisabled() {
+        assertFalse(new OPCUAConnectAdmission.Limits(0, 1, 0).isEnabled());
+        assertTrue(new OPCUAConnectAdmission.Limits(0, 1, 5).isEnabled());
+        assertTrue(new OPCUAConnectAdmission.Limits(2.5, 1, 0).isEnabled());
+    }
+}
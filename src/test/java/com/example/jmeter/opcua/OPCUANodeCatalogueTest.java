@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OPCUANodeCatalogueTest {
+
+    // Identifiers above Integer.MAX_VALUE and namespaces above Short.MAX_VALUE are stored unsigned
+    private static final List<NodeId> NODES = Arrays.asList(
+            new NodeId(2, uint(1)),
+            new NodeId(65535, uint(0xFFFFFFFFL)),
+            new NodeId(3, uint(0x80000000L)));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void binaryCatalogueRoundTrips() throws IOException {
+        Path file = directory.resolve("nodes.bin");
+        OPCUANodeCatalogue.write(file.toString(), NODES);
+
+        assertTrue(OPCUANodeCatalogue.isCatalogue(file.toString()));
+        assertEquals(12 + 6 * NODES.size(), Files.size(file));
+        assertFalse(Files.exists(directory.resolve("nodes.bin.tmp")));
+        assertEquals(NODES, load(file).getNodeIds());
+    }
+
+    @Test
+    void csvCatalogueRoundTrips() throws IOException {
+        Path file = directory.resolve("nodes.csv");
+        OPCUANodeCatalogue.write(file.toString(), NODES);
+
+        assertFalse(OPCUANodeCatalogue.isCatalogue(file.toString()));
+        assertEquals(NODES, OPCUANodeList.get(file.toString()).getNodeIds());
+    }
+
+    @Test
+    void truncatedCatalogueIsRejected() throws IOException {
+        Path file = directory.resolve("nodes.bin");
+        OPCUANodeCatalogue.write(file.toString(), NODES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 4);
+        }
+
+        IOException ex = assertThrows(IOException.class, () -> load(file));
+        assertTrue(ex.getMessage().startsWith("Truncated node catalogue"));
+    }
+
+    @Test
+    void truncatedHeaderIsRejected() throws IOException {
+        Path file = directory.resolve("nodes.bin");
+        OPCUANodeCatalogue.write(file.toString(), NODES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(8);
+        }
+
+        assertThrows(IOException.class, () -> load(file));
+    }
+
+    private static OPCUANodeList load(Path file) throws IOException {
+        return OPCUANodeCatalogue.load(file.toString(), Files.getLastModifiedTime(file).toMillis(), Files.size(file));
+    }
+}
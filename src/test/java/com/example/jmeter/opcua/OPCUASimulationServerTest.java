@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.opcua;
+
+import com.example.jmeter.opcua.simulator.SimulationNodeType;
+import com.example.jmeter.opcua.simulator.SimulationServer;
+import com.example.jmeter.opcua.simulator.SimulationServerConfig;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the samplers against the in-process simulation server: connect, read, write and close over a real
+ * OPC UA session.
+ */
+class OPCUASimulationServerTest {
+    private static final int NODES = 10;
+    private static final String TIMEOUT = "5000";
+
+    private static SimulationServer server;
+
+    private JMeterVariables variables;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        server = new SimulationServer(new SimulationServerConfig()
+                .setNodeCount(SimulationNodeType.BOOLEAN, NODES)
+                .setNodeCount(SimulationNodeType.INT32, NODES));
+    }
+
+    @AfterAll
+    static void stopServer() throws Exception {
+        server.close();
+    }
+
+    @BeforeEach
+    void connect() {
+        variables = new JMeterVariables();
+        JMeterContextService.getContext().setVariables(variables);
+
+        OPCUAConnectionSampler connect = new OPCUAConnectionSampler();
+        connect.setName("Connect");
+        connect.setIpAddress(server.getHost());
+        connect.setPort(String.valueOf(server.getPort()));
+        connect.setProtocol("opc.tcp");
+        connect.setTimeout(TIMEOUT);
+
+        SampleResult result = connect.sample(null);
+        assertTrue(result.isSuccessful(), result.getResponseMessage());
+        assertInstanceOf(OpcUaClient.class, variables.getObject(OPCUASessions.CLIENT_VARIABLE));
+    }
+
+    @AfterEach
+    void close() {
+        OPCUACloseSampler close = new OPCUACloseSampler();
+        close.setName("Close");
+
+        SampleResult result = close.sample(null);
+        assertTrue(result.isSuccessful(), result.getResponseMessage());
+    }
+
+    @Test
+    void readSingleNode() {
+        OPCUAReadSingleSampler read = new OPCUAReadSingleSampler();
+        read.setName("Read");
+        read.setNodeIdNamespaceIndex(String.valueOf(server.getNamespaceIndex()));
+        read.setNodeIdIdentifier(identifier(SimulationNodeType.BOOLEAN, 0));
+        read.setTimeout(TIMEOUT);
+        read.setExpectedValue("false");
+        read.threadStarted();
+
+        SampleResult result = read.sample(null);
+        assertTrue(result.isSuccessful(), result.getResponseMessage());
+
+        read.setExpectedValue("true");
+        read.threadStarted();
+        assertFalse(read.sample(null).isSuccessful());
+    }
+
+    @Test
+    void writtenValuesAreReadBack() {
+        List<List<String>> writeRows = new ArrayList<>();
+        List<List<String>> readRows = new ArrayList<>();
+        String namespaceIndex = String.valueOf(server.getNamespaceIndex());
+        for (int i = 0; i < NODES; i++) {
+            String identifier = identifier(SimulationNodeType.INT32, i);
+            writeRows.add(Arrays.asList(namespaceIndex, identifier, String.valueOf(100 + i)));
+            readRows.add(Arrays.asList(namespaceIndex, identifier, String.valueOf(100 + i)));
+        }
+
+        OPCUAMultipleWriteSampler write = new OPCUAMultipleWriteSampler();
+        write.setName("Write");
+        write.setNodes(writeRows);
+        write.setTimeout(TIMEOUT);
+        write.threadStarted();
+
+        SampleResult written = write.sample(null);
+        assertTrue(written.isSuccessful(), written.getResponseMessage());
+
+        OPCUAMultipleReadAndAssertSampler read = new OPCUAMultipleReadAndAssertSampler();
+        read.setName("Read");
+        read.setNodes(readRows);
+        read.setProperty(OPCUAMultipleReadAndAssertSampler.BATCH_READ, true);
+        read.setProperty(OPCUAMultipleReadAndAssertSampler.TIMEOUT, TIMEOUT);
+        read.threadStarted();
+
+        SampleResult result = read.sample(null);
+        assertTrue(result.isSuccessful(), result.getResponseMessage());
+    }
+
+    private static String identifier(SimulationNodeType type, int index) {
+        return server.getNodeId(type, index).getIdentifier().toString();
+    }
+}